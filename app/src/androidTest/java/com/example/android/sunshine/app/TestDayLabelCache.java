@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+
+public class TestDayLabelCache extends AndroidTestCase {
+    private static final String LOG_TAG = TestDayLabelCache.class.getSimpleName();
+
+    private static final int DAYS = 14;
+
+    private DayLabelCache mCache;
+    private long[] mDates;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new DayLabelCache(mContext);
+        Time time = new Time();
+        time.setToNow();
+        int today = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        mDates = new long[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            // Noon, the way the sync stores its dates, away from any midnight
+            mDates[i] = new Time().setJulianDay(today + i) + 12 * 60 * 60 * 1000;
+        }
+    }
+
+    // The way getFriendlyDayString formatted the labels before they were cached.
+    private String legacyFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        Time time = new Time();
+        time.setToNow();
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        String monthDay = new SimpleDateFormat("MMMM dd").format(dateInMillis);
+        if (displayLongToday && julianDay == currentJulianDay) {
+            return mContext.getString(R.string.format_full_friendly_date,
+                    mContext.getString(R.string.today), monthDay);
+        } else if (julianDay == currentJulianDay) {
+            return mContext.getString(R.string.today);
+        } else if (julianDay == currentJulianDay + 1) {
+            return mContext.getString(R.string.tomorrow);
+        } else if (julianDay < currentJulianDay + 7) {
+            return new SimpleDateFormat("EEEE").format(dateInMillis);
+        } else {
+            return new SimpleDateFormat("EEE MMM dd").format(dateInMillis);
+        }
+    }
+
+    public void testLabels() {
+        for (long date : mDates) {
+            assertEquals(legacyFriendlyDayString(date, true),
+                    mCache.getFriendlyDayString(date, true));
+            assertEquals(legacyFriendlyDayString(date, false),
+                    mCache.getFriendlyDayString(date, false));
+        }
+        assertEquals(mContext.getString(R.string.today), mCache.getDayName(mDates[0]));
+        assertEquals(mContext.getString(R.string.format_full_friendly_date,
+                        mContext.getString(R.string.tomorrow),
+                        new SimpleDateFormat("MMMM dd").format(mDates[1])),
+                mCache.getFullFriendlyDayString(mDates[1]));
+    }
+
+    public void testCachedUntilInvalidated() {
+        String label = mCache.getFriendlyDayString(mDates[8], false);
+        // Any time of the same day is the same label.
+        assertSame(label, mCache.getFriendlyDayString(mDates[8] - 60 * 60 * 1000, false));
+        mCache.invalidate();
+        String formatted = mCache.getFriendlyDayString(mDates[8], false);
+        assertEquals(label, formatted);
+        assertNotSame("Error: Label survived invalidation", label, formatted);
+    }
+
+    public void testNoAllocationsOnceCached() {
+        for (long date : mDates) {
+            mCache.getFriendlyDayString(date, true);
+            mCache.getFriendlyDayString(date, false);
+            mCache.getFullFriendlyDayString(date);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int round = 0; round < 10; round++) {
+            for (long date : mDates) {
+                mCache.getFriendlyDayString(date, true);
+                mCache.getFriendlyDayString(date, false);
+                mCache.getFullFriendlyDayString(date);
+            }
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        assertEquals("Error: Labels allocated once cached", 0, allocations);
+    }
+
+    /**
+     * Times a list's worth of day labels, formatted every time against cached.  The numbers are
+     * logged.
+     */
+    public void testDayLabelBenchmark() {
+        final int rounds = 200;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (long date : mDates) {
+                legacyFriendlyDayString(date, true);
+            }
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (long date : mDates) {
+                mCache.getFriendlyDayString(date, true);
+            }
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        int labels = rounds * DAYS;
+        Log.d(LOG_TAG, "Per label: formatted " + legacyNanos / labels + "ns, cached "
+                + cachedNanos / labels + "ns");
+    }
+}
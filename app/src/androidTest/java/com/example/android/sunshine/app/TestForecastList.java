@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Parcel;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.core.FrameHistogram;
+import com.example.android.sunshine.core.LocalDays;
+
+import java.text.SimpleDateFormat;
+
+public class TestForecastList extends AndroidTestCase {
+    private static final String LOG_TAG = TestForecastList.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final String LOCATION = "99705";
+    private static final int[] WEATHER_IDS = {800, 801, 500, 211, 600, 741, 900};
+
+    // The columns of ForecastFragment's projection, in its order
+    private static final String[] COLUMNS = {
+            "_id", "date", "max", "min", "location_setting", "weather_id", "coord_lat", "coord_long",
+            "humidity", "pressure", "wind", "degrees"
+    };
+
+    private MatrixCursor newCursor(double offset) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        LocalDays days = LocalDays.getDefault();
+        int today = days.getJulianDay(System.currentTimeMillis());
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[]{i, days.getStartOfDay(today + i), 20.5 + i + offset,
+                    10.2 - i, LOCATION, WEATHER_IDS[i % WEATHER_IDS.length],
+                    "64.7488", "-147.353", 60 + i, 1010.5f + i, 3.2f * i, 22.5f * i});
+        }
+        return cursor;
+    }
+
+    public void testRowsMatchCursor() {
+        Cursor cursor = newCursor(0);
+        ForecastList list = ForecastList.read(mContext, cursor, LOCATION);
+        assertEquals(DAYS, list.size());
+        assertEquals("64.7488", list.getCoordLat());
+        assertEquals("-147.353", list.getCoordLong());
+        assertEquals(LOCATION, list.getLocationSetting());
+
+        for (int i = 0; i < DAYS; i++) {
+            cursor.moveToPosition(i);
+            ForecastRow row = list.get(i);
+            long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            assertEquals(date, row.date);
+            assertEquals(date, list.getKeys().getKey(i));
+            assertEquals(Utility.getFriendlyDayString(mContext, date, false), row.dayLabel);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, true), row.longDayLabel);
+            assertEquals(Utility.getStringForWeatherCondition(mContext, weatherId),
+                    row.description);
+            assertEquals(Utility.getIconResourceForWeatherCondition(weatherId), row.iconResId);
+            assertEquals(Utility.getArtResourceForWeatherCondition(weatherId), row.artResId);
+            assertEquals(Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP)), row.highText);
+            assertEquals(Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP)), row.lowText);
+            assertEquals(mContext.getString(R.string.a11y_low_temp, row.lowText), row.lowA11y);
+
+            // And what the detail pane shows
+            assertTrue(row.hasDetails);
+            assertEquals(Utility.getFullFriendlyDayString(mContext, date), row.fullDayLabel);
+            assertEquals(Utility.getFormattedHumidity(mContext,
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_HUMIDITY)), row.humidityText);
+            assertEquals(Utility.getFormattedPressure(mContext,
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_PRESSURE)), row.pressureText);
+            assertEquals(Utility.getFormattedWind(mContext,
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_WIND_SPEED),
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_DEGREES)), row.windText);
+        }
+        assertEquals(list.get(DAYS - 1).date, list.getLastDate());
+    }
+
+    public void testDiffFromShownRows() {
+        ForecastList shown = ForecastList.read(mContext, newCursor(0), LOCATION);
+        // Reading the same rows again changes nothing.
+        ForecastList same = ForecastList.read(mContext, newCursor(0), LOCATION)
+                .withDiffFrom(shown.getKeys());
+        assertTrue("Error: Unchanged rows were diffed", same.getDiff().isEmpty());
+        assertEquals(shown.get(3), same.get(3));
+        assertEquals(shown.get(3).hashCode(), same.get(3).hashCode());
+
+        // New highs change every row.
+        ForecastList warmer = ForecastList.read(mContext, newCursor(5), LOCATION)
+                .withDiffFrom(shown.getKeys());
+        assertFalse(warmer.getDiff().isEmpty());
+        assertFalse(shown.get(3).equals(warmer.get(3)));
+        assertSame(shown.getKeys(), warmer.getDiff().getFrom());
+    }
+
+    public void testRowWithoutDetails() {
+        // As a snapshot has it, without the detail readings
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        cursor.addRow(new Object[]{0, System.currentTimeMillis(), 20, 10, LOCATION, 800,
+                "64.7488", "-147.353", null, null, null, null});
+        ForecastList list = ForecastList.read(mContext, cursor, LOCATION);
+        assertFalse(list.get(0).hasDetails);
+        assertNull(list.get(0).humidityText);
+    }
+
+    public void testRowParcelled() {
+        ForecastRow row = ForecastList.read(mContext, newCursor(0), LOCATION).get(2);
+        Parcel parcel = Parcel.obtain();
+        row.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ForecastRow copy = ForecastRow.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+        assertEquals(row, copy);
+        assertEquals(row.fullDayLabel, copy.fullDayLabel);
+        assertEquals(row.high, copy.high);
+        assertEquals(row.windA11y, copy.windA11y);
+        assertEquals(row.pressureText, copy.pressureText);
+        assertTrue(copy.hasDetails);
+    }
+
+    public void testAppend() {
+        ForecastList first = ForecastList.read(mContext, newCursor(0), LOCATION);
+        ForecastList all = ForecastList.EMPTY.append(first);
+        assertEquals(DAYS, all.size());
+        assertEquals("64.7488", all.getCoordLat());
+        assertEquals(first.getLastDate(), all.getLastDate());
+        assertEquals(0, ForecastList.EMPTY.size());
+    }
+
+    public void testRowsAfter() {
+        ForecastList list = ForecastList.read(mContext, newCursor(0), LOCATION);
+        ForecastList after = list.rowsAfter(list.get(9).date);
+        assertEquals(DAYS - 10, after.size());
+        assertEquals(list.get(10), after.get(0));
+        assertEquals(list.getLastDate(), after.getLastDate());
+        assertEquals(list.getKeys().getHash(10), after.getKeys().getHash(0));
+        assertEquals(0, list.rowsAfter(list.getLastDate()).size());
+        assertEquals(DAYS, list.rowsAfter(list.get(0).date - 1).size());
+    }
+
+    // The formatting onBindViewHolder did for each row before the rows were formatted by the
+    // loader, copied from Utility as it was, preference reads and all.
+    private boolean legacyIsMetric() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        return prefs.getString(mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_units_metric))
+                .equals(mContext.getString(R.string.pref_units_metric));
+    }
+
+    private boolean legacyUsingLocalGraphics() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String sunshineArtPack = mContext.getString(R.string.pref_art_pack_sunshine);
+        return prefs.getString(mContext.getString(R.string.pref_art_pack_key),
+                sunshineArtPack).equals(sunshineArtPack);
+    }
+
+    private String legacyFormatTemperature(double temperature) {
+        if (!legacyIsMetric()) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(mContext.getString(R.string.format_temperature), temperature);
+    }
+
+    private String legacyFriendlyDayString(long dateInMillis) {
+        Time time = new Time();
+        time.setToNow();
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        if (julianDay < currentJulianDay + 7) {
+            // getDayName, which asked for the time again
+            Time t = new Time();
+            t.setToNow();
+            julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
+            currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
+            if (julianDay == currentJulianDay) {
+                return mContext.getString(R.string.today);
+            } else if (julianDay == currentJulianDay + 1) {
+                return mContext.getString(R.string.tomorrow);
+            }
+            return new SimpleDateFormat("EEEE").format(dateInMillis);
+        }
+        return new SimpleDateFormat("EEE MMM dd").format(dateInMillis);
+    }
+
+    private static int legacyIconResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    // The switch had a case for every code; these are the ones in WEATHER_IDS.
+    private String legacyStringForWeatherCondition(int weatherId) {
+        int stringId;
+        if (weatherId >= 200 && weatherId <= 232) {
+            stringId = R.string.condition_2xx;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            stringId = R.string.condition_3xx;
+        } else switch (weatherId) {
+            case 500:
+                stringId = R.string.condition_500;
+                break;
+            case 600:
+                stringId = R.string.condition_600;
+                break;
+            case 741:
+                stringId = R.string.condition_741;
+                break;
+            case 800:
+                stringId = R.string.condition_800;
+                break;
+            case 801:
+                stringId = R.string.condition_801;
+                break;
+            case 900:
+                stringId = R.string.condition_900;
+                break;
+            default:
+                return mContext.getString(R.string.condition_unknown, weatherId);
+        }
+        return mContext.getString(stringId);
+    }
+
+    // The way onBindViewHolder bound a row from the cursor, leaving out Glide.
+    private void legacyBind(ForecastAdapter.ForecastAdapterViewHolder holder, Cursor cursor,
+            int position) {
+        cursor.moveToPosition(position);
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        if (legacyUsingLocalGraphics()) {
+            holder.mIconView.setImageResource(legacyIconResource(weatherId));
+        }
+        long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        holder.mDateView.setText(legacyFriendlyDayString(date));
+        String description = legacyStringForWeatherCondition(weatherId);
+        holder.mDescriptionView.setText(description);
+        holder.mDescriptionView.setContentDescription(
+                mContext.getString(R.string.a11y_forecast, description));
+        String high = legacyFormatTemperature(
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        holder.mHighTempView.setText(high);
+        holder.mHighTempView.setContentDescription(
+                mContext.getString(R.string.a11y_high_temp, high));
+        String low = legacyFormatTemperature(
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        holder.mLowTempView.setText(low);
+        holder.mLowTempView.setContentDescription(
+                mContext.getString(R.string.a11y_low_temp, low));
+    }
+
+    /**
+     * Times binding a row from the cursor against binding a formatted row.  The numbers are
+     * logged.
+     */
+    public void testBindBenchmark() {
+        Cursor cursor = newCursor(0);
+        ForecastList list = ForecastList.read(mContext, cursor, LOCATION);
+        ForecastAdapter adapter = new ForecastAdapter(mContext, null, new View(mContext),
+                AbsListView.CHOICE_MODE_NONE);
+        adapter.swapList(list);
+        View view = LayoutInflater.from(mContext).inflate(R.layout.list_item_forecast, null);
+        ForecastAdapter.ForecastAdapterViewHolder holder =
+                adapter.new ForecastAdapterViewHolder(view);
+
+        final int rounds = 50;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < DAYS; i++) {
+                legacyBind(holder, cursor, i);
+            }
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        ScrollJankMonitor monitor = ScrollJankMonitor.getInstance(mContext);
+        monitor.reset();
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < DAYS; i++) {
+                adapter.onBindViewHolder(holder, i);
+            }
+        }
+        long rowNanos = System.nanoTime() - start;
+        assertEquals(list.get(DAYS - 1).highText, holder.mHighTempView.getText().toString());
+
+        int binds = rounds * DAYS;
+        Log.d(LOG_TAG, "Per bind: from the cursor " + legacyNanos / binds + "ns, formatted row "
+                + rowNanos / binds + "ns");
+        if (!ScrollJankMonitor.ENABLED) {
+            return;
+        }
+        // A debug build's adapter times its own binds, as it does while the list scrolls.
+        FrameHistogram totals = monitor.getTotals();
+        assertEquals(binds, totals.getBindCount());
+        Log.d(LOG_TAG, "Binds timed by the adapter: " + totals.getSlowBindCount() + " slow, "
+                + "average " + totals.getAverageBindNanos() + "ns, max "
+                + totals.getMaxBindNanos() + "ns");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+import java.util.Arrays;
+
+public class TestItemChoiceManager extends AndroidTestCase {
+
+    // An adapter of ids sorted ascending, indexed by binary search like ForecastAdapter's dates
+    private static class IdAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+            implements ItemChoiceManager.PositionIndex {
+        long[] ids;
+
+        IdAdapter(boolean stableIds, long[] ids) {
+            setHasStableIds(stableIds);
+            this.ids = ids;
+        }
+
+        @Override
+        public int getPositionForId(long id) {
+            int position = Arrays.binarySearch(ids, id);
+            return position < 0 ? RecyclerView.NO_POSITION : position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return ids[position];
+        }
+
+        @Override
+        public int getItemCount() {
+            return ids.length;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+    }
+
+    private static long[] range(long from, int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = from + i;
+        }
+        return ids;
+    }
+
+    private static ItemChoiceManager newManager(IdAdapter adapter) {
+        ItemChoiceManager manager = new ItemChoiceManager(adapter, adapter);
+        manager.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        return manager;
+    }
+
+    // What onClick checks in single choice mode
+    private static void check(ItemChoiceManager manager, IdAdapter adapter, int position) {
+        manager.mCheckStates.clear();
+        manager.mCheckStates.put(position, true);
+        manager.mCheckedIdStates.clear();
+        manager.mCheckedIdStates.put(adapter.getItemId(position), position);
+    }
+
+    public void testFollowsIdAcrossInserts() {
+        IdAdapter adapter = new IdAdapter(true, range(100, 14));
+        ItemChoiceManager manager = newManager(adapter);
+        check(manager, adapter, 5);
+
+        // Days inserted above it
+        adapter.ids = range(97, 17);
+        adapter.notifyItemRangeInserted(0, 3);
+        assertEquals(8, manager.getSelectedItemPosition());
+        assertTrue(manager.isItemChecked(8));
+
+        // And removed
+        adapter.ids = range(103, 11);
+        adapter.notifyItemRangeRemoved(0, 6);
+        assertEquals(2, manager.getSelectedItemPosition());
+    }
+
+    public void testFollowsIdInLongLists() {
+        // A history list, where the checked day moved further than any nearby search would look
+        IdAdapter adapter = new IdAdapter(true, range(10000, 5000));
+        ItemChoiceManager manager = newManager(adapter);
+        check(manager, adapter, 4000);
+
+        adapter.ids = range(7000, 8000);
+        adapter.notifyItemRangeInserted(0, 3000);
+        assertEquals(7000, manager.getSelectedItemPosition());
+        assertEquals(10000 + 4000, adapter.getItemId(manager.getSelectedItemPosition()));
+    }
+
+    public void testUncheckedWhenIdGone() {
+        IdAdapter adapter = new IdAdapter(true, range(100, 14));
+        ItemChoiceManager manager = newManager(adapter);
+        check(manager, adapter, 0);
+
+        adapter.ids = range(101, 13);
+        adapter.notifyItemRangeRemoved(0, 1);
+        assertEquals(RecyclerView.NO_POSITION, manager.getSelectedItemPosition());
+        assertEquals(0, manager.mCheckedIdStates.size());
+    }
+
+    public void testDataSetChanged() {
+        IdAdapter adapter = new IdAdapter(true, range(100, 14));
+        ItemChoiceManager manager = newManager(adapter);
+        check(manager, adapter, 13);
+
+        adapter.ids = range(110, 14);
+        adapter.notifyDataSetChanged();
+        assertEquals(3, manager.getSelectedItemPosition());
+    }
+
+    public void testShiftsPositionsWithoutIds() {
+        IdAdapter adapter = new IdAdapter(false, range(100, 14));
+        ItemChoiceManager manager = new ItemChoiceManager(adapter);
+        manager.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        manager.mCheckStates.put(2, true);
+        manager.mCheckStates.put(6, true);
+
+        adapter.notifyItemRangeInserted(4, 2);
+        assertTrue(manager.isItemChecked(2));
+        assertTrue(manager.isItemChecked(8));
+        assertFalse(manager.isItemChecked(6));
+
+        // Removing the checked row unchecks it, the one past it moves up.
+        adapter.notifyItemRangeRemoved(1, 3);
+        assertFalse(manager.isItemChecked(2));
+        assertTrue(manager.isItemChecked(5));
+        assertEquals(1, manager.mCheckStates.size());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Map;
+
+public class TestSettingsSnapshot extends AndroidTestCase {
+    private static final String LOG_TAG = TestSettingsSnapshot.class.getSimpleName();
+
+    private SharedPreferences mPrefs;
+    private Map<String, ?> mSavedPrefs;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mSavedPrefs = mPrefs.getAll();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (String key : new String[]{
+                mContext.getString(R.string.pref_location_key),
+                mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_art_pack_key)}) {
+            Object value = mSavedPrefs.get(key);
+            if (value == null) {
+                editor.remove(key);
+            } else {
+                editor.putString(key, (String) value);
+            }
+        }
+        editor.commit();
+        SettingsSnapshot.refresh(mContext);
+        super.tearDown();
+    }
+
+    public void testSnapshot() {
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_location_key), "99705")
+                .putString(mContext.getString(R.string.pref_units_key),
+                        mContext.getString(R.string.pref_units_imperial))
+                .putString(mContext.getString(R.string.pref_art_pack_key),
+                        mContext.getString(R.string.pref_art_pack_cute_dogs))
+                .commit();
+        // The listener runs on the main thread, after this one has moved on.
+        SettingsSnapshot.refresh(mContext);
+
+        SettingsSnapshot settings = SettingsSnapshot.get(mContext);
+        assertSame("Error: Snapshot changed without a change", settings,
+                SettingsSnapshot.get(mContext));
+        assertEquals("99705", settings.locationSetting);
+        assertFalse(settings.metric);
+        assertFalse(settings.usingLocalGraphics);
+        assertEquals(mContext.getString(R.string.pref_art_pack_cute_dogs),
+                settings.artPackFormat);
+        assertEquals("99705", Utility.getPreferredLocation(mContext));
+        assertFalse(Utility.isMetric(mContext));
+
+        mPrefs.edit().remove(mContext.getString(R.string.pref_units_key))
+                .remove(mContext.getString(R.string.pref_art_pack_key))
+                .commit();
+        SettingsSnapshot.refresh(mContext);
+        settings = SettingsSnapshot.get(mContext);
+        assertTrue("Error: Metric is not the default", settings.metric);
+        assertTrue(settings.usingLocalGraphics);
+        assertTrue(Utility.usingLocalGraphics(mContext));
+    }
+
+    /**
+     * Times reading the three settings a row reads, from the preferences against from the
+     * snapshot.  The numbers are logged.
+     */
+    public void testSettingsBenchmark() {
+        final int reads = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+            String metric = mContext.getString(R.string.pref_units_metric);
+            prefs.getString(mContext.getString(R.string.pref_units_key), metric).equals(metric);
+            String sunshine = mContext.getString(R.string.pref_art_pack_sunshine);
+            prefs.getString(mContext.getString(R.string.pref_art_pack_key), sunshine)
+                    .equals(sunshine);
+            prefs.getString(mContext.getString(R.string.pref_art_pack_key), sunshine);
+        }
+        long prefsNanos = System.nanoTime() - start;
+
+        int checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            SettingsSnapshot settings = SettingsSnapshot.get(mContext);
+            checksum += (settings.metric ? 1 : 0) + (settings.usingLocalGraphics ? 1 : 0)
+                    + settings.artPackFormat.length();
+        }
+        long snapshotNanos = System.nanoTime() - start;
+        assertTrue(checksum > 0);
+
+        Log.d(LOG_TAG, "Per row: preferences " + prefsNanos / reads + "ns, snapshot "
+                + snapshotNanos / reads + "ns");
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+public class TestWeatherCondition extends AndroidTestCase {
+    private static final String LOG_TAG = TestWeatherCondition.class.getSimpleName();
+
+    private static final int LAST_TESTED_CODE = 1000;
+
+    /*
+        The range checks WeatherCondition replaced, kept here to check it against and to time it
+        against.
+     */
+    private static int legacyIconResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    private static int legacyArtResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+
+    private static String legacyArtName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    private static boolean legacyHasImage(int weatherId) {
+        return legacyIconResource(weatherId) != -1;
+    }
+
+    // The legacy description switch had a case for every code with a string of its own, named
+    // after the code.
+    private int legacyStringResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.string.condition_2xx;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.string.condition_3xx;
+        }
+        return mContext.getResources().getIdentifier("condition_" + weatherId, "string",
+                mContext.getPackageName());
+    }
+
+    public void testMatchesRangeChecks() {
+        for (int code = -1; code <= LAST_TESTED_CODE; code++) {
+            WeatherCondition condition = WeatherCondition.get(code);
+            assertEquals("Error: Wrong icon for " + code, legacyIconResource(code),
+                    condition.getIconResId());
+            assertEquals("Error: Wrong art for " + code, legacyArtResource(code),
+                    condition.getArtResId());
+            String artName = legacyArtName(code);
+            assertEquals("Error: Wrong art url for " + code,
+                    artName == null ? null : "pack/" + artName, condition.getArtUrl("pack/%s"));
+            assertEquals("Error: Wrong image for " + code, legacyHasImage(code),
+                    condition.getImageUrl() != null);
+
+            int stringResId = legacyStringResource(code);
+            String expected = stringResId == 0
+                    ? mContext.getString(R.string.condition_unknown, code)
+                    : mContext.getString(stringResId);
+            assertEquals("Error: Wrong description for " + code, expected,
+                    condition.getDescription(mContext, code));
+        }
+    }
+
+    public void testOverlappingCodes() {
+        // Dust falls into the fog range, it never got the tornado's pictures.
+        assertEquals(R.drawable.ic_fog, WeatherCondition.get(761).getIconResId());
+        assertEquals(R.drawable.ic_storm, WeatherCondition.get(781).getIconResId());
+        assertFalse(WeatherCondition.get(761).getImageUrl()
+                .equals(WeatherCondition.get(781).getImageUrl()));
+        assertEquals(WeatherCondition.NO_RESOURCE, WeatherCondition.get(762).getIconResId());
+    }
+
+    /**
+     * Times looking up the icon, the art and whether there are pictures at all, per code,
+     * through the table and through the range checks.  The numbers are logged.
+     */
+    public void testLookupBenchmark() {
+        final int rounds = 200;
+        int checksum = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int code = 200; code <= 962; code++) {
+                checksum += legacyIconResource(code) + legacyArtResource(code);
+                checksum += legacyArtName(code) == null ? 0 : 1;
+            }
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        int tableChecksum = 0;
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int code = 200; code <= 962; code++) {
+                WeatherCondition condition = WeatherCondition.get(code);
+                tableChecksum += condition.getIconResId() + condition.getArtResId();
+                tableChecksum += condition.getImageUrl() == null ? 0 : 1;
+            }
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        assertEquals(checksum, tableChecksum);
+        int lookups = rounds * (962 - 200 + 1);
+        Log.d(LOG_TAG, "Per code: range checks " + legacyNanos / lookups + "ns, table "
+                + tableNanos / lookups + "ns");
+    }
+}
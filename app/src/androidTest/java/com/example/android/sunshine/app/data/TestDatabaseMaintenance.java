@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+public class TestDatabaseMaintenance extends AndroidTestCase {
+
+    private static final String TEST_PREFS_NAME = "test_database_maintenance";
+
+    // A clock that only moves when the test says so.
+    private static class FakeClock implements DatabaseMaintenance.Clock {
+        long mNow = 1419033600000L; // December 20th, 2014
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+
+    private FakeClock mClock;
+    private SharedPreferences mPrefs;
+    private DatabaseMaintenance mMaintenance;
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mClock = new FakeClock();
+        mPrefs = mContext.getSharedPreferences(TEST_PREFS_NAME, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+        mMaintenance = new DatabaseMaintenance(WeatherDbHelper.getInstance(mContext), mPrefs,
+                mClock);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        mPrefs.edit().clear().commit();
+        super.tearDown();
+    }
+
+    /**
+     * Inserts a few hundred days of weather and deletes them again, which leaves free pages.
+     */
+    private void churn() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues[] values = new ContentValues[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherEntry.COLUMN_DATE,
+                    TestUtilities.TEST_DATE + i * DatabaseMaintenance.DAY_IN_MILLIS);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+        deleteAllRecords();
+    }
+
+    public void testSchedule() {
+        // The first check only starts the interval.
+        assertFalse(mMaintenance.shouldRun(true));
+
+        mClock.mNow += DatabaseMaintenance.MAINTENANCE_INTERVAL - 1;
+        assertFalse("Error: Maintenance ran before its interval", mMaintenance.shouldRun(true));
+
+        mClock.mNow += 1;
+        assertTrue("Error: Maintenance didn't run on an idle device", mMaintenance.shouldRun(true));
+        assertFalse("Error: Maintenance ran on a busy device", mMaintenance.shouldRun(false));
+
+        mClock.mNow += DatabaseMaintenance.MAX_IDLE_WAIT;
+        assertTrue("Error: Maintenance waited for the device to be idle for too long",
+                mMaintenance.shouldRun(false));
+
+        mMaintenance.run();
+        assertEquals(mClock.mNow, mPrefs.getLong(DatabaseMaintenance.KEY_LAST_RUN, -1));
+        assertFalse(mMaintenance.shouldRun(true));
+
+        // Setting the clock back starts the interval over rather than stalling maintenance.
+        mClock.mNow -= 10 * DatabaseMaintenance.DAY_IN_MILLIS;
+        assertFalse(mMaintenance.shouldRun(true));
+        mClock.mNow += DatabaseMaintenance.MAINTENANCE_INTERVAL;
+        assertTrue(mMaintenance.shouldRun(true));
+    }
+
+    public void testRunReclaimsFreePages() {
+        churn();
+        DatabaseMaintenance.Stats stats = mMaintenance.run();
+
+        SQLiteDatabase db = WeatherDbHelper.getInstance(mContext).getWritableDatabase();
+        assertEquals("Error: Incremental auto-vacuum wasn't enabled",
+                DatabaseMaintenance.AUTO_VACUUM_INCREMENTAL,
+                DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        assertEquals(0, stats.freelistPages);
+        assertTrue("Error: Deleting rows left no free pages",
+                mPrefs.getLong(DatabaseMaintenance.KEY_FREELIST_BEFORE, -1) > 0);
+        assertEquals(0, mPrefs.getLong(DatabaseMaintenance.KEY_FREELIST_AFTER, -1));
+        assertEquals(stats.sizeBytes, mPrefs.getLong(DatabaseMaintenance.KEY_SIZE_AFTER, -1));
+        assertTrue(mPrefs.getLong(DatabaseMaintenance.KEY_SIZE_AFTER, -1)
+                < mPrefs.getLong(DatabaseMaintenance.KEY_SIZE_BEFORE, -1));
+
+        // Once auto-vacuum is on, the incremental vacuum does the reclaiming.
+        churn();
+        long sizeBefore = DatabaseMaintenance.getStats(db).sizeBytes;
+        mClock.mNow += DatabaseMaintenance.MAINTENANCE_INTERVAL;
+        stats = mMaintenance.run();
+        assertEquals(0, stats.freelistPages);
+        assertTrue(stats.sizeBytes < sizeBefore);
+        assertEquals(sizeBefore, mPrefs.getLong(DatabaseMaintenance.KEY_SIZE_BEFORE, -1));
+    }
+
+    public void testAnalyzeInterval() {
+        long firstRun = mClock.mNow;
+        mMaintenance.run();
+        assertEquals(firstRun, mPrefs.getLong(DatabaseMaintenance.KEY_LAST_ANALYZE, -1));
+        SQLiteDatabase db = WeatherDbHelper.getInstance(mContext).getWritableDatabase();
+        assertEquals("Error: ANALYZE didn't create its statistics table", 1,
+                DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master"
+                        + " WHERE name = 'sqlite_stat1'", null));
+
+        mClock.mNow += DatabaseMaintenance.ANALYZE_INTERVAL - 1;
+        mMaintenance.run();
+        assertEquals(firstRun, mPrefs.getLong(DatabaseMaintenance.KEY_LAST_ANALYZE, -1));
+
+        mClock.mNow += 1;
+        mMaintenance.run();
+        assertEquals(mClock.mNow, mPrefs.getLong(DatabaseMaintenance.KEY_LAST_ANALYZE, -1));
+    }
+}
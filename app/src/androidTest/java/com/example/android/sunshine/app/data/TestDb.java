@@ -18,14 +18,32 @@ package com.example.android.sunshine.app.data;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 import android.test.AndroidTestCase;
+import android.text.TextUtils;
+import android.util.Log;
 
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.util.Collections;
 import java.util.HashSet;
 
 public class TestDb extends AndroidTestCase {
 
     public static final String LOG_TAG = TestDb.class.getSimpleName();
 
+    // The weather table as database version 4 created it, with REAL measurements and the
+    // description text.
+    private static final String V4_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT, location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL, " +
+            "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, " +
+            "FOREIGN KEY (location_id) REFERENCES location (_id), " +
+            "UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
     // Since we want each test to start with a clean slate
     void deleteTheDatabase() {
         mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
@@ -55,6 +73,8 @@ public class TestDb extends AndroidTestCase {
         final HashSet<String> tableNameHashSet = new HashSet<String>();
         tableNameHashSet.add(WeatherContract.LocationEntry.TABLE_NAME);
         tableNameHashSet.add(WeatherContract.WeatherEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.HistoryEntry.WEEKLY_TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.HistoryEntry.MONTHLY_TABLE_NAME);
 
         mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
         SQLiteDatabase db = new WeatherDbHelper(
@@ -62,7 +82,9 @@ public class TestDb extends AndroidTestCase {
         assertEquals(true, db.isOpen());
 
         // have we created the tables we want?
-        Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table'", null);
+        // weather is a view over the monthly partitions
+        Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type IN ('table', 'view')",
+                null);
 
         assertTrue("Error: This means that the database has not been created correctly",
                 c.moveToFirst());
@@ -141,11 +163,16 @@ public class TestDb extends AndroidTestCase {
         WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
         SQLiteDatabase db = dbHelper.getWritableDatabase();
 
-        // Second Step (Weather): Create weather values
-        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        // Second Step (Weather): Create weather values, with the measurements scaled the way
+        // the provider stores them
+        ContentValues weatherValues = WeatherRowCodec.encode(
+                TestUtilities.createWeatherValues(locationRowId));
 
         // Third Step (Weather): Insert ContentValues into database and get a row ID back
-        long weatherRowId = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, weatherValues);
+        // (into the partition for its month, the weather view can't be written to)
+        String partition = WeatherDbHelper.ensureWeatherPartition(db,
+                weatherValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+        long weatherRowId = db.insert(partition, null, weatherValues);
         assertTrue(weatherRowId != -1);
 
         // Fourth Step: Query the database and receive a Cursor back
@@ -234,4 +261,143 @@ public class TestDb extends AndroidTestCase {
         db.close();
         return locationRowId;
     }
+
+    /*
+        Upgrades a version 4 database and checks that the weather rows survive the switch to
+        scaled measurements, and then the move into monthly partitions.
+     */
+    public void testScaledMeasurementsMigration() {
+        File dbFile = mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME);
+        dbFile.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        db.execSQL("CREATE TABLE location (_id INTEGER PRIMARY KEY, " +
+                "location_setting TEXT UNIQUE NOT NULL, city_name TEXT NOT NULL, " +
+                "coord_lat REAL NOT NULL, coord_long REAL NOT NULL);");
+        db.execSQL(V4_CREATE_WEATHER_TABLE);
+        db.execSQL("INSERT INTO location VALUES (1, '99705', 'North Pole', 64.7488, -147.353);");
+        db.execSQL("INSERT INTO weather VALUES (1, 1, 1419033600, 'Clouds', 803, " +
+                "-12.5, 3.25, 81, 1013.75, 4.1, 230.5);");
+        db.setVersion(4);
+        db.close();
+
+        try {
+            db = new WeatherDbHelper(mContext).getWritableDatabase();
+            Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertTrue("Error: The weather row was lost in the migration", cursor.moveToFirst());
+            assertEquals(-1, cursor.getColumnIndex("short_desc"));
+            assertEquals(1419033600L,
+                    cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_DATE)));
+            assertEquals(803, cursor.getInt(cursor.getColumnIndex(WeatherEntry.COLUMN_WEATHER_ID)));
+            assertEquals(-1250, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_MIN_TEMP)));
+            assertEquals(325, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP)));
+            assertEquals(8100, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_HUMIDITY)));
+            assertEquals(101375, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_PRESSURE)));
+            assertEquals(410, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_WIND_SPEED)));
+            assertEquals(23050, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_DEGREES)));
+            cursor.close();
+
+            cursor = db.rawQuery("SELECT typeof(" + WeatherEntry.COLUMN_MIN_TEMP + ") FROM " +
+                    WeatherEntry.TABLE_NAME, null);
+            cursor.moveToFirst();
+            assertEquals("integer", cursor.getString(0));
+            cursor.close();
+
+            // Version 6 then moved the row into its monthly partition, which has its own
+            // (location_id, date) index.
+            String partition = WeatherDbHelper.getWeatherPartition(1419033600L);
+            assertEquals(Collections.singletonList(partition),
+                    WeatherDbHelper.getWeatherPartitions(db));
+            cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                    new String[]{WeatherDbHelper.getLocationDateIndex(partition)});
+            assertEquals("Error: The partition index wasn't created", 1, cursor.getCount());
+            cursor.close();
+            db.close();
+        } finally {
+            deleteTheDatabase();
+        }
+    }
+
+    /*
+        Compares the size of ten years of daily rows, and the time it takes to read them all
+        back, between the version 4 layout and the scaled one.  The numbers are logged; the test
+        only fails if the scaled layout isn't smaller.
+     */
+    public void testScaledMeasurementsSizeAndScan() {
+        final int rows = 3650;
+        long[] realLayout = benchmarkWeatherTable(V4_CREATE_WEATHER_TABLE, rows, false);
+        long[] scaledLayout = benchmarkWeatherTable(
+                WeatherDbHelper.buildCreateWeatherTable(WeatherEntry.TABLE_NAME), rows, true);
+        Log.d(LOG_TAG, rows + " rows: REAL layout " + realLayout[0] + " bytes ("
+                + realLayout[0] / rows + " per row), scan " + realLayout[1] + "ms; scaled layout "
+                + scaledLayout[0] + " bytes (" + scaledLayout[0] / rows + " per row), scan "
+                + scaledLayout[1] + "ms");
+        assertTrue("Error: The scaled layout is not smaller", scaledLayout[0] < realLayout[0]);
+    }
+
+    /**
+     * @return the size of the database and the time in milliseconds to read every row.
+     */
+    private long[] benchmarkWeatherTable(String createTable, int rows, boolean scaled) {
+        File dbFile = new File(mContext.getCacheDir(), "weather_benchmark.db");
+        dbFile.delete();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        try {
+            db.execSQL(createTable);
+            SQLiteStatement insert = db.compileStatement(scaled
+                    ? "INSERT INTO weather (location_id, date, weather_id, min, max, humidity, " +
+                    "pressure, wind, degrees) VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?)"
+                    : "INSERT INTO weather (location_id, date, weather_id, min, max, humidity, " +
+                    "pressure, wind, degrees, short_desc) VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?, " +
+                    "'Clouds')");
+            db.beginTransaction();
+            try {
+                for (int day = 0; day < rows; day++) {
+                    // Values with as many digits as the API sends.
+                    double[] measurements = {
+                            -5 + (day % 37) * 0.73,
+                            5 + (day % 41) * 0.61,
+                            40 + day % 60,
+                            990 + (day % 50) * 0.75,
+                            (day % 23) * 0.41,
+                            (day * 7) % 360
+                    };
+                    insert.bindLong(1, day * 24L * 60 * 60 * 1000);
+                    insert.bindLong(2, 800 + day % 5);
+                    for (int i = 0; i < measurements.length; i++) {
+                        if (scaled) {
+                            insert.bindLong(i + 3, WeatherRowCodec.encode(measurements[i]));
+                        } else {
+                            insert.bindDouble(i + 3, measurements[i]);
+                        }
+                    }
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            String[] projection = scaled
+                    ? WeatherRowCodec.decodeProjection(null, false)
+                    : new String[]{"*"};
+            long start = SystemClock.elapsedRealtime();
+            Cursor cursor = db.rawQuery(
+                    "SELECT " + TextUtils.join(", ", projection) + " FROM weather", null);
+            int maxIndex = cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP);
+            double sum = 0;
+            while (cursor.moveToNext()) {
+                sum += cursor.getDouble(maxIndex);
+            }
+            assertEquals(rows, cursor.getCount());
+            cursor.close();
+            long scanMillis = SystemClock.elapsedRealtime() - start;
+            Log.v(LOG_TAG, "Sum of maxima: " + sum);
+
+            db.close();
+            return new long[]{dbFile.length(), scanMillis};
+        } finally {
+            if (db.isOpen()) db.close();
+            dbFile.delete();
+        }
+    }
 }
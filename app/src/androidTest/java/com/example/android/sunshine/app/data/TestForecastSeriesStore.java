@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestForecastSeriesStore extends AndroidTestCase {
+    private static final String LOG_TAG = TestForecastSeriesStore.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long SYNC_IN_MILLIS = 3 * 60 * 60 * 1000L;
+    private static final int FORECAST_DAYS = 14;
+
+    private File mSeriesDir;
+
+    private void deleteTheSeries() {
+        File[] files = mSeriesDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSeriesDir = new File(mContext.getCacheDir(), ForecastSeriesStore.SERIES_DIR);
+        deleteTheSeries();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteTheSeries();
+        super.tearDown();
+    }
+
+    /**
+     * Generates syncs worth of forecasts that look like what the server sends: two-decimal
+     * temperatures drifting a little between syncs, whole-number humidity, and so on.
+     */
+    private static List<List<ForecastSeriesStore.Sample>> createSyncs(int syncCount) {
+        Random random = new Random(42);
+        List<List<ForecastSeriesStore.Sample>> syncs =
+                new ArrayList<List<ForecastSeriesStore.Sample>>(syncCount);
+        long firstIssuedAt = TestUtilities.TEST_DATE * 1000L;
+        for (int sync = 0; sync < syncCount; sync++) {
+            long issuedAt = firstIssuedAt + sync * SYNC_IN_MILLIS + random.nextInt(60000);
+            long firstDate = WeatherContract.normalizeDate(issuedAt);
+            List<ForecastSeriesStore.Sample> samples =
+                    new ArrayList<ForecastSeriesStore.Sample>(FORECAST_DAYS);
+            for (int day = 0; day < FORECAST_DAYS; day++) {
+                double low = Math.round((10 + 5 * Math.sin((sync / 8 + day) / 10.0)
+                        + random.nextGaussian()) * 100) / 100.0;
+                samples.add(new ForecastSeriesStore.Sample(issuedAt,
+                        firstDate + day * DAY_IN_MILLIS,
+                        random.nextInt(4) == 0 ? 500 : 800,
+                        low,
+                        low + 8 + random.nextInt(4),
+                        Math.round((1013 + random.nextGaussian() * 5) * 100) / 100.0,
+                        60 + random.nextInt(30),
+                        Math.round(random.nextDouble() * 1000) / 100.0,
+                        random.nextInt(360)));
+            }
+            syncs.add(samples);
+        }
+        return syncs;
+    }
+
+    private static void assertSampleEquals(ForecastSeriesStore.Sample expected,
+            ForecastSeriesStore.Sample actual) {
+        assertEquals(expected.issuedAt, actual.issuedAt);
+        assertEquals(expected.date, actual.date);
+        assertEquals(expected.weatherId, actual.weatherId);
+        assertEquals(expected.minTemp, actual.minTemp);
+        assertEquals(expected.maxTemp, actual.maxTemp);
+        assertEquals(expected.pressure, actual.pressure);
+        assertEquals(expected.humidity, actual.humidity);
+        assertEquals(expected.windSpeed, actual.windSpeed);
+        assertEquals(expected.degrees, actual.degrees);
+    }
+
+    public void testRoundTrip() throws Exception {
+        ForecastSeriesStore store = new ForecastSeriesStore(mSeriesDir);
+        List<List<ForecastSeriesStore.Sample>> syncs = createSyncs(50);
+        List<ForecastSeriesStore.Sample> expected = new ArrayList<ForecastSeriesStore.Sample>();
+        for (List<ForecastSeriesStore.Sample> sync : syncs) {
+            store.append(TestUtilities.TEST_LOCATION, sync);
+            expected.addAll(sync);
+        }
+
+        List<ForecastSeriesStore.Sample> actual = store.scan(TestUtilities.TEST_LOCATION,
+                Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals("Error: Not every sample was read back", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSampleEquals(expected.get(i), actual.get(i));
+        }
+
+        assertTrue("Error: Another location sees our samples",
+                store.scan("a" + TestUtilities.TEST_LOCATION, Long.MIN_VALUE, Long.MAX_VALUE,
+                        Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    public void testRangeScan() throws Exception {
+        ForecastSeriesStore store = new ForecastSeriesStore(mSeriesDir);
+        List<List<ForecastSeriesStore.Sample>> syncs = createSyncs(20);
+        for (List<ForecastSeriesStore.Sample> sync : syncs) {
+            store.append(TestUtilities.TEST_LOCATION, sync);
+        }
+
+        // Every forecast issued for one day, which is what "how did the forecast evolve" needs.
+        long date = syncs.get(10).get(0).date;
+        List<ForecastSeriesStore.Sample> forDay = store.scan(TestUtilities.TEST_LOCATION,
+                Long.MIN_VALUE, Long.MAX_VALUE, date, date + 1);
+        int expected = 0;
+        for (List<ForecastSeriesStore.Sample> sync : syncs) {
+            for (ForecastSeriesStore.Sample sample : sync) {
+                if (sample.date == date) expected++;
+            }
+        }
+        assertEquals(expected, forDay.size());
+        for (ForecastSeriesStore.Sample sample : forDay) {
+            assertEquals(date, sample.date);
+        }
+
+        // A single sync
+        long issuedAt = syncs.get(5).get(0).issuedAt;
+        List<ForecastSeriesStore.Sample> sync = store.scan(TestUtilities.TEST_LOCATION,
+                issuedAt, issuedAt + 1, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(FORECAST_DAYS, sync.size());
+        assertSampleEquals(syncs.get(5).get(0), sync.get(0));
+    }
+
+    public void testTornAppendIsDiscarded() throws Exception {
+        ForecastSeriesStore store = new ForecastSeriesStore(mSeriesDir);
+        List<List<ForecastSeriesStore.Sample>> syncs = createSyncs(3);
+        store.append(TestUtilities.TEST_LOCATION, syncs.get(0));
+
+        // Simulate a crash halfway through writing a block header.
+        File file = mSeriesDir.listFiles()[0];
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.seek(out.length());
+        out.write(new byte[]{0x46, 0x53, 0x42, 0x31, 0, 0});
+        out.close();
+
+        store = new ForecastSeriesStore(mSeriesDir);
+        assertEquals(FORECAST_DAYS, store.scan(TestUtilities.TEST_LOCATION, Long.MIN_VALUE,
+                Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        store.append(TestUtilities.TEST_LOCATION, syncs.get(1));
+        assertEquals("Error: Append after a torn block was lost", 2 * FORECAST_DAYS,
+                store.scan(TestUtilities.TEST_LOCATION, Long.MIN_VALUE, Long.MAX_VALUE,
+                        Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Compares the store with the obvious alternative, a SQLite table with one row per sample,
+     * for three months of syncs every three hours.  The numbers are logged; the test only
+     * fails if the store ends up larger than the table.
+     */
+    public void testSizeAndSpeedAgainstSqlite() throws Exception {
+        List<List<ForecastSeriesStore.Sample>> syncs = createSyncs(90 * 8);
+        int sampleCount = syncs.size() * FORECAST_DAYS;
+
+        ForecastSeriesStore store = new ForecastSeriesStore(mSeriesDir);
+        long start = SystemClock.elapsedRealtime();
+        for (List<ForecastSeriesStore.Sample> sync : syncs) {
+            store.append(TestUtilities.TEST_LOCATION, sync);
+        }
+        long storeAppendMillis = SystemClock.elapsedRealtime() - start;
+
+        File dbFile = new File(mContext.getCacheDir(), "series_benchmark.db");
+        dbFile.delete();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        try {
+            db.execSQL("CREATE TABLE series (location_id INTEGER NOT NULL, " +
+                    "issued_at INTEGER NOT NULL, date INTEGER NOT NULL, " +
+                    "weather_id INTEGER NOT NULL, min REAL NOT NULL, max REAL NOT NULL, " +
+                    "pressure REAL NOT NULL, humidity REAL NOT NULL, wind REAL NOT NULL, " +
+                    "degrees REAL NOT NULL)");
+            db.execSQL("CREATE INDEX series_issued_at ON series (location_id, issued_at)");
+            SQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO series VALUES (1, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            start = SystemClock.elapsedRealtime();
+            for (List<ForecastSeriesStore.Sample> sync : syncs) {
+                // One transaction per sync, like the sync adapter does.
+                db.beginTransaction();
+                try {
+                    for (ForecastSeriesStore.Sample sample : sync) {
+                        insert.bindLong(1, sample.issuedAt);
+                        insert.bindLong(2, sample.date);
+                        insert.bindLong(3, sample.weatherId);
+                        insert.bindDouble(4, sample.minTemp);
+                        insert.bindDouble(5, sample.maxTemp);
+                        insert.bindDouble(6, sample.pressure);
+                        insert.bindDouble(7, sample.humidity);
+                        insert.bindDouble(8, sample.windSpeed);
+                        insert.bindDouble(9, sample.degrees);
+                        insert.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            long sqliteInsertMillis = SystemClock.elapsedRealtime() - start;
+
+            // Scan the last week of syncs.
+            long issuedFrom = syncs.get(syncs.size() - 7 * 8).get(0).issuedAt;
+
+            start = SystemClock.elapsedRealtime();
+            int storeRows = store.scan(TestUtilities.TEST_LOCATION, issuedFrom, Long.MAX_VALUE,
+                    Long.MIN_VALUE, Long.MAX_VALUE).size();
+            long storeScanMillis = SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            Cursor cursor = db.rawQuery("SELECT * FROM series WHERE location_id = 1 " +
+                    "AND issued_at >= ?", new String[]{Long.toString(issuedFrom)});
+            int sqliteRows = 0;
+            while (cursor.moveToNext()) {
+                cursor.getDouble(4);
+                sqliteRows++;
+            }
+            cursor.close();
+            long sqliteScanMillis = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(sqliteRows, storeRows);
+
+            long storeBytes = store.getSize(TestUtilities.TEST_LOCATION);
+            long sqliteBytes = dbFile.length();
+            Log.d(LOG_TAG, sampleCount + " samples: store " + storeBytes + " bytes, append "
+                    + storeAppendMillis + "ms, scan " + storeScanMillis + "ms; SQLite "
+                    + sqliteBytes + " bytes, insert " + sqliteInsertMillis + "ms, scan "
+                    + sqliteScanMillis + "ms");
+            assertTrue("Error: The series store is larger than a plain SQLite table",
+                    storeBytes < sqliteBytes);
+        } finally {
+            db.close();
+            dbFile.delete();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+public class TestForecastSnapshot extends AndroidTestCase {
+    private static final String LOG_TAG = TestForecastSnapshot.class.getSimpleName();
+
+    private long mLocationRowId;
+    private int mTodayJulianDay;
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        Time time = new Time();
+        time.setToNow();
+        mTodayJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        ForecastSnapshot.delete(mContext);
+        super.tearDown();
+    }
+
+    private long dateOfDay(int day) {
+        return new Time().setJulianDay(mTodayJulianDay + day);
+    }
+
+    // Days from yesterday on, the maximum temperature climbing by one degree a day
+    private void insertDays(int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            values[i] = TestUtilities.createWeatherValues(mLocationRowId);
+            values[i].put(WeatherEntry.COLUMN_DATE, dateOfDay(i - 1));
+            values[i].put(WeatherEntry.COLUMN_MAX_TEMP, 20 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+    }
+
+    public void testSnapshot() {
+        insertDays(ForecastSnapshot.SNAPSHOT_DAYS + 5);
+        ForecastSnapshot.update(mContext, TestUtilities.TEST_LOCATION);
+
+        assertNull("Error: Snapshot returned for another location",
+                ForecastSnapshot.read(mContext, "nowhere"));
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull("Error: No snapshot written", snapshot);
+
+        // Any projection, in any order, the way the provider would answer it.
+        Cursor cursor = snapshot.toCursor(new String[]{
+                WeatherEntry.COLUMN_MAX_TEMP,
+                LocationEntry.COLUMN_LOCATION_SETTING,
+                WeatherEntry.COLUMN_DATE,
+                WeatherEntry.COLUMN_PRESSURE,
+                LocationEntry.COLUMN_COORD_LAT
+        }, System.currentTimeMillis());
+        assertEquals("Error: Yesterday is not in the snapshot, and only the first page is",
+                ForecastSnapshot.SNAPSHOT_DAYS, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(21.0, cursor.getDouble(0));
+        assertEquals(TestUtilities.TEST_LOCATION, cursor.getString(1));
+        assertEquals(dateOfDay(0), cursor.getLong(2));
+        assertTrue(cursor.isNull(3));
+        assertEquals(64.7488, cursor.getDouble(4));
+        cursor.close();
+
+        // Later start dates skip days, but the snapshot can't say what comes after its last.
+        Bundle bundle = snapshot.toForecastBundle(dateOfDay(2), 3);
+        assertNotNull(bundle);
+        assertEquals(dateOfDay(2), bundle.getLongArray(WeatherContract.KEY_DATES)[0]);
+        assertEquals(23.0, bundle.getDoubleArray(WeatherContract.KEY_MAX_TEMPS)[0]);
+        assertNull(snapshot.toForecastBundle(dateOfDay(0), ForecastSnapshot.SNAPSHOT_DAYS + 1));
+
+        // Writes through the provider delete it.
+        ContentValues update = new ContentValues();
+        update.put(WeatherEntry.COLUMN_MAX_TEMP, 100);
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, update,
+                WeatherEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(dateOfDay(0))});
+        assertNull("Error: Snapshot outlived a write",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+    }
+
+    public void testSnapshotKeptByOtherWrites() throws Exception {
+        insertDays(5);
+        ForecastSnapshot.update(mContext, TestUtilities.TEST_LOCATION);
+
+        // Compacting yesterday into the history, as the daily compaction does
+        assertEquals(1, new HistoryCompactor(mContext.getContentResolver())
+                .compact(dateOfDay(0)));
+        // Another location, and its forecast
+        ContentValues location = TestUtilities.createNorthPoleLocationValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, "elsewhere");
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                location);
+        ContentValues elsewhere = TestUtilities.createWeatherValues(
+                ContentUris.parseId(locationUri));
+        elsewhere.put(WeatherEntry.COLUMN_DATE, dateOfDay(1));
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, elsewhere);
+        // A past day of the snapshot's location
+        ContentValues past = TestUtilities.createWeatherValues(mLocationRowId);
+        past.put(WeatherEntry.COLUMN_DATE, dateOfDay(-3));
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, past);
+        assertNotNull("Error: Snapshot deleted by writes to days it doesn't show",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+
+        ContentValues today = TestUtilities.createWeatherValues(mLocationRowId);
+        today.put(WeatherEntry.COLUMN_DATE, dateOfDay(0));
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, today);
+        assertNull("Error: Snapshot outlived a write to today",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+    }
+
+    public void testCompleteSnapshot() {
+        insertDays(4);
+        ForecastSnapshot.update(mContext, TestUtilities.TEST_LOCATION);
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION);
+
+        // Everything the database had fits, so the snapshot knows there is no more.
+        Bundle bundle = snapshot.toForecastBundle(System.currentTimeMillis(), 7);
+        assertNotNull(bundle);
+        assertEquals(3, bundle.getLongArray(WeatherContract.KEY_DATES).length);
+        assertEquals(3, ForecastBundle.query(mContext, TestUtilities.TEST_LOCATION,
+                System.currentTimeMillis(), 7).getCount());
+    }
+
+    /**
+     * Times what the forecast list waits for before its first frame: reading the snapshot,
+     * against the first page from a database that still has to be opened.  The numbers are
+     * logged.
+     */
+    public void testSnapshotBenchmark() {
+        insertDays(ForecastSnapshot.SNAPSHOT_DAYS + 5);
+        ForecastSnapshot.update(mContext, TestUtilities.TEST_LOCATION);
+
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION)
+                .toCursor(ForecastSnapshot.SNAPSHOT_COLUMNS, System.currentTimeMillis());
+        assertEquals(ForecastSnapshot.SNAPSHOT_DAYS, cursor.getCount());
+        cursor.close();
+        long snapshotMillis = SystemClock.elapsedRealtime() - start;
+
+        // Closed like a cold start finds it; the next query opens it again.
+        WeatherDbHelper.getInstance(mContext).close();
+        start = SystemClock.elapsedRealtime();
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(TestUtilities.TEST_LOCATION,
+                        System.currentTimeMillis(), ForecastSnapshot.SNAPSHOT_DAYS),
+                ForecastSnapshot.SNAPSHOT_COLUMNS, null, null, null);
+        assertEquals(ForecastSnapshot.SNAPSHOT_DAYS, cursor.getCount());
+        cursor.close();
+        long databaseMillis = SystemClock.elapsedRealtime() - start;
+
+        Log.d(LOG_TAG, "First page from the snapshot " + snapshotMillis
+                + "ms, from the database " + databaseMillis + "ms");
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestForecastStore extends AndroidTestCase {
+    private static final String LOG_TAG = TestForecastStore.class.getSimpleName();
+
+    private static final String TEST_WINDOW_FILE = "test_forecast.window";
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int DAYS = 14;
+
+    private final long mStartDate = WeatherContract.normalizeDate(TestUtilities.TEST_DATE);
+    private long mLocationId;
+    private File mWindowFile;
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        mWindowFile = new File(mContext.getCacheDir(), TEST_WINDOW_FILE);
+        mWindowFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        mWindowFile.delete();
+        super.tearDown();
+    }
+
+    private ForecastRecord[] createRecords(int days) {
+        ForecastRecord[] records = ForecastRecord.newArray(days);
+        for (int i = 0; i < days; i++) {
+            records[i].set(mStartDate + i * DAY_IN_MILLIS, 800 + i, i - 5.25, i + 10.5, 60 + i,
+                    1010.75, 3.5, 90 + i);
+        }
+        return records;
+    }
+
+    private static void assertRecordEquals(ForecastRecord expected, ForecastRecord actual) {
+        assertEquals(expected.date, actual.date);
+        assertEquals(expected.weatherId, actual.weatherId);
+        assertEquals(expected.minTemp, actual.minTemp);
+        assertEquals(expected.maxTemp, actual.maxTemp);
+        assertEquals(expected.humidity, actual.humidity);
+        assertEquals(expected.pressure, actual.pressure);
+        assertEquals(expected.windSpeed, actual.windSpeed);
+        assertEquals(expected.degrees, actual.degrees);
+    }
+
+    /**
+     * Replaces the days from startDate on.  The database store can only be read, its window is
+     * written through the provider as the sync adapter does.
+     */
+    private void put(ForecastStore store, long startDate, ForecastRecord[] records, int count) {
+        if (store instanceof WritableForecastStore) {
+            ((WritableForecastStore) store).put(TestUtilities.TEST_LOCATION, startDate, records,
+                    count);
+            return;
+        }
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(mLocationId), Long.toString(startDate)});
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ForecastRecord record = records[i];
+            values[i] = new ContentValues();
+            values[i].put(WeatherEntry.COLUMN_LOC_KEY, mLocationId);
+            values[i].put(WeatherEntry.COLUMN_DATE, record.date);
+            values[i].put(WeatherEntry.COLUMN_WEATHER_ID, record.weatherId);
+            values[i].put(WeatherEntry.COLUMN_MIN_TEMP, record.minTemp);
+            values[i].put(WeatherEntry.COLUMN_MAX_TEMP, record.maxTemp);
+            values[i].put(WeatherEntry.COLUMN_HUMIDITY, record.humidity);
+            values[i].put(WeatherEntry.COLUMN_PRESSURE, record.pressure);
+            values[i].put(WeatherEntry.COLUMN_WIND_SPEED, record.windSpeed);
+            values[i].put(WeatherEntry.COLUMN_DEGREES, record.degrees);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+    }
+
+    /**
+     * What every store must do with a window it holds.
+     */
+    private void checkStore(ForecastStore store) {
+        ForecastRecord[] records = createRecords(DAYS);
+        put(store, mStartDate, records, DAYS);
+
+        ForecastRecord record = new ForecastRecord();
+        assertEquals(1, store.lookup(TestUtilities.TEST_LOCATION, records[3].date, record));
+        assertRecordEquals(records[3], record);
+        assertEquals("Error: Found a day in between two days", 0,
+                store.lookup(TestUtilities.TEST_LOCATION, records[3].date + 1, record));
+        assertEquals("Error: Found a day after the last one", 0,
+                store.lookup(TestUtilities.TEST_LOCATION, records[DAYS - 1].date + DAY_IN_MILLIS,
+                        record));
+
+        ForecastRecord[] read = ForecastRecord.newArray(DAYS);
+        assertEquals(5, store.read(TestUtilities.TEST_LOCATION, records[2].date, 5, read));
+        for (int i = 0; i < 5; i++) {
+            assertRecordEquals(records[i + 2], read[i]);
+        }
+        // Starting in between two days starts with the later one.
+        assertEquals(2, store.read(TestUtilities.TEST_LOCATION, records[DAYS - 3].date + 1, 5,
+                read));
+        assertRecordEquals(records[DAYS - 2], read[0]);
+
+        // A shorter forecast replaces the days from its start on.
+        ForecastRecord[] shorter = {records[7], records[8], records[9]};
+        put(store, records[7].date, shorter, shorter.length);
+        assertEquals(3, store.read(TestUtilities.TEST_LOCATION, records[7].date, DAYS, read));
+        assertEquals(0, store.lookup(TestUtilities.TEST_LOCATION, records[10].date, record));
+    }
+
+    public void testSqliteForecastStore() {
+        SqliteForecastStore store = new SqliteForecastStore(WeatherDbHelper.getInstance(mContext));
+        checkStore(store);
+    }
+
+    public void testMappedForecastStore() throws IOException {
+        MappedForecastStore store = new MappedForecastStore(mWindowFile);
+        assertEquals(MappedForecastStore.FILE_BYTES, mWindowFile.length());
+        checkStore(store);
+        store.close();
+    }
+
+    public void testMappedForecastStoreCoverage() throws IOException {
+        MappedForecastStore store = new MappedForecastStore(mWindowFile);
+        ForecastRecord[] read = ForecastRecord.newArray(MappedForecastStore.WINDOW_DAYS);
+        ForecastRecord record = new ForecastRecord();
+        assertEquals("Error: Answered for a location it doesn't hold", ForecastStore.NOT_STORED,
+                store.read(TestUtilities.TEST_LOCATION, mStartDate, 3, read));
+
+        // More days than fit: the window knows about the first WINDOW_DAYS only.
+        int days = MappedForecastStore.WINDOW_DAYS + 1;
+        ForecastRecord[] records = createRecords(days);
+        store.put(TestUtilities.TEST_LOCATION, mStartDate, records, days);
+        assertEquals("Error: Answered for before the start of the window",
+                ForecastStore.NOT_STORED,
+                store.lookup(TestUtilities.TEST_LOCATION, mStartDate - DAY_IN_MILLIS, record));
+        assertEquals(ForecastStore.NOT_STORED, store.read(TestUtilities.TEST_LOCATION,
+                records[days - 2].date, 2, read));
+        assertEquals(ForecastStore.NOT_STORED, store.lookup(TestUtilities.TEST_LOCATION,
+                records[days - 1].date, record));
+        assertEquals(1, store.read(TestUtilities.TEST_LOCATION, records[days - 2].date, 1, read));
+
+        // The window survives reopening the file, but not invalidation.
+        store.close();
+        store = new MappedForecastStore(mWindowFile);
+        assertEquals(1, store.lookup(TestUtilities.TEST_LOCATION, records[4].date, record));
+        assertRecordEquals(records[4], record);
+        store.invalidate();
+        assertEquals(ForecastStore.NOT_STORED,
+                store.lookup(TestUtilities.TEST_LOCATION, records[4].date, record));
+
+        // Once every slot is taken, the oldest is reused.
+        for (int slot = 0; slot <= MappedForecastStore.SLOTS; slot++) {
+            store.put("location" + slot, mStartDate, records, 1);
+        }
+        assertEquals(ForecastStore.NOT_STORED, store.read("location0", mStartDate, 1, read));
+        assertEquals(1, store.read("location" + MappedForecastStore.SLOTS, mStartDate, 1, read));
+        store.close();
+    }
+
+    private interface Operation {
+        void run(ForecastStore store, ForecastRecord[] records, ForecastRecord[] read);
+    }
+
+    private long time(ForecastStore store, int iterations, Operation operation) {
+        ForecastRecord[] records = createRecords(DAYS);
+        ForecastRecord[] read = ForecastRecord.newArray(DAYS);
+        put(store, mStartDate, records, DAYS);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(store, records, read);
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    /**
+     * Times both stores on writing the window, through the provider for the database, looking
+     * up a day and reading a week.  The numbers are logged, average nanoseconds per operation.
+     */
+    public void testForecastStoreBenchmark() throws IOException {
+        Operation insert = new Operation() {
+            @Override
+            public void run(ForecastStore store, ForecastRecord[] records, ForecastRecord[] read) {
+                put(store, mStartDate, records, DAYS);
+            }
+        };
+        Operation lookup = new Operation() {
+            @Override
+            public void run(ForecastStore store, ForecastRecord[] records, ForecastRecord[] read) {
+                assertEquals(1, store.lookup(TestUtilities.TEST_LOCATION, records[5].date,
+                        read[0]));
+            }
+        };
+        Operation range = new Operation() {
+            @Override
+            public void run(ForecastStore store, ForecastRecord[] records, ForecastRecord[] read) {
+                assertEquals(7, store.read(TestUtilities.TEST_LOCATION, mStartDate, 7, read));
+            }
+        };
+
+        ForecastStore[] stores = {
+                new SqliteForecastStore(WeatherDbHelper.getInstance(mContext)),
+                new MappedForecastStore(mWindowFile)
+        };
+        for (ForecastStore store : stores) {
+            String name = store.getClass().getSimpleName();
+            Log.d(LOG_TAG, name + ": insert " + time(store, 50, insert) + "ns, lookup "
+                    + time(store, 500, lookup) + "ns, range " + time(store, 500, range) + "ns");
+            store.close();
+        }
+    }
+}
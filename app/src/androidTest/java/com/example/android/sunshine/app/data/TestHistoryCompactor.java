@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract.HistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+public class TestHistoryCompactor extends AndroidTestCase {
+
+    private long mLocationRowId;
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(HistoryEntry.WEEKLY_CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(HistoryEntry.MONTHLY_CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private static long date(int year, int month, int monthDay) {
+        Time time = new Time();
+        time.set(0, 0, 0, monthDay, month, year);
+        return WeatherContract.normalizeDate(time.normalize(true));
+    }
+
+    private void insertDay(long date, double min, double max, int weatherId) {
+        ContentValues values = TestUtilities.createWeatherValues(mLocationRowId);
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, min);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, max);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, values);
+    }
+
+    private Cursor queryHistory(Uri uri, long periodStart) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null,
+                HistoryEntry.COLUMN_PERIOD_START + " = ?",
+                new String[]{Long.toString(periodStart)}, null);
+        assertNotNull(cursor);
+        assertTrue("Error: No history row for period " + periodStart, cursor.moveToFirst());
+        return cursor;
+    }
+
+    private static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+
+    private static double getDouble(Cursor cursor, String column) {
+        return cursor.getDouble(cursor.getColumnIndex(column));
+    }
+
+    public void testWeekAndMonthBoundaries() {
+        HistoryCompactor compactor = new HistoryCompactor(mContext.getContentResolver());
+        // December 1st, 2014 was a Monday
+        assertEquals(date(2014, 11, 1), compactor.getWeekStart(date(2014, 11, 1)));
+        assertEquals(date(2014, 11, 1), compactor.getWeekStart(date(2014, 11, 7)));
+        assertEquals(date(2014, 11, 8), compactor.getWeekStart(date(2014, 11, 8)));
+        // Weeks straddle months
+        assertEquals(date(2014, 11, 29), compactor.getWeekStart(date(2015, 0, 4)));
+        assertEquals(date(2014, 11, 1), compactor.getMonthStart(date(2014, 11, 31)));
+        assertEquals(date(2015, 0, 1), compactor.getMonthStart(date(2015, 0, 1)));
+    }
+
+    public void testCompaction() throws Exception {
+        // Two full weeks of December, alternating clear and rainy days
+        for (int i = 0; i < 14; i++) {
+            insertDay(date(2014, 11, 1 + i), i, 10 + i, i % 2 == 0 ? 800 : 500);
+        }
+        // The 1st to 3rd of January
+        for (int i = 0; i < 3; i++) {
+            insertDay(date(2015, 0, 1 + i), -5, 5, 601);
+        }
+
+        HistoryCompactor compactor = new HistoryCompactor(mContext.getContentResolver());
+        assertEquals("Error: Unexpected number of days compacted",
+                16, compactor.compact(date(2015, 0, 3)));
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI, null, null,
+                null, null);
+        assertEquals("Error: Compacted days were not deleted", 1, cursor.getCount());
+        cursor.close();
+
+        cursor = queryHistory(HistoryEntry.WEEKLY_CONTENT_URI, date(2014, 11, 8));
+        assertEquals(7, getInt(cursor, HistoryEntry.COLUMN_DAY_COUNT));
+        assertEquals(7.0, getDouble(cursor, HistoryEntry.COLUMN_MIN_TEMP));
+        assertEquals(23.0, getDouble(cursor, HistoryEntry.COLUMN_MAX_TEMP));
+        assertEquals(10.0, getDouble(cursor, HistoryEntry.COLUMN_MEAN_MIN_TEMP));
+        assertEquals(20.0, getDouble(cursor, HistoryEntry.COLUMN_MEAN_MAX_TEMP));
+        assertEquals(3, getInt(cursor,
+                HistoryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_CLEAR]));
+        assertEquals(4, getInt(cursor,
+                HistoryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_RAIN]));
+        cursor.close();
+
+        cursor = queryHistory(HistoryEntry.MONTHLY_CONTENT_URI, date(2014, 11, 1));
+        assertEquals(14, getInt(cursor, HistoryEntry.COLUMN_DAY_COUNT));
+        assertEquals(0.0, getDouble(cursor, HistoryEntry.COLUMN_MIN_TEMP));
+        assertEquals(23.0, getDouble(cursor, HistoryEntry.COLUMN_MAX_TEMP));
+        cursor.close();
+
+        // A later run merges into the periods that were already started.
+        insertDay(date(2015, 0, 4), -15, -5, 602);
+        assertEquals(2, compactor.compact(date(2015, 0, 5)));
+
+        cursor = queryHistory(HistoryEntry.WEEKLY_CONTENT_URI, date(2014, 11, 29));
+        assertEquals(4, getInt(cursor, HistoryEntry.COLUMN_DAY_COUNT));
+        assertEquals(-15.0, getDouble(cursor, HistoryEntry.COLUMN_MIN_TEMP));
+        assertEquals(5.0, getDouble(cursor, HistoryEntry.COLUMN_MAX_TEMP));
+        assertEquals(-7.5, getDouble(cursor, HistoryEntry.COLUMN_MEAN_MIN_TEMP));
+        assertEquals(4, getInt(cursor,
+                HistoryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_SNOW]));
+        cursor.close();
+
+        cursor = queryHistory(
+                HistoryEntry.buildMonthlyHistoryLocation(TestUtilities.TEST_LOCATION),
+                date(2015, 0, 1));
+        assertEquals(4, getInt(cursor, HistoryEntry.COLUMN_DAY_COUNT));
+        cursor.close();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+
+public class TestPayloadArchive extends AndroidTestCase {
+
+    private static final String TEST_PAYLOAD = "{\"cod\":\"200\",\"list\":[]}";
+
+    private void deleteTheArchive() {
+        File dir = new File(mContext.getFilesDir(), PayloadArchive.ARCHIVE_DIR);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteTheArchive();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteTheArchive();
+        super.tearDown();
+    }
+
+    public void testStoreAndGetLatest() throws Exception {
+        PayloadArchive archive = new PayloadArchive(mContext);
+        assertNull("Error: Empty archive returned a payload",
+                archive.getLatest(TestUtilities.TEST_LOCATION));
+
+        archive.store(TestUtilities.TEST_LOCATION, "{}", 1000L);
+        archive.store(TestUtilities.TEST_LOCATION, TEST_PAYLOAD, 2000L);
+
+        PayloadArchive.Payload latest = archive.getLatest(TestUtilities.TEST_LOCATION);
+        assertNotNull("Error: Archived payload not found", latest);
+        assertEquals("Error: Latest payload is not the newest one", 2000L, latest.fetchedAt);
+        assertEquals("Error: Payload didn't survive the round trip", TEST_PAYLOAD, latest.json);
+    }
+
+    public void testLocationsDoNotCollide() throws Exception {
+        PayloadArchive archive = new PayloadArchive(mContext);
+        // "b" is a suffix of "a_b", which must not make their payloads visible to each other.
+        archive.store("a_b", TEST_PAYLOAD, 1000L);
+        assertNull("Error: Payload returned for the wrong location", archive.getLatest("b"));
+
+        archive.store("/North Pole", TEST_PAYLOAD, 1000L);
+        assertNotNull("Error: Location with reserved characters not archived",
+                archive.getLatest("/North Pole"));
+    }
+
+    public void testPruning() throws Exception {
+        PayloadArchive archive = new PayloadArchive(mContext);
+        int toStore = PayloadArchive.MAX_PAYLOADS_PER_LOCATION + 2;
+        for (int i = 0; i < toStore; i++) {
+            archive.store(TestUtilities.TEST_LOCATION, TEST_PAYLOAD, 1000L + i);
+        }
+        File dir = new File(mContext.getFilesDir(), PayloadArchive.ARCHIVE_DIR);
+        assertEquals("Error: Archive was not pruned to the per-location limit",
+                PayloadArchive.MAX_PAYLOADS_PER_LOCATION, dir.listFiles().length);
+        assertEquals("Error: Pruning dropped the newest payload",
+                1000L + toStore - 1, archive.getLatest(TestUtilities.TEST_LOCATION).fetchedAt);
+    }
+
+    public void testReplayRequest() {
+        PayloadArchive archive = new PayloadArchive(mContext);
+        assertFalse(archive.isReplayRequested());
+        archive.requestReplay();
+        assertTrue("Error: Replay request was not recorded", archive.isReplayRequested());
+        archive.clearReplayRequest();
+        assertFalse("Error: Replay request was not cleared", archive.isReplayRequested());
+    }
+}
@@ -25,10 +25,17 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
 import android.test.AndroidTestCase;
+import android.text.format.Time;
 import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.core.LocalDays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TimeZone;
 
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
@@ -56,6 +63,16 @@ public class TestProvider extends AndroidTestCase {
                 null,
                 null
         );
+        mContext.getContentResolver().delete(
+                WeatherContract.HistoryEntry.WEEKLY_CONTENT_URI,
+                null,
+                null
+        );
+        mContext.getContentResolver().delete(
+                WeatherContract.HistoryEntry.MONTHLY_CONTENT_URI,
+                null,
+                null
+        );
         mContext.getContentResolver().delete(
                 LocationEntry.CONTENT_URI,
                 null,
@@ -179,7 +196,10 @@ public class TestProvider extends AndroidTestCase {
         // Fantastic.  Now that we have a location, add some weather!
         ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
 
-        long weatherRowId = db.insert(WeatherEntry.TABLE_NAME, null, weatherValues);
+        // Straight into the table, so stored the way the provider stores it.
+        long weatherRowId = db.insert(
+                WeatherDbHelper.ensureWeatherPartition(db, TestUtilities.TEST_DATE), null,
+                WeatherRowCodec.encode(weatherValues));
         assertTrue("Unable to Insert WeatherEntry into the Database", weatherRowId != -1);
 
         db.close();
@@ -437,7 +457,6 @@ public class TestProvider extends AndroidTestCase {
             weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1.3 - 0.01 * (float) i);
             weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75 + i);
             weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 65 - i);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
             weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5 + 0.2 * (float) i);
             weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 321);
             returnContentValues[i] = weatherValues;
@@ -512,4 +531,267 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        Pages through the forecast of a location with the after/limit query parameters, and
+        checks that the pages line up without gaps or duplicates.
+     */
+    public void testKeysetPaging() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        final int pageSize = 4;
+        String[] projection = {WeatherEntry.COLUMN_DATE};
+        Cursor page = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(
+                        TestUtilities.TEST_LOCATION, TestUtilities.TEST_DATE, pageSize),
+                projection, null, null, null);
+
+        int seen = 0;
+        long lastDate = 0;
+        while (page.getCount() > 0) {
+            assertTrue("Error: Page is larger than the limit", page.getCount() <= pageSize);
+            while (page.moveToNext()) {
+                long date = page.getLong(0);
+                assertTrue("Error: Pages overlap or are out of order", date > lastDate);
+                assertEquals("Error: Page skipped a row",
+                        WeatherContract.normalizeDate(
+                                bulkInsertContentValues[seen].getAsLong(WeatherEntry.COLUMN_DATE)),
+                        date);
+                lastDate = date;
+                seen++;
+            }
+            page.close();
+            page = mContext.getContentResolver().query(
+                    WeatherEntry.buildWeatherLocationPage(
+                            TestUtilities.TEST_LOCATION, lastDate, pageSize),
+                    projection, null, null, null);
+        }
+        page.close();
+        assertEquals("Error: Paging didn't return every row", BULK_INSERT_RECORDS_TO_INSERT, seen);
+    }
+
+    /*
+        Checks the forecast served through ContentProvider.call(), and that the cache behind it
+        doesn't outlive a change to the weather data.
+     */
+    public void testForecastBundle() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        ForecastBundle forecast = ForecastBundle.query(mContext, TestUtilities.TEST_LOCATION,
+                TestUtilities.TEST_DATE, 3);
+        assertEquals("Error: Wrong number of days returned", 3, forecast.getCount());
+        for (int i = 0; i < 3; i++) {
+            ContentValues expected = bulkInsertContentValues[i];
+            assertEquals(WeatherContract.normalizeDate(
+                    expected.getAsLong(WeatherEntry.COLUMN_DATE)), forecast.getDate(i));
+            assertEquals((int) expected.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                    forecast.getWeatherId(i));
+            assertEquals(expected.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                    forecast.getMaxTemp(i));
+            assertEquals(expected.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                    forecast.getMinTemp(i));
+        }
+
+        // Update the first day; the next call must not be answered from the cache.
+        ContentValues update = new ContentValues();
+        update.put(WeatherEntry.COLUMN_MAX_TEMP, 100);
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, update,
+                WeatherEntry.COLUMN_DATE + " = ?",
+                new String[]{Long.toString(forecast.getDate(0))});
+        forecast = ForecastBundle.query(mContext, TestUtilities.TEST_LOCATION,
+                TestUtilities.TEST_DATE, 3);
+        assertEquals("Error: Stale forecast served after an update", 100.0, forecast.getMaxTemp(0));
+
+        assertEquals("Error: Forecast returned for an unknown location", 0,
+                ForecastBundle.query(mContext, "nowhere", TestUtilities.TEST_DATE, 3).getCount());
+    }
+
+    /*
+        Searches the forecasts of two locations at once, and checks that the statement behind
+        the search URI is answered from an index rather than by scanning the weather table.
+     */
+    public void testSearch() {
+        long northPoleRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(northPoleRowId));
+
+        ContentValues londonValues = TestUtilities.createNorthPoleLocationValues();
+        londonValues.put(LocationEntry.COLUMN_LOCATION_SETTING, "London, UK");
+        londonValues.put(LocationEntry.COLUMN_CITY_NAME, "London");
+        long londonRowId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, londonValues));
+        ContentValues[] londonWeather = createBulkInsertWeatherValues(londonRowId);
+        for (ContentValues values : londonWeather) {
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, 501);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 20);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, londonWeather);
+
+        final long dayInMillis = 1000 * 60 * 60 * 24;
+        final long end = TestUtilities.TEST_DATE + BULK_INSERT_RECORDS_TO_INSERT * dayInMillis;
+        String[] projection = {LocationEntry.COLUMN_LOCATION_SETTING, WeatherEntry.COLUMN_MAX_TEMP};
+
+        // Rain anywhere: every day in London, never at the North Pole.
+        Cursor cursor = mContext.getContentResolver().query(
+                new WeatherContract.SearchEntry.Builder(TestUtilities.TEST_DATE, end)
+                        .condition(WeatherContract.BUCKET_RAIN).build(),
+                projection, null, null, null);
+        assertEquals("Error: Wrong number of rainy days", BULK_INSERT_RECORDS_TO_INSERT,
+                cursor.getCount());
+        while (cursor.moveToNext()) {
+            assertEquals("London, UK", cursor.getString(0));
+        }
+        cursor.close();
+
+        // Above 80 degrees: the North Pole from the seventh day on.
+        cursor = mContext.getContentResolver().query(
+                new WeatherContract.SearchEntry.Builder(TestUtilities.TEST_DATE, end)
+                        .maxTempAbove(80).build(),
+                projection, null, null, null);
+        assertEquals("Error: Wrong number of hot days", 4, cursor.getCount());
+        cursor.close();
+
+        // Predicates combine, and the date range limits the days searched.
+        cursor = mContext.getContentResolver().query(
+                new WeatherContract.SearchEntry.Builder(TestUtilities.TEST_DATE,
+                        TestUtilities.TEST_DATE + 5 * dayInMillis)
+                        .condition(WeatherContract.BUCKET_DRIZZLE).maxTempBelow(77).build(),
+                projection, null, null, null);
+        assertEquals("Error: Predicates were not combined", 2, cursor.getCount());
+        cursor.close();
+
+        ArrayList<String> selectionArgs = new ArrayList<String>();
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        String sql = WeatherProvider.buildSearchQuery(db,
+                new WeatherContract.SearchEntry.Builder(TestUtilities.TEST_DATE, end)
+                        .condition(WeatherContract.BUCKET_RAIN).maxTempAbove(15).build(),
+                projection, null, selectionArgs);
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql,
+                selectionArgs.toArray(new String[selectionArgs.size()]));
+        int detailColumn = plan.getColumnIndex("detail");
+        boolean partitionSearched = false;
+        while (plan.moveToNext()) {
+            String detail = plan.getString(detailColumn);
+            Log.d(LOG_TAG, "Search plan: " + detail);
+            // The rows live in the monthly partitions behind the weather view.
+            if (detail.matches(".*\\bweather_[0-9]{6}\\b.*")) {
+                assertTrue("Error: The search scans a weather partition: " + detail,
+                        detail.contains("USING"));
+                partitionSearched = true;
+            }
+        }
+        assertTrue("Error: The search plan doesn't read the weather partitions",
+                partitionSearched);
+        plan.close();
+        db.close();
+    }
+
+    /*
+        Spreads rows over three months and checks that they are read back through the weather
+        view, that retention drops whole months, that a row whose date moves to another
+        month follows it, and that a month emptied by a delete is dropped.
+     */
+    public void testMonthlyPartitions() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        Time time = new Time();
+        time.set(0, 0, 0, 10, 0, 2015);
+        long january = WeatherContract.normalizeDate(time.normalize(true));
+        time.set(0, 0, 0, 10, 1, 2015);
+        long february = WeatherContract.normalizeDate(time.normalize(true));
+        time.set(0, 0, 0, 1, 2, 2015);
+        long marchFirst = WeatherContract.normalizeDate(time.normalize(true));
+        time.set(0, 0, 0, 10, 2, 2015);
+        long march = WeatherContract.normalizeDate(time.normalize(true));
+
+        ContentValues[] values = new ContentValues[3];
+        long[] dates = {january, february, march};
+        for (int i = 0; i < dates.length; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherEntry.COLUMN_DATE, dates[i]);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        assertEquals("Error: Expected one partition per month", 3,
+                WeatherDbHelper.getWeatherPartitions(db).size());
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID}, null, null, null);
+        assertEquals(3, cursor.getCount());
+        HashSet<Long> ids = new HashSet<Long>();
+        while (cursor.moveToNext()) {
+            assertTrue("Error: Row ids are not unique across partitions",
+                    ids.add(cursor.getLong(0)));
+        }
+        cursor.close();
+
+        // A range of dates reads the partitions holding it, each through its index, without
+        // relying on SQLite to take the WHERE terms into the view.
+        String sql = "SELECT * FROM " + WeatherProvider.getWeatherByLocationSettingTables(db,
+                february, Long.MAX_VALUE) + " WHERE " + LocationEntry.TABLE_NAME +
+                "." + LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                WeatherEntry.TABLE_NAME + "." + WeatherEntry.COLUMN_DATE + " >= ?";
+        String[] args = {TestUtilities.TEST_LOCATION, Long.toString(february)};
+        cursor = db.rawQuery(sql, args);
+        assertEquals("Error: Expected February's and March's rows", 2, cursor.getCount());
+        cursor.close();
+        assertFalse("Error: January's partition was read", sql.contains(
+                WeatherDbHelper.getWeatherPartition(january)));
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        int detailColumn = plan.getColumnIndex("detail");
+        while (plan.moveToNext()) {
+            String detail = plan.getString(detailColumn);
+            Log.d(LOG_TAG, "Range plan: " + detail);
+            if (detail.matches(".*\\bweather_[0-9]{6}\\b.*")) {
+                assertTrue("Error: The range scans a weather partition: " + detail,
+                        detail.contains("USING"));
+            }
+        }
+        plan.close();
+
+        // The partitions follow the dates in UTC, whatever zone the device is in.
+        TimeZone zone = TimeZone.getDefault();
+        String partition = WeatherDbHelper.getWeatherPartition(marchFirst);
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+            LocalDays.resetDefault();
+            assertEquals(partition, WeatherDbHelper.getWeatherPartition(marchFirst));
+        } finally {
+            TimeZone.setDefault(zone);
+            LocalDays.resetDefault();
+        }
+
+        // Moving January's row into February puts it in February's partition.
+        ContentValues update = new ContentValues();
+        update.put(WeatherEntry.COLUMN_DATE, february + 24 * 60 * 60 * 1000);
+        assertEquals(1, mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, update,
+                WeatherEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(january)}));
+        cursor = db.query(WeatherDbHelper.getWeatherPartition(february), null, null, null,
+                null, null, null);
+        assertEquals("Error: The updated row didn't move to its new month", 2, cursor.getCount());
+        cursor.close();
+
+        // Everything before March goes, by dropping January's and February's partitions.
+        assertEquals(2, mContext.getContentResolver().delete(
+                WeatherEntry.buildWeatherBefore(marchFirst), null, null));
+        assertEquals(Collections.singletonList(WeatherDbHelper.getWeatherPartition(march)),
+                WeatherDbHelper.getWeatherPartitions(db));
+        cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_DATE}, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(march, cursor.getLong(0));
+        assertFalse(cursor.moveToNext());
+        cursor.close();
+
+        // Deleting the last row of a month drops its partition as well.
+        assertEquals(1, mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(march)}));
+        assertTrue("Error: An emptied partition was kept",
+                WeatherDbHelper.getWeatherPartitions(db).isEmpty());
+        db.close();
+    }
 }
@@ -36,6 +36,16 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION_QUERY, TEST_DATE);
     // content://com.example.android.sunshine.app/location"
     private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    // content://com.example.android.sunshine.app/history/weekly"
+    private static final Uri TEST_WEEKLY_HISTORY_DIR = WeatherContract.HistoryEntry.WEEKLY_CONTENT_URI;
+    private static final Uri TEST_WEEKLY_HISTORY_WITH_LOCATION_DIR = WeatherContract.HistoryEntry.buildWeeklyHistoryLocation(LOCATION_QUERY);
+    // content://com.example.android.sunshine.app/history/monthly"
+    private static final Uri TEST_MONTHLY_HISTORY_DIR = WeatherContract.HistoryEntry.MONTHLY_CONTENT_URI;
+    private static final Uri TEST_MONTHLY_HISTORY_WITH_LOCATION_DIR = WeatherContract.HistoryEntry.buildMonthlyHistoryLocation(LOCATION_QUERY);
+    // content://com.example.android.sunshine.app/summary/London%2C%20UK?start=...&end=..."
+    private static final Uri TEST_SUMMARY_WITH_LOCATION_DIR = WeatherContract.SummaryEntry.buildSummaryUri(LOCATION_QUERY, TEST_DATE, TEST_DATE);
+    // content://com.example.android.sunshine.app/search?start=...&end=..."
+    private static final Uri TEST_SEARCH_DIR = new WeatherContract.SearchEntry.Builder(TEST_DATE, TEST_DATE).build();
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -53,5 +63,17 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR), WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
         assertEquals("Error: The LOCATION URI was matched incorrectly.",
                 testMatcher.match(TEST_LOCATION_DIR), WeatherProvider.LOCATION);
+        assertEquals("Error: The WEEKLY HISTORY URI was matched incorrectly.",
+                testMatcher.match(TEST_WEEKLY_HISTORY_DIR), WeatherProvider.HISTORY_WEEKLY);
+        assertEquals("Error: The WEEKLY HISTORY WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(TEST_WEEKLY_HISTORY_WITH_LOCATION_DIR), WeatherProvider.HISTORY_WEEKLY_WITH_LOCATION);
+        assertEquals("Error: The MONTHLY HISTORY URI was matched incorrectly.",
+                testMatcher.match(TEST_MONTHLY_HISTORY_DIR), WeatherProvider.HISTORY_MONTHLY);
+        assertEquals("Error: The MONTHLY HISTORY WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(TEST_MONTHLY_HISTORY_WITH_LOCATION_DIR), WeatherProvider.HISTORY_MONTHLY_WITH_LOCATION);
+        assertEquals("Error: The SUMMARY WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(TEST_SUMMARY_WITH_LOCATION_DIR), WeatherProvider.SUMMARY_WITH_LOCATION);
+        assertEquals("Error: The SEARCH URI was matched incorrectly.",
+                testMatcher.match(TEST_SEARCH_DIR), WeatherProvider.SEARCH);
     }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.SummaryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+public class TestWeatherSummary extends AndroidTestCase {
+    private static final String LOG_TAG = TestWeatherSummary.class.getSimpleName();
+
+    private long mLocationRowId;
+    private int mFirstJulianDay;
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+
+        // December 1st, 2014, a Monday
+        Time time = new Time();
+        time.set(0, 0, 0, 1, 11, 2014);
+        long millis = time.normalize(true);
+        mFirstJulianDay = Time.getJulianDay(millis, time.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private long dateOfDay(int day) {
+        return new Time().setJulianDay(mFirstJulianDay + day);
+    }
+
+    /**
+     * Inserts one row per day: the minimum climbs by one degree a day, the maximum is ten
+     * degrees above it, and every third day is rainy, the others are clear.
+     */
+    private void insertDays(int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int day = 0; day < days; day++) {
+            values[day] = TestUtilities.createWeatherValues(mLocationRowId);
+            values[day].put(WeatherEntry.COLUMN_DATE, dateOfDay(day));
+            values[day].put(WeatherEntry.COLUMN_MIN_TEMP, day);
+            values[day].put(WeatherEntry.COLUMN_MAX_TEMP, day + 10);
+            values[day].put(WeatherEntry.COLUMN_HUMIDITY, 50);
+            values[day].put(WeatherEntry.COLUMN_WEATHER_ID, day % 3 == 0 ? 501 : 800);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+    }
+
+    private static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+
+    private static double getDouble(Cursor cursor, String column) {
+        return cursor.getDouble(cursor.getColumnIndex(column));
+    }
+
+    public void testRangeSummary() {
+        insertDays(14);
+        Cursor cursor = mContext.getContentResolver().query(
+                SummaryEntry.buildSummaryUri(TestUtilities.TEST_LOCATION, dateOfDay(0),
+                        dateOfDay(14)),
+                null, null, null, null);
+        assertEquals("Error: A range summary is a single row", 1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(dateOfDay(0), cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_FIRST_DATE)));
+        assertEquals(dateOfDay(13), cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_LAST_DATE)));
+        assertEquals(14, getInt(cursor, SummaryEntry.COLUMN_DAY_COUNT));
+        assertEquals(0.0, getDouble(cursor, SummaryEntry.COLUMN_MIN_TEMP));
+        assertEquals(23.0, getDouble(cursor, SummaryEntry.COLUMN_MAX_TEMP));
+        assertEquals(6.5, getDouble(cursor, SummaryEntry.COLUMN_MEAN_MIN_TEMP));
+        assertEquals(16.5, getDouble(cursor, SummaryEntry.COLUMN_MEAN_MAX_TEMP));
+        assertEquals(50.0, getDouble(cursor, SummaryEntry.COLUMN_MEAN_HUMIDITY));
+        // Days 0, 3, 6, 9 and 12
+        assertEquals(5, getInt(cursor, SummaryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_RAIN]));
+        assertEquals(9, getInt(cursor, SummaryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_CLEAR]));
+        assertEquals(0, getInt(cursor, SummaryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_OTHER]));
+        cursor.close();
+
+        // The end of the range is exclusive.
+        cursor = mContext.getContentResolver().query(
+                SummaryEntry.buildSummaryUri(TestUtilities.TEST_LOCATION, dateOfDay(2),
+                        dateOfDay(5)),
+                new String[]{SummaryEntry.COLUMN_DAY_COUNT, SummaryEntry.COLUMN_MAX_TEMP},
+                null, null, null);
+        cursor.moveToFirst();
+        assertEquals(3, cursor.getInt(0));
+        assertEquals(14.0, cursor.getDouble(1));
+        cursor.close();
+    }
+
+    public void testGroupedSummary() {
+        insertDays(14);
+        Cursor cursor = mContext.getContentResolver().query(
+                SummaryEntry.buildSummaryUri(TestUtilities.TEST_LOCATION, dateOfDay(0),
+                        dateOfDay(14), SummaryEntry.GROUP_WEEK),
+                null, null, null, null);
+        assertEquals("Error: Two weeks expected", 2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(dateOfDay(0), cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_FIRST_DATE)));
+        assertEquals(dateOfDay(6), cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_LAST_DATE)));
+        assertEquals(7, getInt(cursor, SummaryEntry.COLUMN_DAY_COUNT));
+        assertEquals(16.0, getDouble(cursor, SummaryEntry.COLUMN_MAX_TEMP));
+        cursor.moveToNext();
+        assertEquals(dateOfDay(7), cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_FIRST_DATE)));
+        assertEquals(7.0, getDouble(cursor, SummaryEntry.COLUMN_MIN_TEMP));
+        cursor.close();
+
+        // December has 31 days, so 40 days span two months.
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        insertDays(40);
+        cursor = mContext.getContentResolver().query(
+                SummaryEntry.buildSummaryUri(TestUtilities.TEST_LOCATION, dateOfDay(0),
+                        dateOfDay(40), SummaryEntry.GROUP_MONTH),
+                new String[]{SummaryEntry.COLUMN_DAY_COUNT}, null, null, null);
+        assertEquals(2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(31, cursor.getInt(0));
+        cursor.moveToNext();
+        assertEquals(9, cursor.getInt(0));
+        cursor.close();
+    }
+
+    /**
+     * Times the SQL summary against reading every row and aggregating in Java, which is what a
+     * screen would have to do without the summary URIs.  The numbers are logged; both ways must
+     * agree.
+     */
+    public void testSummaryBenchmark() {
+        int[] sizes = {14, 365, 3650};
+        for (int size : sizes) {
+            deleteAllRecords();
+            mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+            insertDays(size);
+
+            long start = SystemClock.elapsedRealtime();
+            Cursor cursor = mContext.getContentResolver().query(
+                    SummaryEntry.buildSummaryUri(TestUtilities.TEST_LOCATION, dateOfDay(0),
+                            dateOfDay(size)),
+                    null, null, null, null);
+            cursor.moveToFirst();
+            double sqlMax = getDouble(cursor, SummaryEntry.COLUMN_MAX_TEMP);
+            int sqlRainyDays = getInt(cursor,
+                    SummaryEntry.COLUMN_CONDITION_COUNTS[WeatherContract.BUCKET_RAIN]);
+            cursor.close();
+            long sqlMillis = SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            cursor = mContext.getContentResolver().query(
+                    WeatherEntry.buildWeatherLocationWithStartDate(TestUtilities.TEST_LOCATION,
+                            dateOfDay(0)),
+                    new String[]{WeatherEntry.COLUMN_MAX_TEMP, WeatherEntry.COLUMN_WEATHER_ID},
+                    null, null, null);
+            double javaMax = -Double.MAX_VALUE;
+            int javaRainyDays = 0;
+            while (cursor.moveToNext()) {
+                javaMax = Math.max(javaMax, cursor.getDouble(0));
+                if (WeatherContract.getConditionBucket(cursor.getInt(1)) == WeatherContract.BUCKET_RAIN) {
+                    javaRainyDays++;
+                }
+            }
+            cursor.close();
+            long javaMillis = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(javaMax, sqlMax);
+            assertEquals(javaRainyDays, sqlRainyDays);
+            Log.d(LOG_TAG, size + " rows: SQL summary " + sqlMillis + "ms, Java loop "
+                    + javaMillis + "ms");
+        }
+    }
+}
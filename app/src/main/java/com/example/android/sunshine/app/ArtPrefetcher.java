@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bumptech.glide.DrawableRequestBuilder;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loads the art of a remote art pack for the forecast list and the detail pane, and fetches the
+ * art of the rows about to scroll into view before they are bound.
+ *
+ * Glide keys its memory cache by url, size and transformation.  Every load here asks for one of
+ * two fixed sizes, the list icon and the today art, both fit centered, so a row prefetched, the
+ * today row and the detail pane showing the same day all hit the same decoded bitmap instead of
+ * decoding it again at whatever size their view measured.  The downloaded source is kept on
+ * disk as well, so the other size is decoded without fetching it again.
+ */
+public class ArtPrefetcher {
+    private static final String LOG_TAG = ArtPrefetcher.class.getSimpleName();
+
+    // How many rows past the visible ones are fetched ahead
+    static final int ROWS_AHEAD = 4;
+
+    private static ArtPrefetcher sInstance;
+
+    private final Context mContext;
+    private final int mIconSize;
+    private final int mArtSize;
+
+    // The list the urls prefetched were for, and the urls with their sizes
+    private ForecastList mList;
+    private final Set<String> mPrefetched = new HashSet<String>();
+
+    // Loads shown, from the memory cache or not, and prefetches started
+    private int mHits;
+    private int mMisses;
+    private int mPrefetches;
+
+    private final RequestListener<String, GlideDrawable> mShownListener =
+            new RequestListener<String, GlideDrawable>() {
+                @Override
+                public boolean onException(Exception e, String model,
+                        Target<GlideDrawable> target, boolean isFirstResource) {
+                    mMisses++;
+                    return false;
+                }
+
+                @Override
+                public boolean onResourceReady(GlideDrawable resource, String model,
+                        Target<GlideDrawable> target, boolean isFromMemoryCache,
+                        boolean isFirstResource) {
+                    if (isFromMemoryCache) {
+                        mHits++;
+                    } else {
+                        mMisses++;
+                    }
+                    return false;
+                }
+            };
+
+    // Hands the bitmap over to the memory cache as soon as it's decoded.
+    private static class PrefetchTarget extends SimpleTarget<GlideDrawable> {
+        PrefetchTarget(int size) {
+            super(size, size);
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource,
+                GlideAnimation<? super GlideDrawable> glideAnimation) {
+            Glide.clear(this);
+        }
+    }
+
+    ArtPrefetcher(Context context) {
+        mContext = context;
+        mIconSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        mArtSize = context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+    }
+
+    public static synchronized ArtPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArtPrefetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the load of the art for a row of the list, at the list icon's size.
+     */
+    public DrawableRequestBuilder<String> loadIcon(RequestManager requests, String url) {
+        return load(requests, url, mIconSize).listener(mShownListener);
+    }
+
+    /**
+     * @return the load of the art for the today row or the detail pane, at the today art's size.
+     */
+    public DrawableRequestBuilder<String> loadArt(RequestManager requests, String url) {
+        return load(requests, url, mArtSize).listener(mShownListener);
+    }
+
+    private static DrawableRequestBuilder<String> load(RequestManager requests, String url,
+            int size) {
+        return requests.load(url)
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .override(size, size)
+                .fitCenter();
+    }
+
+    /**
+     * Fetches the art of the rows the list scrolls towards.  Called on the main thread as it
+     * scrolls.
+     *
+     * @param twoPane whether a row's art is shown in the detail pane when it's selected, rather
+     *                than by the today row
+     */
+    public void onScrolled(ForecastList list, int firstVisible, int lastVisible, int dy,
+            boolean twoPane) {
+        if (firstVisible < 0 || lastVisible < 0) {
+            return;
+        }
+        useList(list);
+        int from = dy < 0 ? firstVisible - ROWS_AHEAD : lastVisible + 1;
+        int to = dy < 0 ? firstVisible - 1 : lastVisible + ROWS_AHEAD;
+        for (int position = Math.max(from, 0); position <= to && position < list.size();
+                position++) {
+            String url = list.get(position).artUrl;
+            if (url == null) {
+                continue;
+            }
+            prefetch(url, mIconSize);
+            if (twoPane) {
+                prefetch(url, mArtSize);
+            }
+        }
+    }
+
+    /**
+     * Fetches the detail pane's art for the days either side of the one selected, the likeliest
+     * to be selected next.
+     */
+    public void prefetchNeighbours(ForecastList list, int position) {
+        useList(list);
+        for (int neighbour = position - 1; neighbour <= position + 1; neighbour += 2) {
+            if (neighbour >= 0 && neighbour < list.size()
+                    && list.get(neighbour).artUrl != null) {
+                prefetch(list.get(neighbour).artUrl, mArtSize);
+            }
+        }
+    }
+
+    private void useList(ForecastList list) {
+        if (list != mList) {
+            mList = list;
+            mPrefetched.clear();
+        }
+    }
+
+    private void prefetch(String url, int size) {
+        if (!mPrefetched.add(size + ":" + url)) {
+            return;
+        }
+        mPrefetches++;
+        load(Glide.with(mContext), url, size).into(new PrefetchTarget(size));
+    }
+
+    /**
+     * @return the share of the art shown that came from the memory cache, 0 if none was shown.
+     */
+    public float getHitRate() {
+        int shown = mHits + mMisses;
+        return shown == 0 ? 0 : (float) mHits / shown;
+    }
+
+    public void logStats() {
+        Log.d(LOG_TAG, "Art shown: " + (mHits + mMisses) + ", from memory " + mHits
+                + " (" + Math.round(getHitRate() * 100) + "%), prefetched " + mPrefetches);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.core.LocalDays;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * The day labels of the forecast list, the detail screen and the widgets, formatted once per
+ * day shown.
+ *
+ * A label depends on the day, the locale and what day today is.  The cache holds the labels of
+ * one locale and one today, by julian day; when the locale, the time zone or the clock changes,
+ * or midnight passes, it starts over.  A label asked for again is then a lookup, which allocates
+ * nothing, where formatting it allocated calendars and date formats every time a row was bound.
+ */
+public class DayLabelCache {
+
+    // Enough for the forecast list and history; past that the cache starts over.
+    private static final int MAX_LABELS = 128;
+
+    private static DayLabelCache sInstance;
+
+    private final Context mContext;
+
+    private final SparseArray<String> mFriendlyLabels = new SparseArray<String>();
+    private final SparseArray<String> mShortFriendlyLabels = new SparseArray<String>();
+    private final SparseArray<String> mFullFriendlyLabels = new SparseArray<String>();
+    private final SparseArray<String> mDayNames = new SparseArray<String>();
+    private final SparseArray<String> mMonthDays = new SparseArray<String>();
+
+    // What the labels held were formatted for
+    private Locale mLocale;
+    private LocalDays mDays;
+    private int mTodayJulianDay;
+    private long mTodayStart;
+    private long mNextMidnight;
+
+    private SimpleDateFormat mShortenedDateFormat;
+    private SimpleDateFormat mDayFormat;
+    private SimpleDateFormat mMonthDayFormat;
+
+    // Set by the broadcasts for changes that can't be noticed without allocating
+    private volatile boolean mStale = true;
+
+    private final BroadcastReceiver mChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+                // Whichever receiver of the change runs first
+                LocalDays.resetDefault();
+            }
+            mStale = true;
+        }
+    };
+
+    DayLabelCache(Context context) {
+        mContext = context;
+    }
+
+    public static synchronized DayLabelCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DayLabelCache(context.getApplicationContext());
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_DATE_CHANGED);
+            sInstance.mContext.registerReceiver(sInstance.mChangeReceiver, filter);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops every label, the next ones are formatted for the locale and time zone then.
+     */
+    public void invalidate() {
+        mStale = true;
+    }
+
+    // Starts over if the labels held were formatted for another locale or another today.
+    private void checkValid(long now) {
+        if (!mStale && now >= mTodayStart && now < mNextMidnight
+                && Locale.getDefault() == mLocale) {
+            return;
+        }
+        mStale = false;
+        mLocale = Locale.getDefault();
+        mDays = LocalDays.getDefault();
+        mTodayJulianDay = mDays.getJulianDay(now);
+        mTodayStart = mDays.getStartOfDay(mTodayJulianDay);
+        mNextMidnight = mDays.getStartOfDay(mTodayJulianDay + 1);
+
+        mShortenedDateFormat = new SimpleDateFormat("EEE MMM dd", mLocale);
+        mDayFormat = new SimpleDateFormat("EEEE", mLocale);
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd", mLocale);
+        clear();
+    }
+
+    private void clear() {
+        mFriendlyLabels.clear();
+        mShortFriendlyLabels.clear();
+        mFullFriendlyLabels.clear();
+        mDayNames.clear();
+        mMonthDays.clear();
+    }
+
+    private void put(SparseArray<String> labels, int julianDay, String label) {
+        if (labels.size() >= MAX_LABELS) {
+            labels.clear();
+        }
+        labels.put(julianDay, label);
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public synchronized String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        checkValid(System.currentTimeMillis());
+        int julianDay = mDays.getJulianDay(dateInMillis);
+        SparseArray<String> labels = displayLongToday ? mFriendlyLabels : mShortFriendlyLabels;
+        String label = labels.get(julianDay);
+        if (label == null) {
+            label = formatFriendlyDay(dateInMillis, julianDay, displayLongToday);
+            put(labels, julianDay, label);
+        }
+        return label;
+    }
+
+    /**
+     * @see Utility#getFullFriendlyDayString(Context, long)
+     */
+    public synchronized String getFullFriendlyDayString(long dateInMillis) {
+        checkValid(System.currentTimeMillis());
+        int julianDay = mDays.getJulianDay(dateInMillis);
+        String label = mFullFriendlyLabels.get(julianDay);
+        if (label == null) {
+            label = mContext.getString(R.string.format_full_friendly_date,
+                    getDayName(dateInMillis, julianDay), getMonthDay(dateInMillis, julianDay));
+            put(mFullFriendlyLabels, julianDay, label);
+        }
+        return label;
+    }
+
+    /**
+     * @see Utility#getDayName(Context, long)
+     */
+    public synchronized String getDayName(long dateInMillis) {
+        checkValid(System.currentTimeMillis());
+        return getDayName(dateInMillis, mDays.getJulianDay(dateInMillis));
+    }
+
+    /**
+     * @see Utility#getFormattedMonthDay(Context, long)
+     */
+    public synchronized String getFormattedMonthDay(long dateInMillis) {
+        checkValid(System.currentTimeMillis());
+        return getMonthDay(dateInMillis, mDays.getJulianDay(dateInMillis));
+    }
+
+    private String formatFriendlyDay(long dateInMillis, int julianDay,
+            boolean displayLongToday) {
+        // For today: "Today, June 8"
+        // For tomorrow:  "Tomorrow"
+        // For the next 5 days: "Wednesday" (just the day name)
+        // For all days after that: "Mon Jun 8"
+        if (displayLongToday && julianDay == mTodayJulianDay) {
+            return mContext.getString(R.string.format_full_friendly_date,
+                    mContext.getString(R.string.today), getMonthDay(dateInMillis, julianDay));
+        } else if (julianDay < mTodayJulianDay + 7) {
+            return getDayName(dateInMillis, julianDay);
+        } else {
+            return mShortenedDateFormat.format(dateInMillis);
+        }
+    }
+
+    private String getDayName(long dateInMillis, int julianDay) {
+        String name = mDayNames.get(julianDay);
+        if (name == null) {
+            if (julianDay == mTodayJulianDay) {
+                name = mContext.getString(R.string.today);
+            } else if (julianDay == mTodayJulianDay + 1) {
+                name = mContext.getString(R.string.tomorrow);
+            } else {
+                name = mDayFormat.format(dateInMillis);
+            }
+            put(mDayNames, julianDay, name);
+        }
+        return name;
+    }
+
+    private String getMonthDay(long dateInMillis, int julianDay) {
+        String monthDay = mMonthDays.get(julianDay);
+        if (monthDay == null) {
+            monthDay = mMonthDayFormat.format(dateInMillis);
+            put(mMonthDays, julianDay, monthDay);
+        }
+        return monthDay;
+    }
+}
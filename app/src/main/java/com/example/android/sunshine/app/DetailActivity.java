@@ -38,6 +38,9 @@ public class DetailActivity extends AppCompatActivity {
 
             Bundle arguments = new Bundle();
             arguments.putParcelable(DetailFragment.DETAIL_URI, getIntent().getData());
+            // Set when started from the forecast list, which has the day already
+            arguments.putParcelable(DetailFragment.DETAIL_ROW,
+                    getIntent().getParcelableExtra(DetailFragment.DETAIL_ROW));
             arguments.putBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, true);
 
             DetailFragment fragment = new DetailFragment();
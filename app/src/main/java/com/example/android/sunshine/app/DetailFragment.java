@@ -27,6 +27,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.ShareActionProvider;
 import android.support.v7.widget.Toolbar;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -39,7 +40,6 @@ import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
  * A placeholder fragment containing a simple view.
@@ -48,45 +48,19 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
+    // The day as the forecast list has it, shown without querying it again
+    static final String DETAIL_ROW = "ROW";
     static final String DETAIL_TRANSITION_ANIMATION = "DTA";
 
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
     private String mForecast;
     private Uri mUri;
+    private ForecastRow mRow;
     private boolean mTransitionAnimation;
 
     private static final int DETAIL_LOADER = 0;
 
-    private static final String[] DETAIL_COLUMNS = {
-            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
-            WeatherEntry.COLUMN_DATE,
-            WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherEntry.COLUMN_HUMIDITY,
-            WeatherEntry.COLUMN_PRESSURE,
-            WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherEntry.COLUMN_DEGREES,
-            WeatherEntry.COLUMN_WEATHER_ID,
-            // This works because the WeatherProvider returns location data joined with
-            // weather data, even though they're stored in two different tables.
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
-    };
-
-    // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
-    // must change.
-    public static final int COL_WEATHER_ID = 0;
-    public static final int COL_WEATHER_DATE = 1;
-    public static final int COL_WEATHER_DESC = 2;
-    public static final int COL_WEATHER_MAX_TEMP = 3;
-    public static final int COL_WEATHER_MIN_TEMP = 4;
-    public static final int COL_WEATHER_HUMIDITY = 5;
-    public static final int COL_WEATHER_PRESSURE = 6;
-    public static final int COL_WEATHER_WIND_SPEED = 7;
-    public static final int COL_WEATHER_DEGREES = 8;
-    public static final int COL_WEATHER_CONDITION_ID = 9;
-
     private ImageView mIconView;
     private TextView mDateView;
     private TextView mDescriptionView;
@@ -110,8 +84,14 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         Bundle arguments = getArguments();
         if (arguments != null) {
             mUri = arguments.getParcelable(DetailFragment.DETAIL_URI);
+            mRow = arguments.getParcelable(DetailFragment.DETAIL_ROW);
             mTransitionAnimation = arguments.getBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, false);
         }
+        if (savedInstanceState != null && savedInstanceState.containsKey(DETAIL_URI)) {
+            // The day shown last, which may have been handed over after the arguments
+            mUri = savedInstanceState.getParcelable(DETAIL_URI);
+            mRow = savedInstanceState.getParcelable(DETAIL_ROW);
+        }
 
         View rootView = inflater.inflate(R.layout.fragment_detail_start, container, false);
         mIconView = (ImageView) rootView.findViewById(R.id.detail_icon);
@@ -153,13 +133,59 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+        if (mRow != null && mRow.hasDetails) {
+            showRow(mRow);
+        }
+        // Beside the list, the list hands over the day again each time it loads, see
+        // onListLoaded.  Without a row, or on its own, the day is queried and watched.
+        if (mRow == null || !mRow.hasDetails || getActivity() instanceof DetailActivity) {
+            getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+        }
         super.onActivityCreated(savedInstanceState);
     }
 
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putParcelable(DETAIL_URI, mUri);
+        outState.putParcelable(DETAIL_ROW, mRow);
+    }
+
+    /**
+     * Shows a day of the forecast list, as the list has it.  Stepping through the days in the
+     * two pane layout, this takes the place of a query per day.
+     */
+    void showRow(Uri uri, ForecastRow row) {
+        mUri = uri;
+        // The list's loader watches the days, and hands the day over again when it changes.
+        getLoaderManager().destroyLoader(DETAIL_LOADER);
+        showRow(row);
+    }
+
+    /**
+     * Shows the day again as the list reloaded it, after a sync or a change of settings,
+     * unless this fragment queries the day itself.
+     */
+    void onListLoaded(ForecastList list) {
+        if (mUri == null || getLoaderManager().getLoader(DETAIL_LOADER) != null
+                || !WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri)
+                        .equals(list.getLocationSetting())) {
+            return;
+        }
+        int position = list.getKeys().indexOf(WeatherContract.WeatherEntry.getDateFromUri(mUri));
+        if (position < 0) {
+            return;
+        }
+        ForecastRow row = list.get(position);
+        if (row.hasDetails && !sameDetails(row, mRow)) {
+            showRow(row);
+        }
+    }
+
     void onLocationChanged( String newLocation ) {
         // replace the uri, since the location has changed
         Uri uri = mUri;
+        mRow = null;
         if (null != uri) {
             long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
             Uri updatedUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(newLocation, date);
@@ -176,7 +202,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             return new CursorLoader(
                     getActivity(),
                     mUri,
-                    DETAIL_COLUMNS,
+                    ForecastFragment.FORECAST_COLUMNS,
                     null,
                     null,
                     null
@@ -192,78 +218,82 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         if (data != null && data.moveToFirst()) {
-            ViewParent vp = getView().getParent();
-            if ( vp instanceof CardView ) {
-                ((View)vp).setVisibility(View.VISIBLE);
+            ForecastRow row = ForecastRow.create(getActivity(),
+                    SettingsSnapshot.get(getActivity()), Utility.getReadingFormatter(getActivity()),
+                    new StringBuilder(), data);
+            // The row handed over is usually what the query reads; binding it again would only
+            // fade the art in twice.
+            if (!sameDetails(row, mRow)) {
+                showRow(row);
             }
+        } else {
+            setUpToolbar();
+        }
+    }
 
-            // Read weather condition ID from cursor
-            int weatherId = data.getInt(COL_WEATHER_CONDITION_ID);
-
-            if ( Utility.usingLocalGraphics(getActivity()) ) {
-                mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
-            } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
-            }
+    private static boolean sameDetails(ForecastRow row, ForecastRow shown) {
+        return shown != null && shown.hasDetails && row.equals(shown)
+                && row.fullDayLabel.equals(shown.fullDayLabel)
+                && TextUtils.equals(row.humidityText, shown.humidityText)
+                && TextUtils.equals(row.windText, shown.windText)
+                && TextUtils.equals(row.pressureText, shown.pressureText);
+    }
 
-            // Read date from cursor and update views for day of week and date
-            long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
-            mDateView.setText(dateText);
-
-            // Get description from weather condition ID
-            String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
-            mDescriptionView.setText(description);
-            mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
-
-            // For accessibility, add a content description to the icon field. Because the ImageView
-            // is independently focusable, it's better to have a description of the image. Using
-            // null is appropriate when the image is purely decorative or when the image already
-            // has text describing it in the same UI component.
-            mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
-
-            // Read high temperature from cursor and update view
-            boolean isMetric = Utility.isMetric(getActivity());
-
-            double high = data.getDouble(COL_WEATHER_MAX_TEMP);
-            String highString = Utility.formatTemperature(getActivity(), high);
-            mHighTempView.setText(highString);
-            mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
-
-            // Read low temperature from cursor and update view
-            double low = data.getDouble(COL_WEATHER_MIN_TEMP);
-            String lowString = Utility.formatTemperature(getActivity(), low);
-            mLowTempView.setText(lowString);
-            mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
-
-            // Read humidity from cursor and update view
-            float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
-            mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
-            mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
-
-            // Read wind speed and direction from cursor and update view
-            float windSpeedStr = data.getFloat(COL_WEATHER_WIND_SPEED);
-            float windDirStr = data.getFloat(COL_WEATHER_DEGREES);
-            mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
-            mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
-            mWindLabelView.setContentDescription(mWindView.getContentDescription());
-
-            // Read pressure from cursor and update view
-            float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
-            mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
-            mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
-
-            // We still need this for the share intent
-            mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+    private void showRow(ForecastRow row) {
+        mRow = row;
+        ViewParent vp = getView().getParent();
+        if ( vp instanceof CardView ) {
+            ((View)vp).setVisibility(View.VISIBLE);
+        }
 
+        if ( row.artUrl == null ) {
+            mIconView.setImageResource(row.artResId);
+        } else {
+            // Use weather art image, at the size the today row loads it
+            ArtPrefetcher.getInstance(getActivity())
+                    .loadArt(Glide.with(this), row.artUrl)
+                    .error(row.artResId)
+                    .crossFade()
+                    .into(mIconView);
         }
+
+        mDateView.setText(row.fullDayLabel);
+
+        mDescriptionView.setText(row.description);
+        mDescriptionView.setContentDescription(row.descriptionA11y);
+
+        // For accessibility, add a content description to the icon field. Because the ImageView
+        // is independently focusable, it's better to have a description of the image. Using
+        // null is appropriate when the image is purely decorative or when the image already
+        // has text describing it in the same UI component.
+        mIconView.setContentDescription(row.iconA11y);
+
+        mHighTempView.setText(row.highText);
+        mHighTempView.setContentDescription(row.highA11y);
+
+        mLowTempView.setText(row.lowText);
+        mLowTempView.setContentDescription(row.lowA11y);
+
+        mHumidityView.setText(row.humidityText);
+        mHumidityView.setContentDescription(row.humidityA11y);
+        mHumidityLabelView.setContentDescription(row.humidityA11y);
+
+        mWindView.setText(row.windText);
+        mWindView.setContentDescription(row.windA11y);
+        mWindLabelView.setContentDescription(row.windA11y);
+
+        mPressureView.setText(row.pressureText);
+        mPressureView.setContentDescription(row.pressureA11y);
+        mPressureLabelView.setContentDescription(row.pressureA11y);
+
+        // We still need this for the share intent
+        mForecast = String.format("%s - %s - %s/%s", row.fullDayLabel, row.description,
+                row.high, row.low);
+
+        setUpToolbar();
+    }
+
+    private void setUpToolbar() {
         AppCompatActivity activity = (AppCompatActivity)getActivity();
         Toolbar toolbarView = (Toolbar) getView().findViewById(R.id.toolbar);
 
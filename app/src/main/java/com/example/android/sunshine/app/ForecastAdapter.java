@@ -16,7 +16,6 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
@@ -29,12 +28,14 @@ import android.widget.Checkable;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.bumptech.glide.RequestManager;
+import com.example.android.sunshine.core.KeyedDiff;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from a {@link ForecastList} to a {@link android.support.v7.widget.RecyclerView}.
  */
 public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
@@ -44,12 +45,32 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     // Flag to determine if we want to use a separate view for "today".
     private boolean mUseTodayLayout = true;
 
-    private Cursor mCursor;
+    private ForecastList mList = ForecastList.EMPTY;
     final private Context mContext;
+    final private ArtPrefetcher mArt;
+    // Null unless the list is monitored
+    final private ScrollJankMonitor mJankMonitor;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
 
+    private final KeyedDiff.Callback mNotifier = new KeyedDiff.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+    };
+
     /**
      * Cache of the children views for a forecast list item.
      */
@@ -73,9 +94,11 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                // A row being removed or rebound by the diff's animations
+                return;
+            }
+            mClickHandler.onClick(mList.get(adapterPosition).date, this);
             mICM.onClick(this);
         }
     }
@@ -86,9 +109,19 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     public ForecastAdapter(Context context, ForecastAdapterOnClickHandler dh, View emptyView, int choiceMode) {
         mContext = context;
+        mArt = ArtPrefetcher.getInstance(context);
+        mJankMonitor = ScrollJankMonitor.ENABLED ? ScrollJankMonitor.getInstance(context) : null;
         mClickHandler = dh;
         mEmptyView = emptyView;
-        mICM = new ItemChoiceManager(this);
+        // Rows are identified by their date, so the selection follows a day when rows are
+        // inserted or removed above it.
+        setHasStableIds(true);
+        mICM = new ItemChoiceManager(this, new ItemChoiceManager.PositionIndex() {
+            @Override
+            public int getPositionForId(long id) {
+                return mList.getKeys().indexOf(id);
+            }
+        });
         mICM.setChoiceMode(choiceMode);
     }
 
@@ -124,65 +157,48 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
-        int defaultImage;
-        boolean useLongToday;
-
-        switch (getItemViewType(position)) {
-            case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
-                break;
-            default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
-        }
+        long start = mJankMonitor != null ? System.nanoTime() : 0;
+        // Everything was looked up and formatted by the loader, binding only sets it.
+        ForecastRow row = mList.get(position);
+        boolean useLongToday = getItemViewType(position) == VIEW_TYPE_TODAY;
+        int defaultImage = useLongToday ? row.artResId : row.iconResId;
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
+        if ( row.artUrl == null ) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
+            // Loaded at the size prefetched, from the cache shared with the detail pane
+            RequestManager requests = Glide.with(mContext);
+            DrawableRequestBuilder<String> request = useLongToday
+                    ? mArt.loadArt(requests, row.artUrl) : mArt.loadIcon(requests, row.artUrl);
+            request.error(defaultImage)
                     .crossFade()
                     .into(forecastAdapterViewHolder.mIconView);
         }
 
         // this enables better animations. even if we lose state due to a device rotation,
-        // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
+        // the animator can use this to re-find the original view.  Named after the date, rows
+        // move without being bound again when days are inserted or removed above them.
+        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, row.transitionName);
 
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        forecastAdapterViewHolder.mDateView.setText(useLongToday ? row.longDayLabel : row.dayLabel);
 
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
-
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
-
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        forecastAdapterViewHolder.mDescriptionView.setText(row.description);
+        forecastAdapterViewHolder.mDescriptionView.setContentDescription(row.descriptionA11y);
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        forecastAdapterViewHolder.mHighTempView.setText(row.highText);
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(row.highA11y);
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        forecastAdapterViewHolder.mLowTempView.setText(row.lowText);
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(row.lowA11y);
 
         mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+        if (mJankMonitor != null) {
+            mJankMonitor.addBind(System.nanoTime() - start);
+        }
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
@@ -201,6 +217,11 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return mICM.getSelectedItemPosition();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mList.get(position).date;
+    }
+
     @Override
     public int getItemViewType(int position) {
         return (position == 0 && mUseTodayLayout) ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
@@ -208,18 +229,58 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        return mList.size();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    /**
+     * Switches to the new rows, rebinding only the ones that were inserted or changed.  Rows
+     * from ForecastRowsLoader come with the diff computed in the background; for other rows,
+     * or when the rows shown changed while they were loading, it's computed here.
+     *
+     * @param list the rows, null for none
+     */
+    public void swapList(ForecastList list) {
+        if (list == null) {
+            list = ForecastList.EMPTY;
+        }
+        KeyedDiff.Rows oldRows = mList.getKeys();
+        KeyedDiff diff = list.getDiff();
+        if (diff == null || diff.getFrom() != oldRows) {
+            diff = KeyedDiff.compute(oldRows, list.getKeys());
+        }
+        mList = list;
+        diff.dispatch(mNotifier);
+        KeyedDiff.Rows rows = list.getKeys();
+        if (mUseTodayLayout && oldRows.size() > 0 && rows.size() > 0
+                && oldRows.getKey(0) != rows.getKey(0)) {
+            // Another day is first, it and the day that was first both switch layouts.
+            notifyItemChanged(0);
+            int oldFirst = rows.indexOf(oldRows.getKey(0));
+            if (oldFirst > 0) {
+                notifyItemChanged(oldFirst);
+            }
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
-    public Cursor getCursor() {
-        return mCursor;
+    /**
+     * Switches to rows holding the current ones followed by itemCount more, as produced by
+     * ForecastPageSource, without rebinding the rows already shown.
+     */
+    public void appendPage(ForecastList list, int positionStart, int itemCount) {
+        mList = list;
+        notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    public ForecastList getList() {
+        return mList;
+    }
+
+    /**
+     * @return the dates and content hashes of the rows shown.
+     */
+    public KeyedDiff.Rows getRows() {
+        return mList.getKeys();
     }
 
     public void selectView(RecyclerView.ViewHolder viewHolder) {
@@ -20,15 +20,14 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
@@ -51,21 +50,27 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
-public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, SharedPreferences.OnSharedPreferenceChangeListener {
+public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<ForecastList>, SharedPreferences.OnSharedPreferenceChangeListener {
     public static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private ForecastAdapter mForecastAdapter;
+    private ForecastPageSource mPageSource;
     private RecyclerView mRecyclerView;
     private boolean mUseTodayLayout, mAutoSelectView;
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // Whether the list shows the sync's snapshot while the loader is still loading
+    private boolean mShowingSnapshot;
+    private long mCreatedAt;
 
     private static final String SELECTED_KEY = "selected_position";
 
     private static final int FORECAST_LOADER = 0;
-    // For the forecast view we're showing only a small subset of the stored data.
-    // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
+    // Loader argument: whether to show the sync's snapshot until the database is read
+    private static final String LOADER_SNAPSHOT_FIRST = "snapshot_first";
+    // The columns of the list and of the detail pane, so that the detail pane can show a day
+    // from the list without querying it again.
+    static final String[] FORECAST_COLUMNS = {
             // In this case the id needs to be fully qualified with a table name, since
             // the content provider joins the location & weather tables in the background
             // (both have an _id column)
@@ -74,26 +79,32 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
             // So the convenience is worth it.
             WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
             WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
             WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.LocationEntry.COLUMN_COORD_LAT,
-            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
     };
 
     // These indices are tied to FORECAST_COLUMNS.  If FORECAST_COLUMNS changes, these
     // must change.
     static final int COL_WEATHER_ID = 0;
     static final int COL_WEATHER_DATE = 1;
-    static final int COL_WEATHER_DESC = 2;
-    static final int COL_WEATHER_MAX_TEMP = 3;
-    static final int COL_WEATHER_MIN_TEMP = 4;
-    static final int COL_LOCATION_SETTING = 5;
-    static final int COL_WEATHER_CONDITION_ID = 6;
-    static final int COL_COORD_LAT = 7;
-    static final int COL_COORD_LONG = 8;
+    static final int COL_WEATHER_MAX_TEMP = 2;
+    static final int COL_WEATHER_MIN_TEMP = 3;
+    static final int COL_LOCATION_SETTING = 4;
+    static final int COL_WEATHER_CONDITION_ID = 5;
+    static final int COL_COORD_LAT = 6;
+    static final int COL_COORD_LONG = 7;
+    static final int COL_WEATHER_HUMIDITY = 8;
+    static final int COL_WEATHER_PRESSURE = 9;
+    static final int COL_WEATHER_WIND_SPEED = 10;
+    static final int COL_WEATHER_DEGREES = 11;
 
     /**
      * A callback interface that all activities containing this fragment must
@@ -104,7 +115,13 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         /**
          * DetailFragmentCallback for when an item has been selected.
          */
-        public void onItemSelected(Uri dateUri, ForecastAdapter.ForecastAdapterViewHolder vh);
+        public void onItemSelected(Uri dateUri, ForecastRow row,
+                ForecastAdapter.ForecastAdapterViewHolder vh);
+
+        /**
+         * For when the rows were loaded again from the database, with the rows the list shows.
+         */
+        public void onListLoaded(ForecastList list);
     }
 
     public ForecastFragment() {
@@ -113,6 +130,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreatedAt = SystemClock.uptimeMillis();
         // Add this line in order for this fragment to handle menu events.
         setHasOptionsMenu(true);
     }
@@ -128,6 +146,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public void onPause() {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(getActivity());
         sp.unregisterOnSharedPreferenceChangeListener(this);
+        ArtPrefetcher.getInstance(getActivity()).logStats();
         super.onPause();
     }
 
@@ -168,7 +187,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
-
+        StartupScheduler.beginSection("ForecastFragment.onCreateView");
 
         View rootView = inflater.inflate(R.layout.fragment_main, container, false);
 
@@ -189,9 +208,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
             @Override
             public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {
                 String locationSetting = Utility.getPreferredLocation(getActivity());
+                ForecastList list = mForecastAdapter.getList();
+                int position = vh.getAdapterPosition();
+                // The detail pane shows the row as the list has it, without a query.
+                ForecastRow row = position != RecyclerView.NO_POSITION ? list.get(position) : null;
+                if (!mUseTodayLayout && position != RecyclerView.NO_POSITION) {
+                    // Stepping through the days, the next is likely a neighbour.
+                    ArtPrefetcher.getInstance(getActivity()).prefetchNeighbours(list, position);
+                }
                 ((Callback) getActivity())
                         .onItemSelected(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
                                         locationSetting, date),
+                                row,
                                 vh
                         );
             }
@@ -200,6 +228,40 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        // The loader only fetches the first page, the rest is appended while scrolling.
+        mPageSource = new ForecastPageSource(getActivity(), FORECAST_COLUMNS,
+                new ForecastPageSource.Callback() {
+                    @Override
+                    public void onPageAppended(ForecastList list, int positionStart, int itemCount) {
+                        mForecastAdapter.appendPage(list, positionStart, itemCount);
+                        onShownRowsChanged();
+                    }
+
+                    @Override
+                    public void onPagesReloaded(ForecastList list) {
+                        mForecastAdapter.swapList(list);
+                        onShownRowsChanged();
+                        ((Callback) getActivity()).onListLoaded(list);
+                    }
+                });
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager =
+                        (LinearLayoutManager) recyclerView.getLayoutManager();
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                mPageSource.onLastVisiblePosition(lastVisible);
+                // Without the today layout, a selected row's art is shown in the detail pane.
+                ArtPrefetcher.getInstance(getActivity()).onScrolled(mForecastAdapter.getList(),
+                        layoutManager.findFirstVisibleItemPosition(), lastVisible, dy,
+                        !mUseTodayLayout);
+            }
+        });
+        // Frame times and binds of each scroll, logged when it ends
+        if (ScrollJankMonitor.ENABLED) {
+            mRecyclerView.addOnScrollListener(ScrollJankMonitor.getInstance(getActivity()));
+        }
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -248,6 +310,22 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
         mForecastAdapter.setUseTodayLayout(mUseTodayLayout);
 
+        // Time to the first frame showing the forecast, to compare starts with and without the
+        // snapshot.
+        mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mRecyclerView.getChildCount() > 0) {
+                    mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    Log.d(LOG_TAG, "First forecast frame after "
+                            + (SystemClock.uptimeMillis() - mCreatedAt) + "ms, from the "
+                            + (mShowingSnapshot ? "snapshot" : "database"));
+                }
+                return true;
+            }
+        });
+
+        StartupScheduler.endSection();
         return rootView;
     }
 
@@ -259,10 +337,25 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
-        getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        // A cold start shows the forecast the sync left in the snapshot first, so it doesn't
+        // wait for the database.
+        Bundle args = null;
+        if (savedInstanceState == null) {
+            args = new Bundle();
+            args.putBoolean(LOADER_SNAPSHOT_FIRST, true);
+        }
+        getLoaderManager().initLoader(FORECAST_LOADER, args, this);
         super.onActivityCreated(savedInstanceState);
     }
 
+    // Tells the loader what the list shows now, for it to diff the next load against.
+    private void onShownRowsChanged() {
+        Loader<ForecastList> loader = getLoaderManager().getLoader(FORECAST_LOADER);
+        if (loader instanceof ForecastRowsLoader) {
+            ((ForecastRowsLoader) loader).setShownRows(mForecastAdapter.getRows());
+        }
+    }
+
     // since we read the location when we create the loader, all we need to do is restart things
     void onLocationChanged() {
         getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
@@ -273,11 +366,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // intent can is detailed in the "Common Intents" page of Android's developer site:
         // http://developer.android.com/guide/components/intents-common.html#Maps
         if (null != mForecastAdapter) {
-            Cursor c = mForecastAdapter.getCursor();
-            if (null != c) {
-                c.moveToPosition(0);
-                String posLat = c.getString(COL_COORD_LAT);
-                String posLong = c.getString(COL_COORD_LONG);
+            ForecastList list = mForecastAdapter.getList();
+            if (list.size() > 0) {
+                String posLat = list.getCoordLat();
+                String posLong = list.getCoordLong();
                 Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
 
                 Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -302,7 +394,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<ForecastList> onCreateLoader(int i, Bundle bundle) {
         // This is called when a new Loader needs to be created.  This
         // fragment only uses one loader, so we don't care about checking the id.
 
@@ -314,21 +406,33 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
         String locationSetting = Utility.getPreferredLocation(getActivity());
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                locationSetting, System.currentTimeMillis());
+                locationSetting, System.currentTimeMillis(), ForecastPageSource.PAGE_SIZE);
 
-        return new CursorLoader(getActivity(),
+        ForecastRowsLoader loader = new ForecastRowsLoader(getActivity(),
                 weatherForLocationUri,
                 FORECAST_COLUMNS,
-                null,
-                null,
-                sortOrder);
+                sortOrder,
+                locationSetting,
+                bundle != null && bundle.getBoolean(LOADER_SNAPSHOT_FIRST));
+        loader.setShownRows(mForecastAdapter.getRows());
+        return loader;
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mForecastAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<ForecastList> loader, ForecastList data) {
+        if (((ForecastRowsLoader) loader).isSnapshot(data)) {
+            // Shown until the database's rows follow
+            mForecastAdapter.swapList(data);
+            ((ForecastRowsLoader) loader).setShownRows(mForecastAdapter.getRows());
+            mShowingSnapshot = true;
+            return;
+        }
+        mForecastAdapter.swapList(mPageSource.swapFirstPage(data));
+        ((ForecastRowsLoader) loader).setShownRows(mForecastAdapter.getRows());
+        mShowingSnapshot = false;
+        ((Callback) getActivity()).onListLoaded(mForecastAdapter.getList());
         updateEmptyView();
-        if ( data.getCount() == 0 ) {
+        if ( data.size() == 0 ) {
             getActivity().supportStartPostponedEnterTransition();
         } else {
             mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
@@ -341,16 +445,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-                            for ( int i = 0; i < count; i++ ) {
-                                data.moveToPosition(i);
-                                if ( data.getLong(dateColumn) == mInitialSelectedDate ) {
-                                    position = i;
-                                    break;
-                                }
-                            }
+                            position = mForecastAdapter.getRows().indexOf(mInitialSelectedDate);
                         }
                         if (position == RecyclerView.NO_POSITION) position = 0;
                         // If we don't need to restart the loader, and there's a desired position to restore
@@ -378,13 +473,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public void onDestroy() {
         super.onDestroy();
         if (null != mRecyclerView) {
+            if (ScrollJankMonitor.ENABLED) {
+                ScrollJankMonitor.getInstance(getActivity()).onDetached();
+            }
             mRecyclerView.clearOnScrollListeners();
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
+    public void onLoaderReset(Loader<ForecastList> loader) {
+        mPageSource.release();
+        mForecastAdapter.swapList(null);
+        ((ForecastRowsLoader) loader).setShownRows(mForecastAdapter.getRows());
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
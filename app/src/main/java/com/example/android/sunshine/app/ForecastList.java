@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.core.KeyedDiff;
+import com.example.android.sunshine.core.ReadingFormatter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows of the forecast list for one location, in date order, as the list shows them.
+ * Immutable; appending a page makes a new list.
+ */
+public final class ForecastList {
+
+    public static final ForecastList EMPTY = new ForecastList(
+            Collections.<ForecastRow>emptyList(), KeyedDiff.Rows.EMPTY, null, null, null, null);
+
+    private final List<ForecastRow> mRows;
+    // The dates and hashes of the rows, what lists are diffed by
+    private final KeyedDiff.Rows mKeys;
+    private final String mLocationSetting;
+    private final String mCoordLat;
+    private final String mCoordLong;
+    // The events from the rows shown when this list was loaded, null if unknown
+    private final KeyedDiff mDiff;
+
+    private ForecastList(List<ForecastRow> rows, KeyedDiff.Rows keys, String locationSetting,
+            String coordLat, String coordLong, KeyedDiff diff) {
+        mRows = rows;
+        mKeys = keys;
+        mLocationSetting = locationSetting;
+        mCoordLat = coordLat;
+        mCoordLong = coordLong;
+        mDiff = diff;
+    }
+
+    /**
+     * Formats the rows of a cursor with ForecastFragment's projection.  Meant for a background
+     * thread, where it takes the lookups and formatting away from binding.
+     */
+    static ForecastList read(Context context, Cursor cursor, String locationSetting) {
+        int count = cursor.getCount();
+        SettingsSnapshot settings = SettingsSnapshot.get(context);
+        ReadingFormatter formatter = Utility.getReadingFormatter(context);
+        StringBuilder buffer = new StringBuilder();
+        List<ForecastRow> rows = new ArrayList<ForecastRow>(count);
+        long[] dates = new long[count];
+        int[] hashes = new int[count];
+        String coordLat = null;
+        String coordLong = null;
+        for (int i = 0; i < count; i++) {
+            cursor.moveToPosition(i);
+            ForecastRow row = ForecastRow.create(context, settings, formatter, buffer, cursor);
+            rows.add(row);
+            dates[i] = row.date;
+            hashes[i] = row.hashCode();
+            if (i == 0) {
+                coordLat = cursor.getString(ForecastFragment.COL_COORD_LAT);
+                coordLong = cursor.getString(ForecastFragment.COL_COORD_LONG);
+            }
+        }
+        return new ForecastList(Collections.unmodifiableList(rows),
+                new KeyedDiff.Rows(dates, hashes), locationSetting, coordLat, coordLong, null);
+    }
+
+    /**
+     * @return this list, with the events leading to it from the rows shown.
+     */
+    ForecastList withDiffFrom(KeyedDiff.Rows shown) {
+        return new ForecastList(mRows, mKeys, mLocationSetting, mCoordLat, mCoordLong,
+                KeyedDiff.compute(shown, mKeys));
+    }
+
+    /**
+     * @return this list followed by the rows of the next page.
+     */
+    ForecastList append(ForecastList page) {
+        List<ForecastRow> rows = new ArrayList<ForecastRow>(mRows.size() + page.mRows.size());
+        rows.addAll(mRows);
+        rows.addAll(page.mRows);
+        return new ForecastList(Collections.unmodifiableList(rows), mKeys.append(page.mKeys),
+                mLocationSetting, mCoordLat != null ? mCoordLat : page.mCoordLat,
+                mCoordLong != null ? mCoordLong : page.mCoordLong, null);
+    }
+
+    /**
+     * @return the rows dated after the given date, the end of this list.
+     */
+    ForecastList rowsAfter(long date) {
+        int start = mRows.size();
+        while (start > 0 && mRows.get(start - 1).date > date) {
+            start--;
+        }
+        int count = mRows.size() - start;
+        long[] dates = new long[count];
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = mKeys.getKey(start + i);
+            hashes[i] = mKeys.getHash(start + i);
+        }
+        return new ForecastList(
+                Collections.unmodifiableList(new ArrayList<ForecastRow>(
+                        mRows.subList(start, mRows.size()))),
+                new KeyedDiff.Rows(dates, hashes), mLocationSetting, null, null, null);
+    }
+
+    public int size() {
+        return mRows.size();
+    }
+
+    public ForecastRow get(int position) {
+        return mRows.get(position);
+    }
+
+    /**
+     * @return the dates and content hashes of the rows.
+     */
+    public KeyedDiff.Rows getKeys() {
+        return mKeys;
+    }
+
+    /**
+     * @return the events from the rows shown while this list was loaded to its rows, null if
+     * it wasn't loaded to replace shown rows.
+     */
+    public KeyedDiff getDiff() {
+        return mDiff;
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    /**
+     * @return the latitude of the location, as stored, null if there are no rows.
+     */
+    public String getCoordLat() {
+        return mCoordLat;
+    }
+
+    public String getCoordLong() {
+        return mCoordLong;
+    }
+
+    /**
+     * @return the date of the last row.
+     */
+    public long getLastDate() {
+        return mKeys.getKey(mKeys.size() - 1);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Feeds the forecast list one page at a time.
+ *
+ * The loader only queries the first page, so the first frame never waits for more rows than fit
+ * on screen.  Once the list is scrolled close to the end of what is loaded, the next page is
+ * queried and formatted in the background, starting after the date of the last row, and
+ * appended to the list.  Memory use grows with what the user actually scrolls through rather
+ * than with the size of the data.
+ *
+ * When the loader delivers the first page again, after a sync or a change of settings, the
+ * pages appended after it are kept, so the list doesn't shrink under the user, and queried
+ * again in the background to catch up with the change.  Only another location starts over.
+ */
+public class ForecastPageSource {
+
+    public static final int PAGE_SIZE = 20;
+
+    // How close to the last loaded row the list may get before the next page is requested.
+    private static final int PREFETCH_DISTANCE = 5;
+
+    /**
+     * Receives the rows of all pages loaded so far, every time a page is appended or the pages
+     * after the first were loaded again.
+     */
+    public interface Callback {
+        void onPageAppended(ForecastList list, int positionStart, int itemCount);
+
+        void onPagesReloaded(ForecastList list);
+    }
+
+    private final Context mContext;
+    private final String[] mProjection;
+    private final Callback mCallback;
+
+    private ForecastList mList;
+    // The loader's rows, at the start of mList
+    private ForecastList mFirstPage;
+    private boolean mExhausted = true;
+    private PageTask mPageTask;
+
+    public ForecastPageSource(Context context, String[] projection, Callback callback) {
+        mContext = context.getApplicationContext();
+        mProjection = projection;
+        mCallback = callback;
+    }
+
+    /**
+     * Takes a freshly loaded first page.  The pages appended after it are kept and loaded
+     * again, unless the first page is for another location or is all there is now.
+     *
+     * @return the rows to hand to the adapter.
+     */
+    public ForecastList swapFirstPage(ForecastList firstPage) {
+        cancelPageTask();
+        ForecastList previous = mList;
+        boolean wasExhausted = mExhausted;
+        mList = firstPage;
+        mFirstPage = firstPage;
+        // A short first page means there is nothing more to load.
+        mExhausted = firstPage == null || firstPage.size() < PAGE_SIZE;
+        if (mExhausted || previous == null
+                || !firstPage.getLocationSetting().equals(previous.getLocationSetting())) {
+            return mList;
+        }
+        ForecastList appended = previous.rowsAfter(firstPage.getLastDate());
+        if (appended.size() > 0) {
+            mList = firstPage.append(appended);
+            mExhausted = wasExhausted;
+            mPageTask = new PageTask(firstPage.getLocationSetting(), firstPage.getLastDate(),
+                    appended.size(), true);
+            mPageTask.execute();
+        }
+        return mList;
+    }
+
+    /**
+     * Tells the source how far the list has scrolled, so it can load the next page in time.
+     */
+    public void onLastVisiblePosition(int position) {
+        if (mExhausted || mPageTask != null || mList == null) {
+            return;
+        }
+        int count = mList.size();
+        if (count == 0 || position < count - PREFETCH_DISTANCE) {
+            return;
+        }
+        mPageTask = new PageTask(mList.getLocationSetting(), mList.getLastDate(), PAGE_SIZE,
+                false);
+        mPageTask.execute();
+    }
+
+    /**
+     * Drops the pages loaded by this source.
+     */
+    public void release() {
+        cancelPageTask();
+        mList = null;
+        mFirstPage = null;
+    }
+
+    private void cancelPageTask() {
+        if (mPageTask != null) {
+            mPageTask.cancel(false);
+            mPageTask = null;
+        }
+    }
+
+    private void onPageLoaded(PageTask task, ForecastList page) {
+        if (task != mPageTask || mList == null) {
+            // Superseded by a new first page in the meantime.
+            return;
+        }
+        mPageTask = null;
+        if (task.mReload) {
+            onPagesReloaded(task, page);
+            return;
+        }
+        if (page == null || page.size() == 0) {
+            mExhausted = true;
+            return;
+        }
+        mExhausted = page.size() < PAGE_SIZE;
+
+        int positionStart = mList.size();
+        mList = mList.append(page);
+        mCallback.onPageAppended(mList, positionStart, page.size());
+    }
+
+    private void onPagesReloaded(PageTask task, ForecastList pages) {
+        if (pages == null) {
+            // Left as they were
+            return;
+        }
+        if (pages.size() < task.mRows) {
+            mExhausted = true;
+        }
+        mList = mFirstPage.append(pages);
+        mCallback.onPagesReloaded(mList);
+    }
+
+    private class PageTask extends AsyncTask<Void, Void, ForecastList> {
+        private final String mPageLocationSetting;
+        private final long mAfterDate;
+        private final int mRows;
+        // Whether the rows replace the pages after the first instead of being appended
+        private final boolean mReload;
+
+        PageTask(String locationSetting, long afterDate, int rows, boolean reload) {
+            mPageLocationSetting = locationSetting;
+            mAfterDate = afterDate;
+            mRows = rows;
+            mReload = reload;
+        }
+
+        @Override
+        protected ForecastList doInBackground(Void... params) {
+            Cursor page = mContext.getContentResolver().query(
+                    WeatherContract.WeatherEntry.buildWeatherLocationPage(
+                            mPageLocationSetting, mAfterDate, mRows),
+                    mProjection,
+                    null,
+                    null,
+                    null);
+            if (page == null) {
+                return null;
+            }
+            try {
+                if (isCancelled()) {
+                    return null;
+                }
+                return ForecastList.read(mContext, page, mPageLocationSetting);
+            } finally {
+                page.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ForecastList page) {
+            onPageLoaded(this, page);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.example.android.sunshine.core.ReadingFormatter;
+
+/**
+ * One day of the forecast, with everything its row and the detail pane show already looked up
+ * and formatted.  Built in the background by ForecastRowsLoader; binding a row only sets these
+ * on the views, and the detail pane shows the row it's handed without querying the day again.
+ */
+public final class ForecastRow implements Parcelable {
+
+    public final long date;
+    public final int weatherId;
+    // The small icon, and the large art of the today layout; NO_RESOURCE if there is none
+    public final int iconResId;
+    public final int artResId;
+    // The art in the chosen art pack, null when the app's own art is used
+    public final String artUrl;
+    public final String transitionName;
+
+    public final String dayLabel;
+    // The label for the today layout, "Today, June 8" rather than "Today"
+    public final String longDayLabel;
+    // The label for the detail pane, "Tomorrow, June 9" rather than "Tomorrow"
+    public final String fullDayLabel;
+    public final String description;
+    public final String descriptionA11y;
+    public final String iconA11y;
+    public final double high;
+    public final String highText;
+    public final String highA11y;
+    public final double low;
+    public final String lowText;
+    public final String lowA11y;
+
+    // Whether the day was read with the detail pane's readings; a snapshot has none
+    public final boolean hasDetails;
+    public final String humidityText;
+    public final String humidityA11y;
+    public final String windText;
+    public final String windA11y;
+    public final String pressureText;
+    public final String pressureA11y;
+
+    private final int mHash;
+
+    ForecastRow(long date, int weatherId, int iconResId, int artResId, String artUrl,
+            String dayLabel, String longDayLabel, String fullDayLabel, String description,
+            String descriptionA11y, String iconA11y, double high, String highText,
+            String highA11y, double low, String lowText, String lowA11y, boolean hasDetails,
+            String humidityText, String humidityA11y, String windText, String windA11y,
+            String pressureText, String pressureA11y) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.iconResId = iconResId;
+        this.artResId = artResId;
+        this.artUrl = artUrl;
+        this.transitionName = "iconView" + date;
+        this.dayLabel = dayLabel;
+        this.longDayLabel = longDayLabel;
+        this.fullDayLabel = fullDayLabel;
+        this.description = description;
+        this.descriptionA11y = descriptionA11y;
+        this.iconA11y = iconA11y;
+        this.high = high;
+        this.highText = highText;
+        this.highA11y = highA11y;
+        this.low = low;
+        this.lowText = lowText;
+        this.lowA11y = lowA11y;
+        this.hasDetails = hasDetails;
+        this.humidityText = humidityText;
+        this.humidityA11y = humidityA11y;
+        this.windText = windText;
+        this.windA11y = windA11y;
+        this.pressureText = pressureText;
+        this.pressureA11y = pressureA11y;
+        mHash = computeHash();
+    }
+
+    /**
+     * Formats the day at the cursor's position, a cursor with ForecastFragment's projection,
+     * with the given settings.
+     *
+     * @param buffer scratch space for the readings
+     */
+    static ForecastRow create(Context context, SettingsSnapshot settings,
+            ReadingFormatter formatter, StringBuilder buffer, Cursor cursor) {
+        long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        double high = cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
+        double low = cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
+
+        WeatherCondition condition = WeatherCondition.get(weatherId);
+        String artUrl = settings.usingLocalGraphics
+                ? null : condition.getArtUrl(settings.artPackFormat);
+        DayLabelCache labels = DayLabelCache.getInstance(context);
+        String description = condition.getDescription(context, weatherId);
+
+        buffer.setLength(0);
+        formatter.appendTemperature(buffer, high, settings.metric);
+        String highText = buffer.toString();
+        buffer.setLength(0);
+        formatter.appendTemperature(buffer, low, settings.metric);
+        String lowText = buffer.toString();
+
+        boolean hasDetails = !cursor.isNull(ForecastFragment.COL_WEATHER_HUMIDITY);
+        String humidityText = null;
+        String windText = null;
+        String pressureText = null;
+        if (hasDetails) {
+            buffer.setLength(0);
+            formatter.appendHumidity(buffer,
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_HUMIDITY));
+            humidityText = buffer.toString();
+            buffer.setLength(0);
+            formatter.appendWind(buffer, cursor.getFloat(ForecastFragment.COL_WEATHER_WIND_SPEED),
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_DEGREES), settings.metric);
+            windText = buffer.toString();
+            buffer.setLength(0);
+            formatter.appendPressure(buffer,
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_PRESSURE));
+            pressureText = buffer.toString();
+        }
+
+        return new ForecastRow(date, weatherId, condition.getIconResId(),
+                condition.getArtResId(), artUrl,
+                labels.getFriendlyDayString(date, false),
+                labels.getFriendlyDayString(date, true),
+                labels.getFullFriendlyDayString(date),
+                description, context.getString(R.string.a11y_forecast, description),
+                context.getString(R.string.a11y_forecast_icon, description),
+                high, highText, context.getString(R.string.a11y_high_temp, highText),
+                low, lowText, context.getString(R.string.a11y_low_temp, lowText),
+                hasDetails,
+                humidityText,
+                hasDetails ? context.getString(R.string.a11y_humidity, humidityText) : null,
+                windText,
+                hasDetails ? context.getString(R.string.a11y_wind, windText) : null,
+                pressureText,
+                hasDetails ? context.getString(R.string.a11y_pressure, pressureText) : null);
+    }
+
+    // The hash covers what the list shows; the detail readings don't change a row of the list.
+    private int computeHash() {
+        int hash = (int) (date ^ (date >>> 32));
+        hash = hash * 31 + weatherId;
+        hash = hash * 31 + iconResId;
+        hash = hash * 31 + artResId;
+        hash = hash * 31 + (artUrl == null ? 0 : artUrl.hashCode());
+        hash = hash * 31 + dayLabel.hashCode();
+        hash = hash * 31 + longDayLabel.hashCode();
+        hash = hash * 31 + descriptionA11y.hashCode();
+        hash = hash * 31 + highA11y.hashCode();
+        hash = hash * 31 + lowA11y.hashCode();
+        return hash;
+    }
+
+    /**
+     * @return a hash of everything the list row shows, what the list diffs rows by.
+     */
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ForecastRow)) {
+            return false;
+        }
+        ForecastRow row = (ForecastRow) o;
+        return mHash == row.mHash && date == row.date && weatherId == row.weatherId
+                && iconResId == row.iconResId && artResId == row.artResId
+                && (artUrl == null ? row.artUrl == null : artUrl.equals(row.artUrl))
+                && dayLabel.equals(row.dayLabel) && longDayLabel.equals(row.longDayLabel)
+                && descriptionA11y.equals(row.descriptionA11y)
+                && highA11y.equals(row.highA11y) && lowA11y.equals(row.lowA11y);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(date);
+        dest.writeInt(weatherId);
+        dest.writeInt(iconResId);
+        dest.writeInt(artResId);
+        dest.writeString(artUrl);
+        dest.writeString(dayLabel);
+        dest.writeString(longDayLabel);
+        dest.writeString(fullDayLabel);
+        dest.writeString(description);
+        dest.writeString(descriptionA11y);
+        dest.writeString(iconA11y);
+        dest.writeDouble(high);
+        dest.writeString(highText);
+        dest.writeString(highA11y);
+        dest.writeDouble(low);
+        dest.writeString(lowText);
+        dest.writeString(lowA11y);
+        dest.writeInt(hasDetails ? 1 : 0);
+        dest.writeString(humidityText);
+        dest.writeString(humidityA11y);
+        dest.writeString(windText);
+        dest.writeString(windA11y);
+        dest.writeString(pressureText);
+        dest.writeString(pressureA11y);
+    }
+
+    public static final Parcelable.Creator<ForecastRow> CREATOR =
+            new Parcelable.Creator<ForecastRow>() {
+                @Override
+                public ForecastRow createFromParcel(Parcel in) {
+                    return new ForecastRow(in.readLong(), in.readInt(), in.readInt(),
+                            in.readInt(), in.readString(), in.readString(), in.readString(),
+                            in.readString(), in.readString(), in.readString(), in.readString(),
+                            in.readDouble(), in.readString(), in.readString(), in.readDouble(),
+                            in.readString(), in.readString(), in.readInt() != 0,
+                            in.readString(), in.readString(), in.readString(), in.readString(),
+                            in.readString(), in.readString());
+                }
+
+                @Override
+                public ForecastRow[] newArray(int size) {
+                    return new ForecastRow[size];
+                }
+            };
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.core.KeyedDiff;
+
+/**
+ * Loads the first page of the forecast list as display-ready rows.
+ *
+ * Where a CursorLoader handed the list a cursor to look up and format while binding, this
+ * queries, formats every row and diffs the rows against the ones the list shows, all in the
+ * background.  The list then only dispatches the events and binds by setting fields.  Like a
+ * CursorLoader, it loads again whenever the weather changes.
+ *
+ * On a cold start it can deliver the rows of the sync's snapshot first, read and formatted in
+ * the background as well, and then loads the database's.
+ */
+public class ForecastRowsLoader extends AsyncTaskLoader<ForecastList> {
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSortOrder;
+    private final String mLocationSetting;
+    // Whether the next load reads the snapshot, and the rows it delivered if it did
+    private volatile boolean mSnapshotFirst;
+    private volatile ForecastList mSnapshot;
+
+    // What the list showed when last told, the rows the next load is diffed against
+    private volatile KeyedDiff.Rows mShownRows = KeyedDiff.Rows.EMPTY;
+    private ForecastList mList;
+    private boolean mObserving;
+
+    /**
+     * @param snapshotFirst whether to deliver the rows of the sync's snapshot, if there is one
+     *                      for the location, before the database's
+     */
+    public ForecastRowsLoader(Context context, Uri uri, String[] projection, String sortOrder,
+            String locationSetting, boolean snapshotFirst) {
+        super(context);
+        mUri = uri;
+        mProjection = projection;
+        mSortOrder = sortOrder;
+        mLocationSetting = locationSetting;
+        mSnapshotFirst = snapshotFirst;
+    }
+
+    /**
+     * Sets the rows the list shows, for the following loads to be diffed against.
+     */
+    public void setShownRows(KeyedDiff.Rows rows) {
+        mShownRows = rows;
+    }
+
+    /**
+     * @return whether the rows delivered are the snapshot's, which the database's follow.
+     */
+    public boolean isSnapshot(ForecastList list) {
+        return list != null && list == mSnapshot;
+    }
+
+    @Override
+    public ForecastList loadInBackground() {
+        if (mSnapshotFirst) {
+            mSnapshotFirst = false;
+            ForecastList snapshot = loadSnapshot();
+            if (snapshot != null) {
+                mSnapshot = snapshot;
+                return snapshot;
+            }
+        }
+        Cursor cursor = getContext().getContentResolver().query(mUri, mProjection, null, null,
+                mSortOrder);
+        if (cursor == null) {
+            return ForecastList.EMPTY.withDiffFrom(mShownRows);
+        }
+        try {
+            return ForecastList.read(getContext(), cursor, mLocationSetting)
+                    .withDiffFrom(mShownRows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private ForecastList loadSnapshot() {
+        ForecastSnapshot snapshot = ForecastSnapshot.read(getContext(), mLocationSetting);
+        if (snapshot == null) {
+            return null;
+        }
+        Cursor cursor = snapshot.toCursor(mProjection, System.currentTimeMillis());
+        try {
+            ForecastList list = ForecastList.read(getContext(), cursor, mLocationSetting);
+            return list.size() == 0 ? null : list.withDiffFrom(mShownRows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(ForecastList list) {
+        if (isReset()) {
+            return;
+        }
+        boolean loaded = list != mList;
+        mList = list;
+        if (isStarted()) {
+            super.deliverResult(list);
+        }
+        if (loaded && isSnapshot(list)) {
+            // Loads the database's rows now, or once started again.
+            onContentChanged();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            // Every weather URI is below CONTENT_URI, which settings changes notify too.
+            getContext().getContentResolver().registerContentObserver(
+                    WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+            mObserving = true;
+        }
+        if (mList != null) {
+            deliverResult(mList);
+        }
+        if (takeContentChanged() || mList == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mList = null;
+    }
+}
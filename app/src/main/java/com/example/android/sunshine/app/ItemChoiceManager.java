@@ -28,21 +28,60 @@ import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which positions have been selected.  It follows the
+ * adapter's changes: with stable ids and a {@link PositionIndex}, checked items are found again
+ * by id after every change, wherever they moved; otherwise the checked positions are shifted by
+ * the ranges inserted and removed.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
     private final String SELECTED_ITEMS_KEY = "SIK";
     private int mChoiceMode;
 
+    /**
+     * The positions of the adapter's stable ids in its current data, kept by the adapter.
+     */
+    public interface PositionIndex {
+        /**
+         * @return the position of the item with the id, RecyclerView.NO_POSITION if there is
+         * none.
+         */
+        int getPositionForId(long id);
+    }
+
     private RecyclerView.Adapter mAdapter;
+    private PositionIndex mPositionIndex;
     private RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
         @Override
         public void onChanged() {
             super.onChanged();
-            if (mAdapter != null && mAdapter.hasStableIds())
-                confirmCheckedPositionsById(mAdapter.getItemCount());
+            if (hasIdIndex())
+                confirmCheckedPositionsById();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (hasIdIndex()) {
+                confirmCheckedPositionsById();
+            } else {
+                shiftCheckedPositions(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (hasIdIndex()) {
+                confirmCheckedPositionsById();
+            } else {
+                shiftCheckedPositions(positionStart, -itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (hasIdIndex()) {
+                confirmCheckedPositionsById();
+            }
         }
     };
 
@@ -52,15 +91,22 @@ public class ItemChoiceManager {
     ;
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
-        mAdapter = adapter;
+        this(adapter, null);
     }
 
     /**
-     * How many positions in either direction we will search to try to
-     * find a checked item with a stable ID that moved position across
-     * a data set change. If the item isn't found it will be unselected.
+     * @param index where the checked ids are looked up after the adapter's data changes, for an
+     *              adapter with stable ids
      */
-    private static final int CHECK_POSITION_SEARCH_DISTANCE = 20;
+    public ItemChoiceManager(RecyclerView.Adapter adapter, PositionIndex index) {
+        mAdapter = adapter;
+        mPositionIndex = index;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
+    }
+
+    private boolean hasIdIndex() {
+        return mPositionIndex != null && mAdapter.hasStableIds();
+    }
 
     /**
      * Running state of which positions are currently checked
@@ -109,6 +155,11 @@ public class ItemChoiceManager {
             case AbsListView.CHOICE_MODE_MULTIPLE: {
                 boolean checked = mCheckStates.get(position, false);
                 mCheckStates.put(position, !checked);
+                if (checked) {
+                    mCheckedIdStates.delete(mAdapter.getItemId(position));
+                } else {
+                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
@@ -154,38 +205,42 @@ public class ItemChoiceManager {
         mCheckedIdStates.clear();
     }
 
-    void confirmCheckedPositionsById(int oldItemCount) {
+    /**
+     * Checks the positions the checked ids are at now, and unchecks the ids that are gone.  A
+     * lookup in the adapter's index per checked item, however far it moved.
+     */
+    void confirmCheckedPositionsById() {
         // Clear out the positional check states, we'll rebuild it below from IDs.
         mCheckStates.clear();
 
         for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
             final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
-
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
-                }
+            final int position = mPositionIndex.getPositionForId(id);
+            if (position == RecyclerView.NO_POSITION) {
+                mCheckedIdStates.removeAt(checkedIndex);
+                checkedIndex--;
             } else {
-                mCheckStates.put(lastPos, true);
+                mCheckStates.put(position, true);
+                mCheckedIdStates.setValueAt(checkedIndex, position);
+            }
+        }
+    }
+
+    /**
+     * Moves the checked positions past the start by the count inserted there, or back by the
+     * count removed from there, unchecking the positions removed.
+     */
+    void shiftCheckedPositions(int positionStart, int delta) {
+        SparseBooleanArray shifted = new SparseBooleanArray();
+        for (int i = 0; i < mCheckStates.size(); i++) {
+            int position = mCheckStates.keyAt(i);
+            if (position < positionStart) {
+                shifted.put(position, mCheckStates.valueAt(i));
+            } else if (delta > 0 || position >= positionStart - delta) {
+                shifted.put(position + delta, mCheckStates.valueAt(i));
             }
         }
+        mCheckStates = shifted;
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
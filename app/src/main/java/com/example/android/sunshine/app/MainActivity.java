@@ -22,8 +22,8 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Process;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v4.util.Pair;
@@ -59,14 +59,19 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     private boolean mTwoPane;
     private String mLocation;
     private GoogleCloudMessaging mGcm;
+    // What the first frame doesn't wait for
+    private final StartupScheduler mStartup = new StartupScheduler();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupScheduler.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         mLocation = Utility.getPreferredLocation(this);
         Uri contentUri = getIntent() != null ? getIntent().getData() : null;
 
+        StartupScheduler.beginSection("MainActivity.setContentView");
         setContentView(R.layout.activity_main);
+        StartupScheduler.endSection();
         Toolbar toolbar = (Toolbar)findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
         getSupportActionBar().setDisplayShowTitleEnabled(false);
@@ -103,27 +108,58 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
 
-        SunshineSyncAdapter.initializeSyncAdapter(this);
+        // The account, the periodic sync and the first sync go through AccountManager and
+        // ContentResolver, none of which the first frame needs.
+        final Context appContext = getApplicationContext();
+        mStartup.runInBackground("Startup.initializeSyncAdapter", StartupScheduler.PRIORITY_HIGH,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        SunshineSyncAdapter.initializeSyncAdapter(appContext);
+                    }
+                });
+        // Its dialogs need the main thread, but not before the forecast is shown.
+        mStartup.runAfterFirstFrame("Startup.checkPlayServices", StartupScheduler.PRIORITY_NORMAL,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        setUpGcm();
+                    }
+                });
+        mStartup.startAfterFirstFrame(getWindow().getDecorView());
+        StartupScheduler.endSection();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mStartup.cancel();
+        super.onDestroy();
+    }
 
+    private void setUpGcm() {
+        final Context appContext = getApplicationContext();
         // If Google Play Services is not available, some features, such as GCM-powered weather
         // alerts, will not be available.
         if (checkPlayServices()) {
-            mGcm = GoogleCloudMessaging.getInstance(this);
-            String regId = getRegistrationId(this);
-
             if (PROJECT_NUMBER.equals("Your Project Number")) {
                 new AlertDialog.Builder(this)
                 .setTitle("Needs Project Number")
                 .setMessage("GCM will not function in Sunshine until you set the Project Number to the one from the Google Developers Console.")
                 .setPositiveButton(android.R.string.ok, null)
                 .create().show();
-            } else if (regId.isEmpty()) {
-                registerInBackground(this);
+            } else {
+                registerInBackground(appContext);
             }
         } else {
             Log.i(LOG_TAG, "No valid Google Play Services APK. Weather alerts will be disabled.");
             // Store regID as null
-            storeRegistrationId(this, null);
+            mStartup.runInBackground("Startup.storeRegistrationId", StartupScheduler.PRIORITY_LOW,
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            storeRegistrationId(appContext, null);
+                        }
+                    });
         }
     }
 
@@ -154,8 +190,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
         super.onResume();
 
         // If Google Play Services is not available, some features, such as GCM-powered weather
-        // alerts, will not be available.
-        if (!checkPlayServices()) {
+        // alerts, will not be available.  On a cold start it's checked after the first frame.
+        if (mStartup.hasStarted() && !checkPlayServices()) {
             // Store regID as null
         }
 
@@ -175,13 +211,22 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     }
 
     @Override
-    public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
+    public void onItemSelected(Uri contentUri, ForecastRow row,
+            ForecastAdapter.ForecastAdapterViewHolder vh) {
         if (mTwoPane) {
+            // The detail pane shows the list's row right away, without a new fragment and its
+            // query, unless the row was read without the detail readings.
+            DetailFragment df = (DetailFragment)getSupportFragmentManager().findFragmentByTag(DETAILFRAGMENT_TAG);
+            if ( null != df && null != df.getView() && null != row && row.hasDetails ) {
+                df.showRow(contentUri, row);
+                return;
+            }
             // In two-pane mode, show the detail view in this activity by
             // adding or replacing the detail fragment using a
             // fragment transaction.
             Bundle args = new Bundle();
             args.putParcelable(DetailFragment.DETAIL_URI, contentUri);
+            args.putParcelable(DetailFragment.DETAIL_ROW, row);
 
             DetailFragment fragment = new DetailFragment();
             fragment.setArguments(args);
@@ -191,7 +236,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     .commit();
         } else {
             Intent intent = new Intent(this, DetailActivity.class)
-                    .setData(contentUri);
+                    .setData(contentUri)
+                    .putExtra(DetailFragment.DETAIL_ROW, row);
 
             ActivityOptionsCompat activityOptions =
                     ActivityOptionsCompat.makeSceneTransitionAnimation(this,
@@ -200,6 +246,17 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
         }
     }
 
+    @Override
+    public void onListLoaded(ForecastList list) {
+        if (mTwoPane) {
+            // The detail pane's day as the list now has it
+            DetailFragment df = (DetailFragment)getSupportFragmentManager().findFragmentByTag(DETAILFRAGMENT_TAG);
+            if ( null != df && null != df.getView() ) {
+                df.onListLoaded(list);
+            }
+        }
+    }
+
     /**
      * Check the device to make sure it has the Google Play Services APK. If
      * it doesn't, display a dialog that allows users to download the APK from
@@ -273,43 +330,59 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     }
 
     /**
-     * Registers the application with GCM servers asynchronously.
-     * <p>
-     * Stores the registration ID and app versionCode in the application's
-     * shared preferences.
+     * Registers the application with GCM servers, unless it already is, on a thread of its own.
+     * Registering waits on the network, which would hold up the startup scheduler's short tasks
+     * behind it.
      */
     private void registerInBackground(final Context context) {
-        new AsyncTask<Void, Void, Void>() {
+        new Thread(new Runnable() {
             @Override
-            protected Void doInBackground(Void... params) {
-                String msg = "";
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                StartupScheduler.beginSection("Startup.registerGcm");
                 try {
-                    if (mGcm == null) {
-                        mGcm = GoogleCloudMessaging.getInstance(context);
+                    if (getRegistrationId(context).isEmpty()) {
+                        register(context);
                     }
-                    String regId = mGcm.register(PROJECT_NUMBER);
-                    msg = "Device registered, registration ID=" + regId;
-
-                    // You should send the registration ID to your server over HTTP,
-                    // so it can use GCM/HTTP or CCS to send messages to your app.
-                    // The request to your server should be authenticated if your app
-                    // is using accounts.
-                    //sendRegistrationIdToBackend();
-                    // For this demo: we don't need to send it because the device
-                    // will send upstream messages to a server that echo back the
-                    // message using the 'from' address in the message.
-
-                    // Persist the registration ID - no need to register again.
-                    storeRegistrationId(context, regId);
-                } catch (IOException ex) {
-                    msg = "Error :" + ex.getMessage();
-                    // TODO: If there is an error, don't just keep trying to register.
-                    // Require the user to click a button again, or perform
-                    // exponential back-off.
+                } finally {
+                    StartupScheduler.endSection();
                 }
-                return null;
             }
-        }.execute(null, null, null);
+        }, "RegisterGcm").start();
+    }
+
+    /**
+     * Registers the application with GCM servers.  Blocks, so it runs on its own thread.
+     * <p>
+     * Stores the registration ID and app versionCode in the application's
+     * shared preferences.
+     */
+    private void register(Context context) {
+        String msg = "";
+        try {
+            if (mGcm == null) {
+                mGcm = GoogleCloudMessaging.getInstance(context);
+            }
+            String regId = mGcm.register(PROJECT_NUMBER);
+            msg = "Device registered, registration ID=" + regId;
+
+            // You should send the registration ID to your server over HTTP,
+            // so it can use GCM/HTTP or CCS to send messages to your app.
+            // The request to your server should be authenticated if your app
+            // is using accounts.
+            //sendRegistrationIdToBackend();
+            // For this demo: we don't need to send it because the device
+            // will send upstream messages to a server that echo back the
+            // message using the 'from' address in the message.
+
+            // Persist the registration ID - no need to register again.
+            storeRegistrationId(context, regId);
+        } catch (IOException ex) {
+            msg = "Error :" + ex.getMessage();
+            // TODO: If there is an error, don't just keep trying to register.
+            // Require the user to click a button again, or perform
+            // exponential back-off.
+        }
     }
 
     /**
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+import com.example.android.sunshine.core.FrameHistogram;
+
+/**
+ * Records the frames of the forecast list while it scrolls, and the time its rows take to bind,
+ * into a {@link FrameHistogram}.
+ *
+ * A scroll session lasts from the list leaving the idle state to it coming back.  During one,
+ * a Choreographer callback takes the time between each frame and the next.  When it ends, the
+ * session is logged and added to the totals, which tests and debug screens read with
+ * {@link #getTotals()}.  Frames are only seen where Choreographer is, from Jelly Bean; binds are
+ * counted everywhere.  Used on the main thread only.
+ *
+ * Only debug builds monitor, see {@link #ENABLED}: a release build doesn't pay for a frame
+ * callback and the timing of every bind.
+ */
+public class ScrollJankMonitor extends RecyclerView.OnScrollListener {
+    private static final String LOG_TAG = ScrollJankMonitor.class.getSimpleName();
+
+    /**
+     * Whether the list is monitored.  When false, nothing adds the listener or times binds.
+     */
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+
+    // A bind taking a quarter of a frame leaves little for the rest of the frame.
+    private static final int SLOW_BIND_FRACTION = 4;
+
+    private static ScrollJankMonitor sInstance;
+
+    private final FrameHistogram mTotals;
+    private final FrameHistogram mSession;
+    private FrameHistogram mLastSession;
+    private boolean mScrolling;
+    private int mSessions;
+
+    // The frame callback, null before Jelly Bean
+    private final Object mFrameCallback;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameCallback implements Choreographer.FrameCallback {
+        private long mLastFrameNanos;
+
+        void start() {
+            mLastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mLastFrameNanos != 0) {
+                mSession.addFrame(frameTimeNanos - mLastFrameNanos);
+            }
+            mLastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    ScrollJankMonitor(long frameIntervalNanos) {
+        mTotals = new FrameHistogram(frameIntervalNanos, frameIntervalNanos / SLOW_BIND_FRACTION);
+        mSession = new FrameHistogram(frameIntervalNanos, frameIntervalNanos / SLOW_BIND_FRACTION);
+        mLastSession = mSession.copy();
+        mFrameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new FrameCallback() : null;
+    }
+
+    public static synchronized ScrollJankMonitor getInstance(Context context) {
+        if (sInstance == null) {
+            WindowManager windowManager =
+                    (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+            if (refreshRate < 1) {
+                refreshRate = 60;
+            }
+            sInstance = new ScrollJankMonitor((long) (1000000000L / refreshRate));
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState != RecyclerView.SCROLL_STATE_IDLE && !mScrolling) {
+            startSession();
+        } else if (newState == RecyclerView.SCROLL_STATE_IDLE && mScrolling) {
+            endSession();
+        }
+    }
+
+    private void startSession() {
+        mScrolling = true;
+        mSession.reset();
+        if (mFrameCallback != null) {
+            ((FrameCallback) mFrameCallback).start();
+        }
+    }
+
+    private void endSession() {
+        mScrolling = false;
+        if (mFrameCallback != null) {
+            ((FrameCallback) mFrameCallback).stop();
+        }
+        mSessions++;
+        mTotals.addAll(mSession);
+        mLastSession = mSession.copy();
+        Log.d(LOG_TAG, "Scroll " + mSessions + ": " + mSession);
+    }
+
+    /**
+     * Ends the session if the list is detached while scrolling.
+     */
+    public void onDetached() {
+        if (mScrolling) {
+            endSession();
+        }
+    }
+
+    /**
+     * Counts a bind of the list, into the session if the list is scrolling.
+     */
+    public void addBind(long durationNanos) {
+        if (mScrolling) {
+            mSession.addBind(durationNanos);
+        } else {
+            mTotals.addBind(durationNanos);
+        }
+    }
+
+    /**
+     * @return the counts of every scroll session ended, and of the binds outside them.
+     */
+    public FrameHistogram getTotals() {
+        return mTotals.copy();
+    }
+
+    /**
+     * @return the counts of the last scroll session ended.
+     */
+    public FrameHistogram getLastSession() {
+        return mLastSession.copy();
+    }
+
+    public int getSessionCount() {
+        return mSessions;
+    }
+
+    public void reset() {
+        mTotals.reset();
+        mLastSession.reset();
+        mSessions = 0;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * The user's settings the screens read while binding rows, as they were when last changed.
+ *
+ * Reading a setting used to get the default preferences and look up the key and the default
+ * strings on every call, several times per row bound.  A snapshot is immutable; the current one
+ * is rebuilt by a single preference listener whenever the preferences change, and reading it is
+ * a field access.
+ */
+public final class SettingsSnapshot {
+
+    private static volatile SettingsSnapshot sCurrent;
+
+    // Held here, the preferences only keep a weak reference to their listeners.
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    /**
+     * The location setting, a postal code or a city.
+     */
+    public final String locationSetting;
+
+    /**
+     * Whether temperatures and wind are shown in metric units.
+     */
+    public final boolean metric;
+
+    /**
+     * The format of the art pack URLs, with a %s for the art name.
+     */
+    public final String artPackFormat;
+
+    /**
+     * Whether the art pack is Sunshine's own, which ships with the app.
+     */
+    public final boolean usingLocalGraphics;
+
+    private SettingsSnapshot(Context context, SharedPreferences prefs) {
+        locationSetting = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+        String metricUnits = context.getString(R.string.pref_units_metric);
+        metric = prefs.getString(context.getString(R.string.pref_units_key), metricUnits)
+                .equals(metricUnits);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        artPackFormat = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        usingLocalGraphics = artPackFormat.equals(sunshineArtPack);
+    }
+
+    /**
+     * @return the settings as they are now.
+     */
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot current = sCurrent;
+        if (current == null) {
+            current = init(context.getApplicationContext());
+        }
+        return current;
+    }
+
+    private static synchronized SettingsSnapshot init(final Context appContext) {
+        if (sCurrent == null) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+            sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                        String key) {
+                    sCurrent = new SettingsSnapshot(appContext, sharedPreferences);
+                }
+            };
+            prefs.registerOnSharedPreferenceChangeListener(sListener);
+            sCurrent = new SettingsSnapshot(appContext, prefs);
+        }
+        return sCurrent;
+    }
+
+    /**
+     * Takes a new snapshot now, for writers that act on a change before the listener has run,
+     * or that wrote from another thread, whose listeners only run later on the main thread.
+     */
+    public static void refresh(Context context) {
+        Context appContext = context.getApplicationContext();
+        init(appContext);
+        sCurrent = new SettingsSnapshot(appContext,
+                PreferenceManager.getDefaultSharedPreferences(appContext));
+    }
+}
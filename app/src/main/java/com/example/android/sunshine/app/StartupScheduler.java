@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the work an activity's start doesn't need before its first frame once that frame is
+ * drawn: the work that has to be on the main thread one task per message, so frames can be drawn
+ * between them, and the rest on a background thread.  Tasks run by priority, then in the order
+ * they were added.
+ *
+ * Every task is a trace section named after it, as are the steps of the start that call
+ * {@link #beginSection}, so a systrace of a cold start shows what still runs before the first
+ * frame and what moved after it.
+ */
+public class StartupScheduler {
+    private static final String LOG_TAG = StartupScheduler.class.getSimpleName();
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    // One thread for every activity's startup work, below the main thread's priority
+    private static final Executor sBackgroundExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "StartupScheduler");
+                }
+            });
+
+    private static class Task {
+        final String name;
+        final int priority;
+        final int order;
+        final Runnable runnable;
+
+        Task(String name, int priority, int order, Runnable runnable) {
+            this.name = name;
+            this.priority = priority;
+            this.order = order;
+            this.runnable = runnable;
+        }
+
+        void run() {
+            beginSection(name);
+            try {
+                runnable.run();
+            } finally {
+                endSection();
+            }
+        }
+    }
+
+    private static final Comparator<Task> BY_PRIORITY = new Comparator<Task>() {
+        @Override
+        public int compare(Task lhs, Task rhs) {
+            if (lhs.priority != rhs.priority) {
+                return lhs.priority < rhs.priority ? -1 : 1;
+            }
+            return lhs.order < rhs.order ? -1 : (lhs.order == rhs.order ? 0 : 1);
+        }
+    };
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<Task> mMainTasks = new ArrayList<Task>();
+    private final List<Task> mBackgroundTasks = new ArrayList<Task>();
+    private int mOrder;
+    private boolean mFirstFrameDrawn;
+    private boolean mCancelled;
+
+    private final Runnable mRunNextMainTask = new Runnable() {
+        @Override
+        public void run() {
+            if (mCancelled || mMainTasks.isEmpty()) {
+                return;
+            }
+            mMainTasks.remove(0).run();
+            if (!mMainTasks.isEmpty()) {
+                mHandler.post(this);
+            }
+        }
+    };
+
+    /**
+     * Starts the tasks once the view's first frame has been drawn.  Called on the main thread,
+     * as are the rest of the methods.
+     */
+    public void startAfterFirstFrame(final View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted from the frame's traversal, it runs once the frame is drawn.
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFirstFrameDrawn();
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    private void onFirstFrameDrawn() {
+        if (mCancelled) {
+            return;
+        }
+        mFirstFrameDrawn = true;
+        Log.d(LOG_TAG, "First frame drawn, starting " + mMainTasks.size() + " main and "
+                + mBackgroundTasks.size() + " background tasks");
+        Collections.sort(mBackgroundTasks, BY_PRIORITY);
+        for (Task task : mBackgroundTasks) {
+            runInBackground(task);
+        }
+        mBackgroundTasks.clear();
+        Collections.sort(mMainTasks, BY_PRIORITY);
+        mHandler.post(mRunNextMainTask);
+    }
+
+    /**
+     * Runs the task on the main thread after the first frame, right away if it was drawn.
+     */
+    public void runAfterFirstFrame(String name, int priority, Runnable runnable) {
+        Task task = new Task(name, priority, mOrder++, runnable);
+        if (!mFirstFrameDrawn) {
+            mMainTasks.add(task);
+        } else if (!mCancelled) {
+            mMainTasks.add(task);
+            Collections.sort(mMainTasks, BY_PRIORITY);
+            mHandler.removeCallbacks(mRunNextMainTask);
+            mHandler.post(mRunNextMainTask);
+        }
+    }
+
+    /**
+     * Runs the task on the background thread after the first frame, right away if it was
+     * drawn.  Every activity's tasks share the thread, so a task that waits on the network
+     * belongs on a thread of its own.
+     */
+    public void runInBackground(String name, int priority, Runnable runnable) {
+        Task task = new Task(name, priority, mOrder++, runnable);
+        if (!mFirstFrameDrawn) {
+            mBackgroundTasks.add(task);
+        } else if (!mCancelled) {
+            runInBackground(task);
+        }
+    }
+
+    private static void runInBackground(final Task task) {
+        sBackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * @return whether the first frame was drawn and the tasks started.
+     */
+    public boolean hasStarted() {
+        return mFirstFrameDrawn;
+    }
+
+    /**
+     * Drops the main thread tasks that haven't run, for when the activity is destroyed.  Those
+     * already on the background thread still run.
+     */
+    public void cancel() {
+        mCancelled = true;
+        mMainTasks.clear();
+        mBackgroundTasks.clear();
+        mHandler.removeCallbacks(mRunNextMainTask);
+    }
+
+    /**
+     * Begins a trace section on this thread, where tracing is supported.
+     */
+    public static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginTraceSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endTraceSection();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginTraceSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endTraceSection() {
+        Trace.endSection();
+    }
+}
@@ -8,6 +8,7 @@ package com.example.android.sunshine.app;
 import android.util.Log;
 
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.core.WearableProtocol;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.WearableListenerService;
@@ -19,15 +20,13 @@ public class WatchFaceService extends WearableListenerService {
 
     private static final String TAG = WatchFaceService.class.getSimpleName();
 
-    private static final String WEATHER = "/weather";
-
     @Override
     public void onDataChanged(DataEventBuffer dataEvents) {
         for (DataEvent dataEvent : dataEvents) {
             if (dataEvent.getType() == DataEvent.TYPE_CHANGED) {
                 String path = dataEvent.getDataItem().getUri().getPath();
                 Log.d(TAG, path);
-                if (path.equals(WEATHER)) {
+                if (path.equals(WearableProtocol.PATH_WEATHER_REQUEST)) {
                     SunshineSyncAdapter.syncImmediately(this);
                 }
             }
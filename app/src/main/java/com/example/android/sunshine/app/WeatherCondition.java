@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import java.util.Locale;
+
+/**
+ * Everything shown for an OpenWeatherMap condition code: icon, art, art pack name, photo and
+ * description.
+ *
+ * The conditions are built once into an array indexed by code, so a row being bound, a widget
+ * or the watch update gets all of them with a single array read, instead of walking a chain of
+ * range checks per attribute.  Which codes share a picture comes from WeatherConditions in the
+ * core module, the watch face maps the same groups to its own drawables.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherCondition {
+
+    private static final int FIRST_CODE = WeatherConditions.FIRST_CODE;
+    private static final int LAST_CODE = WeatherConditions.LAST_CODE;
+
+    // No icon or art for the code
+    public static final int NO_RESOURCE = -1;
+
+    // Icon and art for each WeatherConditions.Group, by ordinal
+    private static final int[] sIconResIds = new int[WeatherConditions.Group.values().length];
+    private static final int[] sArtResIds = new int[sIconResIds.length];
+
+    static {
+        setGraphics(WeatherConditions.Group.STORM, R.drawable.ic_storm, R.drawable.art_storm);
+        setGraphics(WeatherConditions.Group.LIGHT_RAIN, R.drawable.ic_light_rain,
+                R.drawable.art_light_rain);
+        setGraphics(WeatherConditions.Group.RAIN, R.drawable.ic_rain, R.drawable.art_rain);
+        setGraphics(WeatherConditions.Group.SNOW, R.drawable.ic_snow, R.drawable.art_snow);
+        setGraphics(WeatherConditions.Group.FOG, R.drawable.ic_fog, R.drawable.art_fog);
+        setGraphics(WeatherConditions.Group.TORNADO, R.drawable.ic_storm, R.drawable.art_storm);
+        setGraphics(WeatherConditions.Group.CLEAR, R.drawable.ic_clear, R.drawable.art_clear);
+        setGraphics(WeatherConditions.Group.LIGHT_CLOUDS, R.drawable.ic_light_clouds,
+                R.drawable.art_light_clouds);
+        setGraphics(WeatherConditions.Group.CLOUDS, R.drawable.ic_cloudy, R.drawable.art_clouds);
+        setGraphics(WeatherConditions.Group.NONE, NO_RESOURCE, NO_RESOURCE);
+    }
+
+    private static final WeatherCondition UNKNOWN =
+            new WeatherCondition(WeatherConditions.Group.NONE, 0);
+
+    private static final WeatherCondition[] sConditions = buildConditions();
+
+    private final WeatherConditions.Group mGroup;
+    // 0 for codes without a description of their own
+    private final int mStringResId;
+
+    private WeatherCondition(WeatherConditions.Group group, int stringResId) {
+        mGroup = group;
+        mStringResId = stringResId;
+    }
+
+    private static void setGraphics(WeatherConditions.Group group, int iconResId,
+            int artResId) {
+        sIconResIds[group.ordinal()] = iconResId;
+        sArtResIds[group.ordinal()] = artResId;
+    }
+
+    private static WeatherCondition[] buildConditions() {
+        int[] strings = new int[LAST_CODE - FIRST_CODE + 1];
+        for (int code = 200; code <= 232; code++) {
+            strings[code - FIRST_CODE] = R.string.condition_2xx;
+        }
+        for (int code = 300; code <= 321; code++) {
+            strings[code - FIRST_CODE] = R.string.condition_3xx;
+        }
+        int[][] descriptions = {
+                {500, R.string.condition_500}, {501, R.string.condition_501},
+                {502, R.string.condition_502}, {503, R.string.condition_503},
+                {504, R.string.condition_504}, {511, R.string.condition_511},
+                {520, R.string.condition_520}, {531, R.string.condition_531},
+                {600, R.string.condition_600}, {601, R.string.condition_601},
+                {602, R.string.condition_602}, {611, R.string.condition_611},
+                {612, R.string.condition_612}, {615, R.string.condition_615},
+                {616, R.string.condition_616}, {620, R.string.condition_620},
+                {621, R.string.condition_621}, {622, R.string.condition_622},
+                {701, R.string.condition_701}, {711, R.string.condition_711},
+                {721, R.string.condition_721}, {731, R.string.condition_731},
+                {741, R.string.condition_741}, {751, R.string.condition_751},
+                {761, R.string.condition_761}, {762, R.string.condition_762},
+                {771, R.string.condition_771}, {781, R.string.condition_781},
+                {800, R.string.condition_800}, {801, R.string.condition_801},
+                {802, R.string.condition_802}, {803, R.string.condition_803},
+                {804, R.string.condition_804}, {900, R.string.condition_900},
+                {901, R.string.condition_901}, {902, R.string.condition_902},
+                {903, R.string.condition_903}, {904, R.string.condition_904},
+                {905, R.string.condition_905}, {906, R.string.condition_906},
+                {951, R.string.condition_951}, {952, R.string.condition_952},
+                {953, R.string.condition_953}, {954, R.string.condition_954},
+                {955, R.string.condition_955}, {956, R.string.condition_956},
+                {957, R.string.condition_957}, {958, R.string.condition_958},
+                {959, R.string.condition_959}, {960, R.string.condition_960},
+                {961, R.string.condition_961}, {962, R.string.condition_962}
+        };
+        for (int[] description : descriptions) {
+            strings[description[0] - FIRST_CODE] = description[1];
+        }
+
+        WeatherCondition[] conditions = new WeatherCondition[strings.length];
+        for (int i = 0; i < conditions.length; i++) {
+            WeatherConditions.Group group = WeatherConditions.getGroup(FIRST_CODE + i);
+            if (group != WeatherConditions.Group.NONE || strings[i] != 0) {
+                conditions[i] = new WeatherCondition(group, strings[i]);
+            } else {
+                conditions[i] = UNKNOWN;
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * @return the condition for the code, one without any pictures or description of its own
+     * if the code is unknown.
+     */
+    public static WeatherCondition get(int weatherId) {
+        if (weatherId < FIRST_CODE || weatherId > LAST_CODE) {
+            return UNKNOWN;
+        }
+        return sConditions[weatherId - FIRST_CODE];
+    }
+
+    /**
+     * @return resource id for the small icon, NO_RESOURCE if there is none.
+     */
+    public int getIconResId() {
+        return sIconResIds[mGroup.ordinal()];
+    }
+
+    /**
+     * @return resource id for the large art, NO_RESOURCE if there is none.
+     */
+    public int getArtResId() {
+        return sArtResIds[mGroup.ordinal()];
+    }
+
+    /**
+     * @param artPackFormat the format of the art pack URLs, from the art pack preference
+     * @return url for the art in the art pack, null if there is none.
+     */
+    public String getArtUrl(String artPackFormat) {
+        if (mGroup.getArtName() == null) {
+            return null;
+        }
+        return String.format(Locale.US, artPackFormat, mGroup.getArtName());
+    }
+
+    /**
+     * @return url of a photo of the condition, null if there is none.
+     */
+    public String getImageUrl() {
+        return mGroup.getImageUrl();
+    }
+
+    /**
+     * @return the description, or the unknown condition text with the code in it.
+     */
+    public String getDescription(Context context, int weatherId) {
+        if (mStringResId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+        return context.getString(mStringResId);
+    }
+}
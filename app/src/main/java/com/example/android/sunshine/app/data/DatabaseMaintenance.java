@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * Keeps weather.db compact and its query statistics current.
+ *
+ * Every sync replaces two weeks of rows and the history compaction deletes the days that have
+ * passed, which leaves free pages behind and scatters the indexes.  Maintenance switches the
+ * database to incremental auto-vacuum (once, with a full VACUUM), then on each run hands the
+ * free pages back to the file system and refreshes the statistics the query planner uses.
+ *
+ * It is meant to run about once a day while the device is idle, but doesn't wait for that
+ * forever.  The database size and free page count before and after the last run are kept in
+ * shared preferences.
+ */
+public class DatabaseMaintenance {
+    private static final String LOG_TAG = DatabaseMaintenance.class.getSimpleName();
+
+    /**
+     * Where maintenance gets the time from, so that tests can move it along.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // How often maintenance runs.
+    static final long MAINTENANCE_INTERVAL = DAY_IN_MILLIS;
+    // How long past its interval maintenance waits for the device to be idle before it runs
+    // anyway.
+    static final long MAX_IDLE_WAIT = 3 * DAY_IN_MILLIS;
+    // The shape of the data barely changes from day to day, so a full ANALYZE is only needed
+    // once in a while.  PRAGMA optimize covers the runs in between.
+    static final long ANALYZE_INTERVAL = 7 * DAY_IN_MILLIS;
+
+    // Value of PRAGMA auto_vacuum
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    public static final String PREFS_NAME = "database_maintenance";
+    static final String KEY_LAST_RUN = "last_run";
+    static final String KEY_LAST_ANALYZE = "last_analyze";
+    static final String KEY_SIZE_BEFORE = "size_before";
+    static final String KEY_SIZE_AFTER = "size_after";
+    static final String KEY_FREELIST_BEFORE = "freelist_before";
+    static final String KEY_FREELIST_AFTER = "freelist_after";
+
+    private final SQLiteOpenHelper mOpenHelper;
+    private final SharedPreferences mPrefs;
+    private final Clock mClock;
+
+    public DatabaseMaintenance(Context context) {
+        this(WeatherDbHelper.getInstance(context),
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), SYSTEM_CLOCK);
+    }
+
+    public DatabaseMaintenance(SQLiteOpenHelper openHelper, SharedPreferences prefs,
+            Clock clock) {
+        mOpenHelper = openHelper;
+        mPrefs = prefs;
+        mClock = clock;
+    }
+
+    /**
+     * The size of the database file and how much of it is free pages.
+     */
+    public static class Stats {
+        public final long sizeBytes;
+        public final long freelistPages;
+
+        Stats(long sizeBytes, long freelistPages) {
+            this.sizeBytes = sizeBytes;
+            this.freelistPages = freelistPages;
+        }
+    }
+
+    public static Stats getStats(SQLiteDatabase db) {
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        long pageCount = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        long freelist = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        return new Stats(pageSize * pageCount, freelist);
+    }
+
+    /**
+     * @param deviceIdle whether the device is idle at the moment.  Maintenance that is due
+     *                   waits for that, up to MAX_IDLE_WAIT.
+     * @return whether maintenance should run now.
+     */
+    public boolean shouldRun(boolean deviceIdle) {
+        long now = mClock.currentTimeMillis();
+        long lastRun = mPrefs.getLong(KEY_LAST_RUN, -1);
+        if (lastRun < 0 || lastRun > now) {
+            // Never ran, in which case the database is new and has nothing to reclaim, or the
+            // clock was set back.  Either way, count the interval from now.
+            mPrefs.edit().putLong(KEY_LAST_RUN, now).apply();
+            return false;
+        }
+        long sinceLastRun = now - lastRun;
+        if (sinceLastRun < MAINTENANCE_INTERVAL) {
+            return false;
+        }
+        return deviceIdle || sinceLastRun >= MAINTENANCE_INTERVAL + MAX_IDLE_WAIT;
+    }
+
+    /**
+     * Runs maintenance, whether or not it is due, and records the stats around it.
+     *
+     * @return the stats after the run.
+     */
+    public Stats run() {
+        long now = mClock.currentTimeMillis();
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Stats before = getStats(db);
+
+        // VACUUM can't run in a transaction, which is why this isn't a schema migration.
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null)
+                != AUTO_VACUUM_INCREMENTAL) {
+            // The mode only changes when the file is rebuilt, which also drops the free pages.
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        } else {
+            db.execSQL("PRAGMA incremental_vacuum");
+        }
+
+        long lastAnalyze = mPrefs.getLong(KEY_LAST_ANALYZE, -1);
+        boolean analyze = lastAnalyze < 0 || lastAnalyze > now
+                || now - lastAnalyze >= ANALYZE_INTERVAL;
+        if (analyze) {
+            db.execSQL("ANALYZE");
+        } else {
+            // Only analyzes what changed enough to matter; ignored by SQLite before 3.18.
+            db.execSQL("PRAGMA optimize");
+        }
+
+        Stats after = getStats(db);
+        SharedPreferences.Editor editor = mPrefs.edit()
+                .putLong(KEY_LAST_RUN, now)
+                .putLong(KEY_SIZE_BEFORE, before.sizeBytes)
+                .putLong(KEY_SIZE_AFTER, after.sizeBytes)
+                .putLong(KEY_FREELIST_BEFORE, before.freelistPages)
+                .putLong(KEY_FREELIST_AFTER, after.freelistPages);
+        if (analyze) {
+            editor.putLong(KEY_LAST_ANALYZE, now);
+        }
+        editor.apply();
+
+        Log.d(LOG_TAG, "Database maintenance complete. Size " + before.sizeBytes + " -> "
+                + after.sizeBytes + " bytes, free pages " + before.freelistPages + " -> "
+                + after.freelistPages);
+        return after;
+    }
+}
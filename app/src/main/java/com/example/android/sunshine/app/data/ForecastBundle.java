@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+
+/**
+ * The next few days of forecast for a location, as plain arrays.
+ *
+ * Widgets, the Muzei source and the notification only need a handful of values from the first
+ * row or so.  Rather than opening a cursor for that on every refresh, they ask the provider
+ * through ContentProvider.call(), which answers from a cache that is only rebuilt after the
+ * weather data changes.
+ */
+public class ForecastBundle {
+
+    static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+
+    private final long[] mDates;
+    private final int[] mWeatherIds;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+
+    private ForecastBundle(Bundle bundle) {
+        mDates = bundle.getLongArray(WeatherContract.KEY_DATES);
+        mWeatherIds = bundle.getIntArray(WeatherContract.KEY_WEATHER_IDS);
+        mMaxTemps = bundle.getDoubleArray(WeatherContract.KEY_MAX_TEMPS);
+        mMinTemps = bundle.getDoubleArray(WeatherContract.KEY_MIN_TEMPS);
+    }
+
+    /**
+     * Fetches up to the given number of days of forecast, starting with the first day on or
+     * after startDate.
+     */
+    public static ForecastBundle query(Context context, String locationSetting, long startDate,
+            int days) {
+        // Right after a cold start, the snapshot is much quicker than the provider.
+        ForecastSnapshot snapshot = ForecastSnapshot.read(context, locationSetting);
+        Bundle bundle = snapshot == null ? null : snapshot.toForecastBundle(startDate, days);
+        if (bundle != null) {
+            return new ForecastBundle(bundle);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            bundle = call(context.getContentResolver(), locationSetting, startDate, days);
+        } else {
+            // ContentResolver.call() doesn't exist yet, go through a cursor instead.
+            bundle = fromCursor(context.getContentResolver().query(
+                    WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                            locationSetting, startDate, days),
+                    FORECAST_COLUMNS, null, null, null));
+        }
+        return new ForecastBundle(bundle);
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Bundle call(ContentResolver contentResolver, String locationSetting,
+            long startDate, int days) {
+        Bundle extras = new Bundle();
+        extras.putLong(WeatherContract.EXTRA_START_DATE, startDate);
+        extras.putInt(WeatherContract.EXTRA_DAYS, days);
+        Bundle bundle = contentResolver.call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_GET_FORECAST, locationSetting, extras);
+        // Null if the provider couldn't be reached, no forecast then, as from a null cursor
+        return bundle != null ? bundle : fromCursor(null);
+    }
+
+    /**
+     * Copies a cursor over FORECAST_COLUMNS into a Bundle of arrays, and closes it.
+     */
+    static Bundle fromCursor(Cursor cursor) {
+        int count = cursor == null ? 0 : cursor.getCount();
+        long[] dates = new long[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        if (cursor != null) {
+            try {
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    dates[i] = cursor.getLong(INDEX_DATE);
+                    weatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+                    maxTemps[i] = cursor.getDouble(INDEX_MAX_TEMP);
+                    minTemps[i] = cursor.getDouble(INDEX_MIN_TEMP);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return toBundle(dates, weatherIds, maxTemps, minTemps);
+    }
+
+    /**
+     * Copies the first count records into a Bundle of arrays.
+     */
+    static Bundle fromRecords(ForecastRecord[] records, int count) {
+        long[] dates = new long[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = records[i].date;
+            weatherIds[i] = records[i].weatherId;
+            maxTemps[i] = records[i].maxTemp;
+            minTemps[i] = records[i].minTemp;
+        }
+        return toBundle(dates, weatherIds, maxTemps, minTemps);
+    }
+
+    private static Bundle toBundle(long[] dates, int[] weatherIds, double[] maxTemps,
+            double[] minTemps) {
+        Bundle bundle = new Bundle();
+        bundle.putLongArray(WeatherContract.KEY_DATES, dates);
+        bundle.putIntArray(WeatherContract.KEY_WEATHER_IDS, weatherIds);
+        bundle.putDoubleArray(WeatherContract.KEY_MAX_TEMPS, maxTemps);
+        bundle.putDoubleArray(WeatherContract.KEY_MIN_TEMPS, minTemps);
+        return bundle;
+    }
+
+    public int getCount() {
+        return mDates.length;
+    }
+
+    public long getDate(int day) {
+        return mDates[day];
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    public double getMaxTemp(int day) {
+        return mMaxTemps[day];
+    }
+
+    public double getMinTemp(int day) {
+        return mMinTemps[day];
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+/**
+ * One day of forecast for one location, as a ForecastStore reads and writes it.
+ *
+ * Records are mutable so that stores can read into records the caller keeps around, instead of
+ * allocating new ones on every read.
+ */
+public class ForecastRecord {
+    // Normalized like WeatherEntry.COLUMN_DATE
+    public long date;
+    public int weatherId;
+    public double minTemp;
+    public double maxTemp;
+    public double humidity;
+    public double pressure;
+    public double windSpeed;
+    public double degrees;
+
+    public ForecastRecord set(long date, int weatherId, double minTemp, double maxTemp,
+            double humidity, double pressure, double windSpeed, double degrees) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.minTemp = minTemp;
+        this.maxTemp = maxTemp;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.windSpeed = windSpeed;
+        this.degrees = degrees;
+        return this;
+    }
+
+    public ForecastRecord set(ForecastRecord other) {
+        return set(other.date, other.weatherId, other.minTemp, other.maxTemp, other.humidity,
+                other.pressure, other.windSpeed, other.degrees);
+    }
+
+    /**
+     * @return an array of new records, for reads to fill.
+     */
+    public static ForecastRecord[] newArray(int size) {
+        ForecastRecord[] records = new ForecastRecord[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new ForecastRecord();
+        }
+        return records;
+    }
+}
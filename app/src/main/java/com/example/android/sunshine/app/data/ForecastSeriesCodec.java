@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the columns of a block of forecast samples.
+ *
+ * Each column is written on its own, one after the other, so that consecutive values of the
+ * same kind end up next to each other:
+ * <ul>
+ * <li>Timestamps and other integer columns are stored as the delta of their deltas, which is
+ * zero (one bit) for evenly spaced values such as the days of a forecast.</li>
+ * <li>Measurements are stored as the XOR of the value with the previous one, keeping only the
+ * bits that changed.  Slowly changing measurements share most of their sign, exponent and high
+ * mantissa bits, so this is a lot smaller than the 8 bytes of a raw double.</li>
+ * </ul>
+ * Both schemes are the ones described in the Gorilla paper (Pelkonen et al., VLDB 2015).
+ */
+class ForecastSeriesCodec {
+
+    private ForecastSeriesCodec() {
+    }
+
+    static byte[] encode(ForecastSeriesStore.Sample[] samples) {
+        int count = samples.length;
+        BitWriter out = new BitWriter(count * 16);
+        long[] longs = new long[count];
+        double[] doubles = new double[count];
+
+        for (int i = 0; i < count; i++) longs[i] = samples[i].issuedAt;
+        writeLongs(out, longs);
+        for (int i = 0; i < count; i++) longs[i] = samples[i].date;
+        writeLongs(out, longs);
+        for (int i = 0; i < count; i++) longs[i] = samples[i].weatherId;
+        writeLongs(out, longs);
+
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].minTemp;
+        writeDoubles(out, doubles);
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].maxTemp;
+        writeDoubles(out, doubles);
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].pressure;
+        writeDoubles(out, doubles);
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].humidity;
+        writeDoubles(out, doubles);
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].windSpeed;
+        writeDoubles(out, doubles);
+        for (int i = 0; i < count; i++) doubles[i] = samples[i].degrees;
+        writeDoubles(out, doubles);
+
+        return out.toByteArray();
+    }
+
+    static ForecastSeriesStore.Sample[] decode(byte[] data, int count) {
+        BitReader in = new BitReader(data);
+        long[] issuedAt = readLongs(in, count);
+        long[] date = readLongs(in, count);
+        long[] weatherId = readLongs(in, count);
+        double[] minTemp = readDoubles(in, count);
+        double[] maxTemp = readDoubles(in, count);
+        double[] pressure = readDoubles(in, count);
+        double[] humidity = readDoubles(in, count);
+        double[] windSpeed = readDoubles(in, count);
+        double[] degrees = readDoubles(in, count);
+
+        ForecastSeriesStore.Sample[] samples = new ForecastSeriesStore.Sample[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = new ForecastSeriesStore.Sample(issuedAt[i], date[i], (int) weatherId[i],
+                    minTemp[i], maxTemp[i], pressure[i], humidity[i], windSpeed[i], degrees[i]);
+        }
+        return samples;
+    }
+
+    // Delta-of-delta: the first value and the first delta are written in full, every following
+    // value as the change in delta, with a variable length prefix picking the smallest of a few
+    // fixed widths that fits.
+    static void writeLongs(BitWriter out, long[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        out.writeBits(values[0], 64);
+        if (values.length == 1) {
+            return;
+        }
+        long previousDelta = values[1] - values[0];
+        out.writeBits(previousDelta, 64);
+        for (int i = 2; i < values.length; i++) {
+            long delta = values[i] - values[i - 1];
+            long deltaOfDelta = delta - previousDelta;
+            previousDelta = delta;
+            if (deltaOfDelta == 0) {
+                out.writeBits(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.writeBits(0x2, 2);
+                out.writeBits(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.writeBits(0x6, 3);
+                out.writeBits(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.writeBits(0xe, 4);
+                out.writeBits(deltaOfDelta, 12);
+            } else {
+                out.writeBits(0xf, 4);
+                out.writeBits(deltaOfDelta, 64);
+            }
+        }
+    }
+
+    static long[] readLongs(BitReader in, int count) {
+        long[] values = new long[count];
+        if (count == 0) {
+            return values;
+        }
+        values[0] = in.readBits(64);
+        if (count == 1) {
+            return values;
+        }
+        long delta = in.readBits(64);
+        values[1] = values[0] + delta;
+        for (int i = 2; i < count; i++) {
+            long deltaOfDelta;
+            if (in.readBits(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(7);
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(9);
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(12);
+            } else {
+                deltaOfDelta = in.readBits(64);
+            }
+            delta += deltaOfDelta;
+            values[i] = values[i - 1] + delta;
+        }
+        return values;
+    }
+
+    // XOR: '0' when the value repeats, '10' followed by the changed bits when they fall inside
+    // the window of meaningful bits used for the previous value, otherwise '11' followed by a
+    // new window (5 bits of leading zeros, 6 bits of length) and the changed bits.
+    static void writeDoubles(BitWriter out, double[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        long previous = Double.doubleToRawLongBits(values[0]);
+        out.writeBits(previous, 64);
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        for (int i = 1; i < values.length; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBits(0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBits(0x2, 2);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                out.writeBits(0x3, 2);
+                out.writeBits(leading, 5);
+                out.writeBits(length - 1, 6);
+                out.writeBits(xor >>> trailing, length);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    static double[] readDoubles(BitReader in, int count) {
+        double[] values = new double[count];
+        if (count == 0) {
+            return values;
+        }
+        long previous = in.readBits(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.readBits(1) != 0) {
+                if (in.readBits(1) != 0) {
+                    leading = (int) in.readBits(5);
+                    int length = (int) in.readBits(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    /**
+     * Appends bit strings, most significant bit first.
+     */
+    static class BitWriter {
+        private byte[] mBytes;
+        private long mBitCount;
+
+        BitWriter(int initialCapacity) {
+            mBytes = new byte[Math.max(initialCapacity, 8)];
+        }
+
+        /**
+         * Writes the low bitCount bits of value.
+         */
+        void writeBits(long value, int bitCount) {
+            for (int bit = bitCount - 1; bit >= 0; ) {
+                int byteIndex = (int) (mBitCount >>> 3);
+                if (byteIndex >= mBytes.length) {
+                    mBytes = Arrays.copyOf(mBytes, mBytes.length * 2);
+                }
+                // Fill up the current byte as far as possible in one go.
+                int free = 8 - (int) (mBitCount & 7);
+                int take = Math.min(free, bit + 1);
+                int chunk = (int) (value >>> (bit + 1 - take)) & ((1 << take) - 1);
+                mBytes[byteIndex] |= chunk << (free - take);
+                mBitCount += take;
+                bit -= take;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, (int) ((mBitCount + 7) >>> 3));
+        }
+    }
+
+    /**
+     * Reads back what a BitWriter wrote.
+     */
+    static class BitReader {
+        private final byte[] mBytes;
+        private long mBitPosition;
+
+        BitReader(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        long readBits(int bitCount) {
+            long value = 0;
+            int remaining = bitCount;
+            while (remaining > 0) {
+                int byteIndex = (int) (mBitPosition >>> 3);
+                int available = 8 - (int) (mBitPosition & 7);
+                int take = Math.min(available, remaining);
+                int chunk = ((mBytes[byteIndex] & 0xff) >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                mBitPosition += take;
+                remaining -= take;
+            }
+            return value;
+        }
+
+        long readSignedBits(int bitCount) {
+            long value = readBits(bitCount);
+            // The ranges are asymmetric (e.g. -63..64 in 7 bits), so only values above the
+            // positive limit wrap around to negative ones.
+            long limit = 1L << (bitCount - 1);
+            return value > limit ? value - (1L << bitCount) : value;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps every forecast we were ever issued, per location, so we can look at how the forecast
+ * for a given day evolved.
+ *
+ * The weather table only holds the latest forecast per day; keeping every issued forecast there
+ * would mean hundreds of rows per location per day.  Instead, each location gets an append-only
+ * file of blocks, one block per sync.  A block stores its samples column by column, compressed
+ * with ForecastSeriesCodec, behind a small header with the ranges it covers, so range scans can
+ * skip whole blocks without decoding them.
+ */
+public class ForecastSeriesStore {
+    private static final String LOG_TAG = ForecastSeriesStore.class.getSimpleName();
+
+    static final String SERIES_DIR = "series";
+    private static final String SERIES_SUFFIX = ".series";
+
+    private static final int BLOCK_MAGIC = 0x46534231; // "FSB1"
+    // magic, row count, payload length, issued at range, date range
+    private static final int BLOCK_HEADER_BYTES = 3 * 4 + 4 * 8;
+
+    private final File mSeriesDir;
+
+    // Length of the valid part of each file, checked once per file and process.  Anything past
+    // it is the torn tail of an append that didn't complete, and gets overwritten.
+    private final Map<String, Long> mValidLengths = new HashMap<String, Long>();
+
+    /**
+     * One forecast for one day, as issued at one point in time.
+     */
+    public static class Sample {
+        // When the forecast was fetched, in milliseconds since the epoch
+        public final long issuedAt;
+        // The day forecast, normalized like WeatherEntry.COLUMN_DATE
+        public final long date;
+        public final int weatherId;
+        public final double minTemp;
+        public final double maxTemp;
+        public final double pressure;
+        public final double humidity;
+        public final double windSpeed;
+        public final double degrees;
+
+        public Sample(long issuedAt, long date, int weatherId, double minTemp, double maxTemp,
+                double pressure, double humidity, double windSpeed, double degrees) {
+            this.issuedAt = issuedAt;
+            this.date = date;
+            this.weatherId = weatherId;
+            this.minTemp = minTemp;
+            this.maxTemp = maxTemp;
+            this.pressure = pressure;
+            this.humidity = humidity;
+            this.windSpeed = windSpeed;
+            this.degrees = degrees;
+        }
+    }
+
+    public ForecastSeriesStore(Context context) {
+        this(new File(context.getFilesDir(), SERIES_DIR));
+    }
+
+    ForecastSeriesStore(File seriesDir) {
+        mSeriesDir = seriesDir;
+    }
+
+    /**
+     * Appends the samples as one block.
+     */
+    public synchronized void append(String locationSetting, List<Sample> samples)
+            throws IOException {
+        if (samples.isEmpty()) {
+            return;
+        }
+        if (!mSeriesDir.isDirectory() && !mSeriesDir.mkdirs()) {
+            throw new IOException("Unable to create " + mSeriesDir);
+        }
+
+        Sample[] block = samples.toArray(new Sample[samples.size()]);
+        long minIssuedAt = Long.MAX_VALUE;
+        long maxIssuedAt = Long.MIN_VALUE;
+        long minDate = Long.MAX_VALUE;
+        long maxDate = Long.MIN_VALUE;
+        for (Sample sample : block) {
+            minIssuedAt = Math.min(minIssuedAt, sample.issuedAt);
+            maxIssuedAt = Math.max(maxIssuedAt, sample.issuedAt);
+            minDate = Math.min(minDate, sample.date);
+            maxDate = Math.max(maxDate, sample.date);
+        }
+        byte[] payload = ForecastSeriesCodec.encode(block);
+
+        File file = getFile(locationSetting);
+        long validLength = getValidLength(file);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(validLength);
+            out.seek(validLength);
+            // Written in one go, so a crash leaves at most one torn block at the end.
+            ByteArrayOutputStream bytes =
+                    new ByteArrayOutputStream(BLOCK_HEADER_BYTES + payload.length);
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(BLOCK_MAGIC);
+            header.writeInt(block.length);
+            header.writeInt(payload.length);
+            header.writeLong(minIssuedAt);
+            header.writeLong(maxIssuedAt);
+            header.writeLong(minDate);
+            header.writeLong(maxDate);
+            header.write(payload);
+            out.write(bytes.toByteArray());
+            mValidLengths.put(file.getName(), validLength + bytes.size());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the samples issued in [issuedFrom, issuedTo) for days in [dateFrom, dateTo), in the
+     * order they were appended.
+     */
+    public synchronized List<Sample> scan(String locationSetting, long issuedFrom, long issuedTo,
+            long dateFrom, long dateTo) throws IOException {
+        List<Sample> result = new ArrayList<Sample>();
+        File file = getFile(locationSetting);
+        if (!file.exists()) {
+            return result;
+        }
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                int magic;
+                try {
+                    magic = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (magic != BLOCK_MAGIC) {
+                    Log.w(LOG_TAG, "Ignoring corrupt tail of " + file.getName());
+                    break;
+                }
+                int rowCount = in.readInt();
+                int payloadLength = in.readInt();
+                long minIssuedAt = in.readLong();
+                long maxIssuedAt = in.readLong();
+                long minDate = in.readLong();
+                long maxDate = in.readLong();
+
+                if (maxIssuedAt < issuedFrom || minIssuedAt >= issuedTo
+                        || maxDate < dateFrom || minDate >= dateTo) {
+                    // Nothing wanted in there, skip the block without decoding it.
+                    if (in.skipBytes(payloadLength) < payloadLength) {
+                        break;
+                    }
+                    continue;
+                }
+
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                for (Sample sample : ForecastSeriesCodec.decode(payload, rowCount)) {
+                    if (sample.issuedAt >= issuedFrom && sample.issuedAt < issuedTo
+                            && sample.date >= dateFrom && sample.date < dateTo) {
+                        result.add(sample);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            Log.w(LOG_TAG, "Ignoring truncated block at the end of " + file.getName());
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    /**
+     * @return the size of the series kept for the location, in bytes.
+     */
+    public synchronized long getSize(String locationSetting) {
+        return getFile(locationSetting).length();
+    }
+
+    private File getFile(String locationSetting) {
+        return new File(mSeriesDir, Uri.encode(locationSetting) + SERIES_SUFFIX);
+    }
+
+    /**
+     * Walks the block headers to find where the last complete block ends.
+     */
+    private long getValidLength(File file) throws IOException {
+        Long cached = mValidLengths.get(file.getName());
+        if (cached != null) {
+            return cached;
+        }
+        long length = file.length();
+        long validLength = 0;
+        if (length > 0) {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                while (validLength + BLOCK_HEADER_BYTES <= length) {
+                    in.seek(validLength);
+                    if (in.readInt() != BLOCK_MAGIC) {
+                        break;
+                    }
+                    in.readInt();
+                    long blockEnd = validLength + BLOCK_HEADER_BYTES + in.readInt();
+                    if (blockEnd > length) {
+                        break;
+                    }
+                    validLength = blockEnd;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        mValidLengths.put(file.getName(), validLength);
+        return validLength;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The first days of forecast for one location, in a small binary file the screens can show
+ * before the database is even opened.
+ *
+ * The sync writes the snapshot after every commit.  On a cold start the forecast list and the
+ * widgets read it, which is one small file read, instead of waiting on the database to open and
+ * the join query to run; the list then switches over to its loader's cursor once that is
+ * ready.  A write through the provider to the days it shows deletes the snapshot, so it never
+ * disagrees with the database for longer than it takes the sync to write the next one.
+ */
+public class ForecastSnapshot {
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    static final String SNAPSHOT_FILE = "forecast.snapshot";
+
+    private static final int MAGIC = 0x53465331; // "SFS1"
+    // Bump when the format below changes, older snapshots are then ignored.
+    private static final int FORMAT_VERSION = 1;
+
+    // As many days as the forecast list shows in its first page.
+    static final int SNAPSHOT_DAYS = 20;
+
+    static final String[] SNAPSHOT_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+    // these indices must match the projection
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_WEATHER_ID = 4;
+    private static final int INDEX_COORD_LAT = 5;
+    private static final int INDEX_COORD_LONG = 6;
+    // Not one of the columns written, the snapshot is for one location anyway
+    private static final int INDEX_LOCATION_SETTING = 7;
+
+    private final String mLocationSetting;
+    private final double mCoordLat;
+    private final double mCoordLong;
+    // Whether the database had no more days than the snapshot holds
+    private final boolean mComplete;
+    private final long[] mIds;
+    private final long[] mDates;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+    private final int[] mWeatherIds;
+
+    private ForecastSnapshot(String locationSetting, double coordLat, double coordLong,
+            boolean complete, int count) {
+        mLocationSetting = locationSetting;
+        mCoordLat = coordLat;
+        mCoordLong = coordLong;
+        mComplete = complete;
+        mIds = new long[count];
+        mDates = new long[count];
+        mMaxTemps = new double[count];
+        mMinTemps = new double[count];
+        mWeatherIds = new int[count];
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), SNAPSHOT_FILE);
+    }
+
+    /**
+     * Writes the snapshot of the location's forecast from today on, as it is in the database.
+     */
+    public static void update(Context context, String locationSetting) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(locationSetting,
+                        System.currentTimeMillis(), SNAPSHOT_DAYS + 1),
+                SNAPSHOT_COLUMNS, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            write(getFile(context), locationSetting, cursor);
+        } catch (IOException e) {
+            // The snapshot only makes the first frame faster, the screens do fine without.
+            Log.e(LOG_TAG, "Error writing the forecast snapshot", e);
+            delete(context);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void write(File file, String locationSetting, Cursor cursor)
+            throws IOException {
+        int count = Math.min(cursor.getCount(), SNAPSHOT_DAYS);
+        // Written next to the snapshot and renamed over it, so readers never see half of it.
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(locationSetting);
+            boolean first = cursor.moveToFirst();
+            out.writeDouble(first ? cursor.getDouble(INDEX_COORD_LAT) : 0);
+            out.writeDouble(first ? cursor.getDouble(INDEX_COORD_LONG) : 0);
+            out.writeBoolean(cursor.getCount() <= SNAPSHOT_DAYS);
+            out.writeInt(count);
+            for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+                out.writeLong(cursor.getLong(INDEX_ID));
+                out.writeLong(cursor.getLong(INDEX_DATE));
+                out.writeDouble(cursor.getDouble(INDEX_MAX_TEMP));
+                out.writeDouble(cursor.getDouble(INDEX_MIN_TEMP));
+                out.writeInt(cursor.getInt(INDEX_WEATHER_ID));
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * @return the snapshot, or null if there is none for the location.
+     */
+    public static ForecastSnapshot read(Context context, String locationSetting) {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(getFile(context))));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !locationSetting.equals(in.readUTF())) {
+                return null;
+            }
+            ForecastSnapshot snapshot = new ForecastSnapshot(locationSetting, in.readDouble(),
+                    in.readDouble(), in.readBoolean(), in.readInt());
+            for (int i = 0; i < snapshot.mDates.length; i++) {
+                snapshot.mIds[i] = in.readLong();
+                snapshot.mDates[i] = in.readLong();
+                snapshot.mMaxTemps[i] = in.readDouble();
+                snapshot.mMinTemps[i] = in.readDouble();
+                snapshot.mWeatherIds[i] = in.readInt();
+            }
+            return snapshot;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading the forecast snapshot", e);
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing was written, nothing is lost.
+            }
+        }
+    }
+
+    /**
+     * @return whether there is a snapshot, and it is of the location.
+     */
+    public static boolean isFor(Context context, String locationSetting) {
+        return read(context, locationSetting) != null;
+    }
+
+    public static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    private int firstDayFrom(long startDate) {
+        long normalizedStartDate = WeatherContract.normalizeDate(startDate);
+        int first = 0;
+        while (first < mDates.length && mDates[first] < normalizedStartDate) {
+            first++;
+        }
+        return first;
+    }
+
+    /**
+     * @return the days from startDate on, as a cursor with the given projection, the way the
+     * weather location URIs would return them.  Columns the snapshot doesn't hold are null.
+     */
+    public Cursor toCursor(String[] projection, long startDate) {
+        int[] indices = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            indices[i] = -1;
+            for (int j = 0; j < SNAPSHOT_COLUMNS.length; j++) {
+                if (SNAPSHOT_COLUMNS[j].equals(projection[i])) {
+                    indices[i] = j;
+                }
+            }
+            if (LocationEntry.COLUMN_LOCATION_SETTING.equals(projection[i])) {
+                indices[i] = INDEX_LOCATION_SETTING;
+            }
+        }
+
+        int first = firstDayFrom(startDate);
+        MatrixCursor cursor = new MatrixCursor(projection, mDates.length - first);
+        Object[] row = new Object[projection.length];
+        for (int day = first; day < mDates.length; day++) {
+            for (int i = 0; i < projection.length; i++) {
+                row[i] = getValue(day, indices[i]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private Object getValue(int day, int index) {
+        switch (index) {
+            case INDEX_ID:
+                return mIds[day];
+            case INDEX_DATE:
+                return mDates[day];
+            case INDEX_MAX_TEMP:
+                return mMaxTemps[day];
+            case INDEX_MIN_TEMP:
+                return mMinTemps[day];
+            case INDEX_WEATHER_ID:
+                return mWeatherIds[day];
+            case INDEX_COORD_LAT:
+                return mCoordLat;
+            case INDEX_COORD_LONG:
+                return mCoordLong;
+            case INDEX_LOCATION_SETTING:
+                return mLocationSetting;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the days a ForecastBundle query would return, or null if the snapshot doesn't
+     * hold all of them.
+     */
+    Bundle toForecastBundle(long startDate, int days) {
+        int first = firstDayFrom(startDate);
+        int count = Math.min(days, mDates.length - first);
+        if (count < days && !mComplete) {
+            return null;
+        }
+        ForecastRecord[] records = ForecastRecord.newArray(count);
+        for (int i = 0; i < count; i++) {
+            records[i].date = mDates[first + i];
+            records[i].weatherId = mWeatherIds[first + i];
+            records[i].maxTemp = mMaxTemps[first + i];
+            records[i].minTemp = mMinTemps[first + i];
+        }
+        return ForecastBundle.fromRecords(records, count);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+/**
+ * Reads the live forecast window: the days of forecast per location, from a start date on.
+ *
+ * WeatherProvider reads the window through this interface, for METHOD_GET_FORECAST only.
+ * SqliteForecastStore reads the weather table and can answer everything.  MappedForecastStore
+ * keeps a few locations' windows in a memory-mapped file, and answers NOT_STORED for what it
+ * doesn't hold, in which case the provider goes to the database.  The provider writes the
+ * weather table itself; stores holding copies of it are {@link WritableForecastStore}s.
+ */
+public interface ForecastStore {
+
+    /**
+     * Returned by reads the store can't answer.  It says nothing about whether the data exists.
+     */
+    int NOT_STORED = -1;
+
+    /**
+     * Reads the forecast for one day.
+     *
+     * @return 1 if the day was found and copied into record, 0 if there is no such day, or
+     * NOT_STORED.
+     */
+    int lookup(String locationSetting, long date, ForecastRecord record);
+
+    /**
+     * Reads up to the given number of days, starting with the first day on or after startDate.
+     *
+     * @param records receives the days, it must hold at least that many records.
+     * @return the number of days copied into records, or NOT_STORED.
+     */
+    int read(String locationSetting, long startDate, int days, ForecastRecord[] records);
+
+    void close();
+}
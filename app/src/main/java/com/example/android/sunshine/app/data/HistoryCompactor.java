@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import com.example.android.sunshine.app.data.WeatherContract.HistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.core.DayMath;
+import com.example.android.sunshine.core.LocalDays;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rolls expired daily weather rows into the weekly and monthly history tables, then deletes
+ * them.
+ *
+ * Work is done one calendar month of daily rows at a time, each month in its own batch, so the
+ * cost of a batch only depends on the number of locations and never on how much history has
+ * accumulated.  The number of batches per run is capped as well; whatever is left over is
+ * picked up by the next run.
+ */
+public class HistoryCompactor {
+
+    // A year of daily rows per run is plenty for the daily schedule, and bounds the first run
+    // after the app has been sitting unused for a long time.
+    static final int MAX_BATCHES_PER_RUN = 12;
+
+    // Weekly history is kept for about a year; monthly history is small enough to keep forever.
+    static final int WEEKLY_HISTORY_DAYS = 53 * 7;
+
+    private static final String[] DAY_COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+    // these indices must match the projection
+    private static final int COL_LOC_KEY = 0;
+    private static final int COL_DATE = 1;
+    private static final int COL_MIN_TEMP = 2;
+    private static final int COL_MAX_TEMP = 3;
+    private static final int COL_WEATHER_ID = 4;
+
+    private static final String sDateBeforeSelection = WeatherEntry.COLUMN_DATE + " < ?";
+
+    private static final String sPeriodRangeSelection =
+            HistoryEntry.COLUMN_PERIOD_START + " >= ? AND " +
+                    HistoryEntry.COLUMN_PERIOD_START + " <= ?";
+
+    private final ContentResolver mContentResolver;
+    private final LocalDays mDays = LocalDays.getDefault();
+
+    public HistoryCompactor(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Compacts the daily rows dated before the cutoff.
+     *
+     * @param cutoffDate The first day to keep as a daily row, normalized like
+     *                   WeatherEntry.COLUMN_DATE.
+     * @return the number of daily rows rolled into the history.
+     */
+    public int compact(long cutoffDate) throws RemoteException, OperationApplicationException {
+        int compacted = 0;
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+            long oldestDate = queryOldestDate(cutoffDate);
+            if (oldestDate < 0) {
+                break;
+            }
+            long batchEnd = Math.min(cutoffDate, getNextMonthStart(oldestDate));
+            compacted += compactBatch(batchEnd);
+        }
+
+        long weeklyCutoff = mDays.getStartOfDay(mDays.getJulianDay(cutoffDate)
+                - WEEKLY_HISTORY_DAYS);
+        mContentResolver.delete(HistoryEntry.WEEKLY_CONTENT_URI,
+                HistoryEntry.COLUMN_PERIOD_START + " < ?",
+                new String[]{Long.toString(weeklyCutoff)});
+        return compacted;
+    }
+
+    private long queryOldestDate(long cutoffDate) {
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI,
+                new String[]{"MIN(" + WeatherEntry.COLUMN_DATE + ")"},
+                sDateBeforeSelection,
+                new String[]{Long.toString(cutoffDate)},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Rolls every daily row dated before batchEnd into the history and deletes it, in one
+     * transaction.
+     */
+    private int compactBatch(long batchEnd) throws RemoteException, OperationApplicationException {
+        Map<String, Aggregate> weeks = new HashMap<String, Aggregate>();
+        Map<String, Aggregate> months = new HashMap<String, Aggregate>();
+        int days = 0;
+
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI,
+                DAY_COLUMNS,
+                sDateBeforeSelection,
+                new String[]{Long.toString(batchEnd)},
+                null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                long locationId = cursor.getLong(COL_LOC_KEY);
+                long date = cursor.getLong(COL_DATE);
+                double min = cursor.getDouble(COL_MIN_TEMP);
+                double max = cursor.getDouble(COL_MAX_TEMP);
+                int weatherId = cursor.getInt(COL_WEATHER_ID);
+
+                getAggregate(weeks, locationId, getWeekStart(date)).addDay(min, max, weatherId);
+                getAggregate(months, locationId, getMonthStart(date)).addDay(min, max, weatherId);
+                days++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        mergeExisting(HistoryEntry.WEEKLY_CONTENT_URI, weeks);
+        mergeExisting(HistoryEntry.MONTHLY_CONTENT_URI, months);
+
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(weeks.size() + months.size() + 1);
+        for (Aggregate week : weeks.values()) {
+            operations.add(ContentProviderOperation.newInsert(HistoryEntry.WEEKLY_CONTENT_URI)
+                    .withValues(week.toContentValues())
+                    .build());
+        }
+        for (Aggregate month : months.values()) {
+            operations.add(ContentProviderOperation.newInsert(HistoryEntry.MONTHLY_CONTENT_URI)
+                    .withValues(month.toContentValues())
+                    .build());
+        }
+        // Batches end on a month boundary unless they stop at the cutoff, so this mostly drops
+        // a whole monthly partition rather than deleting its rows.
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.buildWeatherBefore(batchEnd))
+                .build());
+        mContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        return days;
+    }
+
+    /**
+     * Folds the history rows already stored for the periods touched by this batch into the
+     * aggregates, so that the inserts (which replace on conflict) carry the combined totals.
+     * This happens when a week or month straddles two batches or two runs.
+     */
+    private void mergeExisting(Uri historyUri, Map<String, Aggregate> aggregates) {
+        if (aggregates.isEmpty()) {
+            return;
+        }
+        long firstPeriod = Long.MAX_VALUE;
+        long lastPeriod = Long.MIN_VALUE;
+        for (Aggregate aggregate : aggregates.values()) {
+            firstPeriod = Math.min(firstPeriod, aggregate.periodStart);
+            lastPeriod = Math.max(lastPeriod, aggregate.periodStart);
+        }
+
+        Cursor cursor = mContentResolver.query(historyUri, null, sPeriodRangeSelection,
+                new String[]{Long.toString(firstPeriod), Long.toString(lastPeriod)}, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            int locKeyIndex = cursor.getColumnIndex(HistoryEntry.COLUMN_LOC_KEY);
+            int periodStartIndex = cursor.getColumnIndex(HistoryEntry.COLUMN_PERIOD_START);
+            while (cursor.moveToNext()) {
+                Aggregate aggregate = aggregates.get(buildKey(cursor.getLong(locKeyIndex),
+                        cursor.getLong(periodStartIndex)));
+                if (aggregate != null) {
+                    aggregate.addHistory(cursor);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Aggregate getAggregate(Map<String, Aggregate> aggregates, long locationId,
+            long periodStart) {
+        String key = buildKey(locationId, periodStart);
+        Aggregate aggregate = aggregates.get(key);
+        if (aggregate == null) {
+            aggregate = new Aggregate(locationId, periodStart);
+            aggregates.put(key, aggregate);
+        }
+        return aggregate;
+    }
+
+    private static String buildKey(long locationId, long periodStart) {
+        return locationId + "/" + periodStart;
+    }
+
+    /**
+     * @return the normalized date of the Monday starting the week of the given date.
+     */
+    long getWeekStart(long date) {
+        int julianDay = mDays.getJulianDay(date);
+        // Julian day numbers are divisible by 7 exactly on Mondays.
+        return mDays.getStartOfDay(julianDay - julianDay % 7);
+    }
+
+    /**
+     * @return the normalized date of the first day of the month of the given date.
+     */
+    long getMonthStart(long date) {
+        int yearMonth = DayMath.getYearMonth(mDays.getJulianDay(date));
+        return mDays.getStartOfMonth(yearMonth / 100, yearMonth % 100);
+    }
+
+    private long getNextMonthStart(long date) {
+        int yearMonth = DayMath.getYearMonth(mDays.getJulianDay(date));
+        return mDays.getStartOfMonth(yearMonth / 100, yearMonth % 100 + 1);
+    }
+
+    /**
+     * Running totals for one history row.
+     */
+    private static class Aggregate {
+        final long locationId;
+        final long periodStart;
+        int dayCount;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double minSum;
+        double maxSum;
+        final int[] conditionCounts = new int[WeatherContract.BUCKET_COUNT];
+
+        Aggregate(long locationId, long periodStart) {
+            this.locationId = locationId;
+            this.periodStart = periodStart;
+        }
+
+        void addDay(double dayMin, double dayMax, int weatherId) {
+            dayCount++;
+            min = Math.min(min, dayMin);
+            max = Math.max(max, dayMax);
+            minSum += dayMin;
+            maxSum += dayMax;
+            conditionCounts[WeatherContract.getConditionBucket(weatherId)]++;
+        }
+
+        void addHistory(Cursor cursor) {
+            int days = cursor.getInt(cursor.getColumnIndex(HistoryEntry.COLUMN_DAY_COUNT));
+            dayCount += days;
+            min = Math.min(min,
+                    cursor.getDouble(cursor.getColumnIndex(HistoryEntry.COLUMN_MIN_TEMP)));
+            max = Math.max(max,
+                    cursor.getDouble(cursor.getColumnIndex(HistoryEntry.COLUMN_MAX_TEMP)));
+            minSum += days *
+                    cursor.getDouble(cursor.getColumnIndex(HistoryEntry.COLUMN_MEAN_MIN_TEMP));
+            maxSum += days *
+                    cursor.getDouble(cursor.getColumnIndex(HistoryEntry.COLUMN_MEAN_MAX_TEMP));
+            for (int bucket = 0; bucket < WeatherContract.BUCKET_COUNT; bucket++) {
+                conditionCounts[bucket] += cursor.getInt(
+                        cursor.getColumnIndex(HistoryEntry.COLUMN_CONDITION_COUNTS[bucket]));
+            }
+        }
+
+        ContentValues toContentValues() {
+            ContentValues values = new ContentValues();
+            values.put(HistoryEntry.COLUMN_LOC_KEY, locationId);
+            values.put(HistoryEntry.COLUMN_PERIOD_START, periodStart);
+            values.put(HistoryEntry.COLUMN_DAY_COUNT, dayCount);
+            values.put(HistoryEntry.COLUMN_MIN_TEMP, min);
+            values.put(HistoryEntry.COLUMN_MAX_TEMP, max);
+            values.put(HistoryEntry.COLUMN_MEAN_MIN_TEMP, minSum / dayCount);
+            values.put(HistoryEntry.COLUMN_MEAN_MAX_TEMP, maxSum / dayCount);
+            for (int bucket = 0; bucket < WeatherContract.BUCKET_COUNT; bucket++) {
+                values.put(HistoryEntry.COLUMN_CONDITION_COUNTS[bucket], conditionCounts[bucket]);
+            }
+            return values;
+        }
+    }
+}
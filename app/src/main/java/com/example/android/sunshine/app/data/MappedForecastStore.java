@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * WritableForecastStore keeping the forecast window of a few locations in a memory-mapped file of
+ * fixed-size records.
+ *
+ * The window is small and always the same shape, so a slot per location with room for
+ * WINDOW_DAYS records is enough, and reading it is a handful of absolute reads from the
+ * mapping: no query, no cursor window, nothing to allocate.  The file outlives the process, so
+ * the first read after a restart doesn't need to open the database either.
+ *
+ * The store is a copy of what the database holds.  A slot records the date it starts at and
+ * whether it holds everything the database had from then on; reads it can't answer from that
+ * return NOT_STORED.  Slots are reused round-robin once they are all taken.
+ */
+public class MappedForecastStore implements WritableForecastStore {
+
+    static final int WINDOW_DAYS = 16;
+    static final int SLOTS = 8;
+
+    private static final int MAGIC = 0x53464d31; // "SFM1"
+    // Bump when the layout below changes, older files are then cleared instead of read.
+    private static final int LAYOUT_VERSION = 1;
+
+    // magic, layout version, next slot to reuse, padding
+    private static final int HEADER_BYTES = 4 * 4;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_LAYOUT_VERSION = 4;
+    private static final int OFFSET_NEXT_SLOT = 8;
+
+    // Location settings longer than this, in UTF-8, aren't stored.
+    private static final int MAX_SETTING_BYTES = 60;
+
+    // state, setting length, setting, start date, count, complete, padding
+    private static final int SLOT_HEADER_BYTES = 4 + 4 + MAX_SETTING_BYTES + 8 + 4 + 4 + 4;
+    private static final int OFFSET_STATE = 0;
+    private static final int OFFSET_SETTING_LENGTH = 4;
+    private static final int OFFSET_SETTING = 8;
+    private static final int OFFSET_START_DATE = OFFSET_SETTING + MAX_SETTING_BYTES;
+    private static final int OFFSET_COUNT = OFFSET_START_DATE + 8;
+    private static final int OFFSET_COMPLETE = OFFSET_COUNT + 4;
+
+    // A slot is only read while its state is STATE_VALID.  Writes clear it first and set it
+    // last, so a slot torn by the process dying halfway through a write reads as empty.
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_VALID = 1;
+
+    // date, weather id, then the six measurements scaled like the weather table stores them
+    private static final int RECORD_BYTES = 8 + 4 + 6 * 4;
+    private static final int SLOT_BYTES = SLOT_HEADER_BYTES + WINDOW_DAYS * RECORD_BYTES;
+    static final int FILE_BYTES = HEADER_BYTES + SLOTS * SLOT_BYTES;
+
+    private MappedByteBuffer mBuffer;
+    // The location setting in each valid slot, so lookups compare strings instead of bytes.
+    private final String[] mSlotSettings = new String[SLOTS];
+
+    public MappedForecastStore(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(FILE_BYTES);
+            // The mapping stays valid once the file is closed.
+            mBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    FILE_BYTES);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (mBuffer.getInt(OFFSET_MAGIC) != MAGIC
+                || mBuffer.getInt(OFFSET_LAYOUT_VERSION) != LAYOUT_VERSION) {
+            for (int i = 0; i < FILE_BYTES; i++) {
+                mBuffer.put(i, (byte) 0);
+            }
+            mBuffer.putInt(OFFSET_MAGIC, MAGIC);
+            mBuffer.putInt(OFFSET_LAYOUT_VERSION, LAYOUT_VERSION);
+            return;
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int base = slotOffset(slot);
+            if (mBuffer.getInt(base + OFFSET_STATE) == STATE_VALID) {
+                byte[] setting = new byte[mBuffer.getInt(base + OFFSET_SETTING_LENGTH)];
+                for (int i = 0; i < setting.length; i++) {
+                    setting[i] = mBuffer.get(base + OFFSET_SETTING + i);
+                }
+                mSlotSettings[slot] = new String(setting, "UTF-8");
+            }
+        }
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int recordOffset(int slotBase, int index) {
+        return slotBase + SLOT_HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    private int findSlot(String locationSetting) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (locationSetting.equals(mSlotSettings[slot])) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void put(String locationSetting, long startDate,
+            ForecastRecord[] records, int count) {
+        if (mBuffer == null) {
+            return;
+        }
+        byte[] setting;
+        try {
+            setting = locationSetting.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        int slot = findSlot(locationSetting);
+        if (slot < 0) {
+            slot = mBuffer.getInt(OFFSET_NEXT_SLOT);
+            mBuffer.putInt(OFFSET_NEXT_SLOT, (slot + 1) % SLOTS);
+        }
+        int base = slotOffset(slot);
+        mBuffer.putInt(base + OFFSET_STATE, STATE_EMPTY);
+        mSlotSettings[slot] = null;
+        if (setting.length > MAX_SETTING_BYTES) {
+            return;
+        }
+
+        mBuffer.putInt(base + OFFSET_SETTING_LENGTH, setting.length);
+        for (int i = 0; i < setting.length; i++) {
+            mBuffer.put(base + OFFSET_SETTING + i, setting[i]);
+        }
+        int stored = Math.min(count, WINDOW_DAYS);
+        mBuffer.putLong(base + OFFSET_START_DATE, startDate);
+        mBuffer.putInt(base + OFFSET_COUNT, stored);
+        mBuffer.putInt(base + OFFSET_COMPLETE, count <= WINDOW_DAYS ? 1 : 0);
+        for (int i = 0; i < stored; i++) {
+            writeRecord(recordOffset(base, i), records[i]);
+        }
+        mBuffer.putInt(base + OFFSET_STATE, STATE_VALID);
+        mSlotSettings[slot] = locationSetting;
+    }
+
+    private void writeRecord(int offset, ForecastRecord record) {
+        mBuffer.putLong(offset, record.date);
+        mBuffer.putInt(offset + 8, record.weatherId);
+        mBuffer.putInt(offset + 12, (int) WeatherRowCodec.encode(record.minTemp));
+        mBuffer.putInt(offset + 16, (int) WeatherRowCodec.encode(record.maxTemp));
+        mBuffer.putInt(offset + 20, (int) WeatherRowCodec.encode(record.humidity));
+        mBuffer.putInt(offset + 24, (int) WeatherRowCodec.encode(record.pressure));
+        mBuffer.putInt(offset + 28, (int) WeatherRowCodec.encode(record.windSpeed));
+        mBuffer.putInt(offset + 32, (int) WeatherRowCodec.encode(record.degrees));
+    }
+
+    private void readRecord(int offset, ForecastRecord record) {
+        double scale = WeatherRowCodec.SCALE;
+        record.set(mBuffer.getLong(offset),
+                mBuffer.getInt(offset + 8),
+                mBuffer.getInt(offset + 12) / scale,
+                mBuffer.getInt(offset + 16) / scale,
+                mBuffer.getInt(offset + 20) / scale,
+                mBuffer.getInt(offset + 24) / scale,
+                mBuffer.getInt(offset + 28) / scale,
+                mBuffer.getInt(offset + 32) / scale);
+    }
+
+    /**
+     * @return the base offset of the location's slot, if it covers the given date, else -1.
+     */
+    private int findSlotCovering(String locationSetting, long date) {
+        if (mBuffer == null) {
+            return -1;
+        }
+        int slot = findSlot(locationSetting);
+        if (slot < 0) {
+            return -1;
+        }
+        int base = slotOffset(slot);
+        if (mBuffer.getLong(base + OFFSET_START_DATE) > date) {
+            return -1;
+        }
+        return base;
+    }
+
+    private int firstOnOrAfter(int base, long date) {
+        int count = mBuffer.getInt(base + OFFSET_COUNT);
+        int index = 0;
+        while (index < count && mBuffer.getLong(recordOffset(base, index)) < date) {
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized int lookup(String locationSetting, long date, ForecastRecord record) {
+        int base = findSlotCovering(locationSetting, date);
+        if (base < 0) {
+            return NOT_STORED;
+        }
+        int index = firstOnOrAfter(base, date);
+        if (index == mBuffer.getInt(base + OFFSET_COUNT)) {
+            // Past the stored days, which is only known to be empty if they are all there is.
+            return mBuffer.getInt(base + OFFSET_COMPLETE) != 0 ? 0 : NOT_STORED;
+        }
+        int offset = recordOffset(base, index);
+        if (mBuffer.getLong(offset) != date) {
+            return 0;
+        }
+        readRecord(offset, record);
+        return 1;
+    }
+
+    @Override
+    public synchronized int read(String locationSetting, long startDate, int days,
+            ForecastRecord[] records) {
+        int base = findSlotCovering(locationSetting, startDate);
+        if (base < 0) {
+            return NOT_STORED;
+        }
+        int index = firstOnOrAfter(base, startDate);
+        int available = mBuffer.getInt(base + OFFSET_COUNT) - index;
+        if (available < days && mBuffer.getInt(base + OFFSET_COMPLETE) == 0) {
+            return NOT_STORED;
+        }
+        int count = Math.min(days, available);
+        for (int i = 0; i < count; i++) {
+            readRecord(recordOffset(base, index + i), records[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        if (mBuffer == null) {
+            return;
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            mBuffer.putInt(slotOffset(slot) + OFFSET_STATE, STATE_EMPTY);
+            mSlotSettings[slot] = null;
+        }
+        mBuffer.putInt(OFFSET_NEXT_SLOT, 0);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mBuffer != null) {
+            mBuffer.force();
+            // There's no unmapping a buffer, it goes once it is garbage collected.
+            mBuffer = null;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the most recent raw forecast payloads returned by the server on disk.
+ *
+ * The database only holds what we chose to extract from those payloads.  Keeping the raw JSON
+ * around means that when the extraction (or the schema it writes into) changes, the rows can be
+ * re-derived locally by reparsing instead of asking the server for the same data again.
+ */
+public class PayloadArchive {
+    private static final String LOG_TAG = PayloadArchive.class.getSimpleName();
+
+    static final String ARCHIVE_DIR = "payloads";
+    private static final String PAYLOAD_SUFFIX = ".json.gz";
+    private static final String REPLAY_MARKER = "replay_requested";
+
+    // A handful of payloads per location is enough to recover from a bad sync or a schema
+    // change; anything older would be stale by the time it gets replayed anyway.
+    static final int MAX_PAYLOADS_PER_LOCATION = 3;
+    // Hard cap over all locations, so a user cycling through many locations can't grow the
+    // archive without bound.
+    static final int MAX_PAYLOADS = 24;
+
+    private final File mArchiveDir;
+
+    /**
+     * A single archived server response.
+     */
+    public static class Payload {
+        public final String locationSetting;
+        public final long fetchedAt;
+        public final String json;
+
+        Payload(String locationSetting, long fetchedAt, String json) {
+            this.locationSetting = locationSetting;
+            this.fetchedAt = fetchedAt;
+            this.json = json;
+        }
+    }
+
+    public PayloadArchive(Context context) {
+        mArchiveDir = new File(context.getFilesDir(), ARCHIVE_DIR);
+    }
+
+    /**
+     * Stores a raw payload and prunes older payloads beyond the retention limits.
+     *
+     * @param locationSetting The location string the payload was requested for.
+     * @param json The raw response body.
+     * @param fetchedAt When the payload was received, in milliseconds since the epoch.
+     */
+    public synchronized void store(String locationSetting, String json, long fetchedAt)
+            throws IOException {
+        if (!mArchiveDir.isDirectory() && !mArchiveDir.mkdirs()) {
+            throw new IOException("Unable to create " + mArchiveDir);
+        }
+        File file = new File(mArchiveDir, buildFileName(locationSetting, fetchedAt));
+        File tmpFile = new File(mArchiveDir, file.getName() + ".tmp");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(tmpFile));
+        try {
+            out.write(json.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        // Rename so that a crash mid-write never leaves a truncated payload behind.
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Unable to archive payload to " + file);
+        }
+        prune(locationSetting);
+    }
+
+    /**
+     * @return the most recently fetched payload for the location, or null if none is archived.
+     */
+    public synchronized Payload getLatest(String locationSetting) {
+        File[] files = listPayloads(locationSetting);
+        for (File file : files) {
+            try {
+                return new Payload(locationSetting, parseFetchedAt(file), read(file));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Dropping unreadable payload " + file.getName(), e);
+                file.delete();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Asks for the archived payloads to be reparsed on the next sync, e.g. after a database
+     * migration that changes what gets extracted from them.
+     */
+    public void requestReplay() {
+        try {
+            if (mArchiveDir.isDirectory() || mArchiveDir.mkdirs()) {
+                new File(mArchiveDir, REPLAY_MARKER).createNewFile();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Unable to request payload replay", e);
+        }
+    }
+
+    public boolean isReplayRequested() {
+        return new File(mArchiveDir, REPLAY_MARKER).exists();
+    }
+
+    public void clearReplayRequest() {
+        new File(mArchiveDir, REPLAY_MARKER).delete();
+    }
+
+    private void prune(String locationSetting) {
+        File[] forLocation = listPayloads(locationSetting);
+        for (int i = MAX_PAYLOADS_PER_LOCATION; i < forLocation.length; i++) {
+            forLocation[i].delete();
+        }
+        File[] all = listPayloads(null);
+        for (int i = MAX_PAYLOADS; i < all.length; i++) {
+            all[i].delete();
+        }
+    }
+
+    /**
+     * Lists archived payloads, newest first.
+     *
+     * @param locationSetting Only list payloads for this location, or all payloads if null.
+     */
+    private File[] listPayloads(String locationSetting) {
+        File[] files = mArchiveDir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        String wantedLocation = locationSetting == null ? null : Uri.encode(locationSetting);
+        List<File> payloads = new ArrayList<File>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            int separator = name.indexOf('_');
+            if (separator < 0 || !name.endsWith(PAYLOAD_SUFFIX)) {
+                continue;
+            }
+            String encodedLocation =
+                    name.substring(separator + 1, name.length() - PAYLOAD_SUFFIX.length());
+            if (wantedLocation == null || wantedLocation.equals(encodedLocation)) {
+                payloads.add(file);
+            }
+        }
+        File[] result = payloads.toArray(new File[payloads.size()]);
+        Arrays.sort(result, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsTime = parseFetchedAt(lhs);
+                long rhsTime = parseFetchedAt(rhs);
+                return lhsTime < rhsTime ? 1 : (lhsTime == rhsTime ? 0 : -1);
+            }
+        });
+        return result;
+    }
+
+    // File names look like "<fetchedAt>_<encoded location setting>.json.gz".  The timestamp
+    // never contains an underscore, so splitting on the first one is unambiguous.
+    private static String buildFileName(String locationSetting, long fetchedAt) {
+        return fetchedAt + "_" + Uri.encode(locationSetting) + PAYLOAD_SUFFIX;
+    }
+
+    private static long parseFetchedAt(File file) {
+        String name = file.getName();
+        int separator = name.indexOf('_');
+        try {
+            return separator > 0 ? Long.parseLong(name.substring(0, separator)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
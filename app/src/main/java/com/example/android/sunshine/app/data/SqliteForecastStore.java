@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * ForecastStore over the weather table, the store of record.  It answers every read.
+ */
+public class SqliteForecastStore implements ForecastStore {
+
+    private static final String WEATHER_COLUMN = WeatherEntry.TABLE_NAME + ".";
+
+    private static final String SELECT_FORECAST = "SELECT " +
+            WEATHER_COLUMN + WeatherEntry.COLUMN_DATE + ", " +
+            WeatherEntry.COLUMN_WEATHER_ID + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_MIN_TEMP) + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_MAX_TEMP) + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_HUMIDITY) + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_PRESSURE) + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_WIND_SPEED) + ", " +
+            WeatherRowCodec.decodeSql(WeatherEntry.COLUMN_DEGREES) +
+            " FROM ";
+    // Follows the tables, weather INNER JOIN location from the partitions read
+    private static final String WHERE_FORECAST = " WHERE " + LocationEntry.TABLE_NAME + "." +
+            LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " + WEATHER_COLUMN +
+            WeatherEntry.COLUMN_DATE;
+    private static final String WHERE_DAY = WHERE_FORECAST + " = ?";
+    private static final String WHERE_DAYS = WHERE_FORECAST + " >= ? ORDER BY " +
+            WEATHER_COLUMN + WeatherEntry.COLUMN_DATE + " ASC LIMIT ";
+
+    private final SQLiteOpenHelper mOpenHelper;
+
+    public SqliteForecastStore(SQLiteOpenHelper openHelper) {
+        mOpenHelper = openHelper;
+    }
+
+    @Override
+    public int lookup(String locationSetting, long date, ForecastRecord record) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SELECT_FORECAST +
+                WeatherProvider.getWeatherByLocationSettingTables(db, date, date + 1) + WHERE_DAY,
+                new String[]{locationSetting, Long.toString(date)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return 0;
+            }
+            readRecord(cursor, record);
+            return 1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public int read(String locationSetting, long startDate, int days, ForecastRecord[] records) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SELECT_FORECAST +
+                WeatherProvider.getWeatherByLocationSettingTables(db, startDate, Long.MAX_VALUE) +
+                WHERE_DAYS + days,
+                new String[]{locationSetting, Long.toString(startDate)});
+        try {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                readRecord(cursor, records[count++]);
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void readRecord(Cursor cursor, ForecastRecord record) {
+        record.set(cursor.getLong(0), cursor.getInt(1), cursor.getDouble(2), cursor.getDouble(3),
+                cursor.getDouble(4), cursor.getDouble(5), cursor.getDouble(6),
+                cursor.getDouble(7));
+    }
+
+    @Override
+    public void close() {
+        // The helper belongs to whoever passed it in.
+    }
+}
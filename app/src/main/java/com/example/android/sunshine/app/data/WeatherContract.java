@@ -19,7 +19,8 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
+
+import com.example.android.sunshine.core.LocalDays;
 
 /**
  * Defines table and column names for the weather database.
@@ -43,15 +44,80 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_HISTORY = "history";
+    public static final String PATH_WEEKLY = "weekly";
+    public static final String PATH_MONTHLY = "monthly";
+    public static final String PATH_SUMMARY = "summary";
+    public static final String PATH_SEARCH = "search";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
-    // the database to the start of the the Julian day at UTC.
+    // the database to the start of their local day.
     public static long normalizeDate(long startDate) {
-        // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        return LocalDays.getDefault().normalize(startDate);
+    }
+
+    // ContentProvider.call() method returning the forecast of a location as a Bundle of arrays
+    // (see ForecastBundle).  The arg is the location setting, the extras hold the first day
+    // and the number of days wanted, today and one day when left out.
+    public static final String METHOD_GET_FORECAST = "get_forecast";
+    public static final String EXTRA_START_DATE = "start_date";
+    public static final String EXTRA_DAYS = "days";
+
+    // Keys of the arrays in the Bundle returned by METHOD_GET_FORECAST, one element per day.
+    public static final String KEY_DATES = "dates";
+    public static final String KEY_WEATHER_IDS = "weather_ids";
+    public static final String KEY_MAX_TEMPS = "max_temps";
+    public static final String KEY_MIN_TEMPS = "min_temps";
+
+    // Weather conditions are grouped into coarse buckets, following the first digit of the
+    // OpenWeatherMap condition codes, e.g. for the history histograms.
+    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    public static final int BUCKET_THUNDERSTORM = 0;
+    public static final int BUCKET_DRIZZLE = 1;
+    public static final int BUCKET_RAIN = 2;
+    public static final int BUCKET_SNOW = 3;
+    public static final int BUCKET_ATMOSPHERE = 4;
+    public static final int BUCKET_CLEAR = 5;
+    public static final int BUCKET_CLOUDS = 6;
+    public static final int BUCKET_OTHER = 7;
+    public static final int BUCKET_COUNT = 8;
+
+    // Inclusive ranges of weather ids in each bucket, indexed by bucket.  Anything else is
+    // BUCKET_OTHER.
+    private static final int[][] BUCKET_RANGES = {
+            {200, 299},
+            {300, 399},
+            {500, 599},
+            {600, 699},
+            {700, 799},
+            {800, 800},
+            {801, 899}
+    };
+
+    public static int getConditionBucket(int weatherId) {
+        for (int bucket = 0; bucket < BUCKET_RANGES.length; bucket++) {
+            if (weatherId >= BUCKET_RANGES[bucket][0] && weatherId <= BUCKET_RANGES[bucket][1]) {
+                return bucket;
+            }
+        }
+        return BUCKET_OTHER;
+    }
+
+    /**
+     * @return an SQL expression matching the weather ids in the bucket, using the same ranges
+     * as getConditionBucket().
+     */
+    public static String buildConditionBucketSql(int bucket, String weatherIdColumn) {
+        if (bucket != BUCKET_OTHER) {
+            return weatherIdColumn + " BETWEEN " + BUCKET_RANGES[bucket][0] +
+                    " AND " + BUCKET_RANGES[bucket][1];
+        }
+        StringBuilder sql = new StringBuilder("NOT (");
+        for (int i = 0; i < BUCKET_RANGES.length; i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append(buildConditionBucketSql(i, weatherIdColumn));
+        }
+        return sql.append(")").toString();
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -103,33 +169,52 @@ public class WeatherContract {
         public static final String COLUMN_LOC_KEY = "location_id";
         // Date, stored as long in milliseconds since the epoch
         public static final String COLUMN_DATE = "date";
-        // Weather id as returned by API, to identify the icon to be used
+        // Weather id as returned by API, to identify the icon to be used, and the description
+        // shown (see Utility.getStringForWeatherCondition).
         public static final String COLUMN_WEATHER_ID = "weather_id";
 
-        // Short description and long description of the weather, as provided by API.
-        // e.g "clear" vs "sky is clear".
-        public static final String COLUMN_SHORT_DESC = "short_desc";
+        // The measurements below are stored as INTEGER hundredths of their unit, which takes a
+        // fraction of the room of a REAL.  The provider scales them on the way in and out, so
+        // they are read and written as floats through it.  Selections passed to the provider
+        // are applied to the stored values, though.
 
-        // Min and max temperatures for the day (stored as floats)
+        // Min and max temperatures for the day, in degrees Celsius
         public static final String COLUMN_MIN_TEMP = "min";
         public static final String COLUMN_MAX_TEMP = "max";
 
-        // Humidity is stored as a float representing percentage
+        // Humidity as a percentage
         public static final String COLUMN_HUMIDITY = "humidity";
 
-        // Humidity is stored as a float representing percentage
+        // Pressure in hPa
         public static final String COLUMN_PRESSURE = "pressure";
 
-        // Windspeed is stored as a float representing windspeed  mph
+        // Windspeed as returned by the API, in meters per second
         public static final String COLUMN_WIND_SPEED = "wind";
 
-        // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
+        // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).
         public static final String COLUMN_DEGREES = "degrees";
 
+        // Query parameters for paging through the forecast of a location by date: only rows
+        // dated strictly after "after", and at most "limit" of them, in ascending date order.
+        // Passing the date of the last row seen as "after" fetches the next page, however far
+        // into the data it is.
+        public static final String QUERY_PARAM_AFTER = "after";
+        public static final String QUERY_PARAM_LIMIT = "limit";
+
+        // Query parameter for deleting every row dated before a day, e.g. for retention.  Rows
+        // are stored in one table per month, so whole months go at the cost of dropping a
+        // table.  Can't be combined with a selection.
+        public static final String QUERY_PARAM_BEFORE = "before";
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
 
+        public static Uri buildWeatherBefore(long date) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAM_BEFORE, Long.toString(date)).build();
+        }
+
         /*
             Student: This is the buildWeatherLocation function you filled in.
          */
@@ -144,6 +229,19 @@ public class WeatherContract {
                     .appendQueryParameter(COLUMN_DATE, Long.toString(normalizedDate)).build();
         }
 
+        public static Uri buildWeatherLocationWithStartDate(
+                String locationSetting, long startDate, int limit) {
+            return buildWeatherLocationWithStartDate(locationSetting, startDate).buildUpon()
+                    .appendQueryParameter(QUERY_PARAM_LIMIT, Integer.toString(limit)).build();
+        }
+
+        public static Uri buildWeatherLocationPage(
+                String locationSetting, long afterDate, int limit) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendQueryParameter(QUERY_PARAM_AFTER, Long.toString(afterDate))
+                    .appendQueryParameter(QUERY_PARAM_LIMIT, Integer.toString(limit)).build();
+        }
+
         public static Uri buildWeatherLocationWithDate(String locationSetting, long date) {
             return CONTENT_URI.buildUpon().appendPath(locationSetting)
                     .appendPath(Long.toString(normalizeDate(date))).build();
@@ -164,5 +262,258 @@ public class WeatherContract {
             else
                 return 0;
         }
+
+        public static long getAfterDateFromUri(Uri uri) {
+            String dateString = uri.getQueryParameter(QUERY_PARAM_AFTER);
+            if (null != dateString && dateString.length() > 0)
+                return Long.parseLong(dateString);
+            else
+                return 0;
+        }
+
+        /**
+         * @return the page size requested by the URI, or 0 for no limit.
+         */
+        public static int getLimitFromUri(Uri uri) {
+            String limitString = uri.getQueryParameter(QUERY_PARAM_LIMIT);
+            if (null != limitString && limitString.length() > 0)
+                return Integer.parseInt(limitString);
+            else
+                return 0;
+        }
+    }
+
+    /*
+        Inner class that defines the table contents of the two history tables.  Once a day has
+        passed, its weather row is rolled into a weekly and a monthly aggregate and then
+        deleted, so the history stays small no matter how long the app has been installed.
+     */
+    public static final class HistoryEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_HISTORY).build();
+        public static final Uri WEEKLY_CONTENT_URI =
+                CONTENT_URI.buildUpon().appendPath(PATH_WEEKLY).build();
+        public static final Uri MONTHLY_CONTENT_URI =
+                CONTENT_URI.buildUpon().appendPath(PATH_MONTHLY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HISTORY;
+
+        public static final String WEEKLY_TABLE_NAME = "weather_weekly";
+        public static final String MONTHLY_TABLE_NAME = "weather_monthly";
+
+        // Column with the foreign key into the location table.
+        public static final String COLUMN_LOC_KEY = "location_id";
+        // First day of the week (a Monday) or of the month, normalized like
+        // WeatherEntry.COLUMN_DATE
+        public static final String COLUMN_PERIOD_START = "period_start";
+        // Number of days rolled into this row so far
+        public static final String COLUMN_DAY_COUNT = "day_count";
+
+        // Lowest minimum and highest maximum temperature over the period
+        public static final String COLUMN_MIN_TEMP = "min";
+        public static final String COLUMN_MAX_TEMP = "max";
+
+        // Averages of the daily minimum and maximum temperatures over the period
+        public static final String COLUMN_MEAN_MIN_TEMP = "mean_min";
+        public static final String COLUMN_MEAN_MAX_TEMP = "mean_max";
+
+        // Condition histogram: number of days per condition bucket, indexed by the
+        // WeatherContract.BUCKET_* constants.
+        public static final String[] COLUMN_CONDITION_COUNTS = {
+                "count_thunderstorm",
+                "count_drizzle",
+                "count_rain",
+                "count_snow",
+                "count_atmosphere",
+                "count_clear",
+                "count_clouds",
+                "count_other"
+        };
+
+        public static Uri buildWeeklyHistoryLocation(String locationSetting) {
+            return WEEKLY_CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static Uri buildMonthlyHistoryLocation(String locationSetting) {
+            return MONTHLY_CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
+    }
+
+    /*
+        Aggregates over the forecast of a location, computed by the database rather than by
+        reading every row: one row for the whole date range, or one per week or month of it.
+     */
+    public static final class SummaryEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SUMMARY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUMMARY;
+
+        // Date range to summarize, from start (inclusive) to end (exclusive), normalized like
+        // WeatherEntry.COLUMN_DATE.
+        public static final String QUERY_PARAM_START = "start";
+        public static final String QUERY_PARAM_END = "end";
+        // Optional, one of GROUP_WEEK or GROUP_MONTH.
+        public static final String QUERY_PARAM_GROUP = "group";
+        // Offset of local time from UTC in milliseconds, which decides where weeks and months
+        // start.  Filled in by the builders.
+        public static final String QUERY_PARAM_UTC_OFFSET = "utc_offset";
+
+        // Weeks start on Monday, like the weekly history.
+        public static final String GROUP_WEEK = "week";
+        public static final String GROUP_MONTH = "month";
+
+        // First and last day in the range that had a forecast, and the number of such days
+        public static final String COLUMN_FIRST_DATE = "first_date";
+        public static final String COLUMN_LAST_DATE = "last_date";
+        public static final String COLUMN_DAY_COUNT = "day_count";
+
+        // Lowest minimum and highest maximum temperature
+        public static final String COLUMN_MIN_TEMP = "min";
+        public static final String COLUMN_MAX_TEMP = "max";
+
+        // Averages of the daily minimum and maximum temperatures, and of the humidity
+        public static final String COLUMN_MEAN_MIN_TEMP = "mean_min";
+        public static final String COLUMN_MEAN_MAX_TEMP = "mean_max";
+        public static final String COLUMN_MEAN_HUMIDITY = "mean_humidity";
+
+        // Number of days per condition bucket, indexed by the WeatherContract.BUCKET_* constants
+        public static final String[] COLUMN_CONDITION_COUNTS = HistoryEntry.COLUMN_CONDITION_COUNTS;
+
+        public static Uri buildSummaryUri(String locationSetting, long startDate, long endDate) {
+            return buildSummaryUri(locationSetting, startDate, endDate, null);
+        }
+
+        public static Uri buildSummaryUri(String locationSetting, long startDate, long endDate,
+                String group) {
+            long normalizedStartDate = normalizeDate(startDate);
+            Uri.Builder builder = CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendQueryParameter(QUERY_PARAM_START, Long.toString(normalizedStartDate))
+                    .appendQueryParameter(QUERY_PARAM_END, Long.toString(normalizeDate(endDate)));
+            if (group != null) {
+                builder.appendQueryParameter(QUERY_PARAM_GROUP, group)
+                        .appendQueryParameter(QUERY_PARAM_UTC_OFFSET, Integer.toString(
+                                LocalDays.getDefault().getOffset(normalizedStartDate)));
+            }
+            return builder.build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getStartDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getQueryParameter(QUERY_PARAM_START));
+        }
+
+        public static long getEndDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getQueryParameter(QUERY_PARAM_END));
+        }
+
+        public static String getGroupFromUri(Uri uri) {
+            return uri.getQueryParameter(QUERY_PARAM_GROUP);
+        }
+
+        public static int getUtcOffsetFromUri(Uri uri) {
+            String offsetString = uri.getQueryParameter(QUERY_PARAM_UTC_OFFSET);
+            if (null != offsetString && offsetString.length() > 0)
+                return Integer.parseInt(offsetString);
+            else
+                return 0;
+        }
+    }
+
+    /*
+        Forecast rows of every saved location that match a set of predicates, e.g. "rain
+        tomorrow" or "above 30 degrees in the next five days", answered by one query over the
+        weather table joined with the location table.  Rows hold the weather and location
+        columns, ordered by location and date.
+     */
+    public static final class SearchEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SEARCH;
+
+        // Date range to search, from start (inclusive) to end (exclusive), normalized like
+        // WeatherEntry.COLUMN_DATE.  Required, it is what keeps the search on the
+        // (date, location_id) index however many locations there are.
+        public static final String QUERY_PARAM_START = "start";
+        public static final String QUERY_PARAM_END = "end";
+        // Optional inclusive range of weather ids
+        public static final String QUERY_PARAM_WEATHER_ID_FROM = "weather_id_from";
+        public static final String QUERY_PARAM_WEATHER_ID_TO = "weather_id_to";
+        // Optional strict bounds on the daily temperatures, in the stored unit (Celsius)
+        public static final String QUERY_PARAM_MAX_TEMP_ABOVE = "max_above";
+        public static final String QUERY_PARAM_MAX_TEMP_BELOW = "max_below";
+        public static final String QUERY_PARAM_MIN_TEMP_ABOVE = "min_above";
+        public static final String QUERY_PARAM_MIN_TEMP_BELOW = "min_below";
+
+        /**
+         * Builds search URIs, one predicate at a time.  Predicates left out don't restrict the
+         * search.
+         */
+        public static final class Builder {
+            private final Uri.Builder mUriBuilder;
+
+            public Builder(long startDate, long endDate) {
+                mUriBuilder = CONTENT_URI.buildUpon()
+                        .appendQueryParameter(QUERY_PARAM_START,
+                                Long.toString(normalizeDate(startDate)))
+                        .appendQueryParameter(QUERY_PARAM_END,
+                                Long.toString(normalizeDate(endDate)));
+            }
+
+            public Builder weatherIds(int from, int to) {
+                mUriBuilder.appendQueryParameter(QUERY_PARAM_WEATHER_ID_FROM, Integer.toString(from))
+                        .appendQueryParameter(QUERY_PARAM_WEATHER_ID_TO, Integer.toString(to));
+                return this;
+            }
+
+            /**
+             * Restricts the search to one of the BUCKET_* conditions, except BUCKET_OTHER which
+             * is not a single range of weather ids.
+             */
+            public Builder condition(int bucket) {
+                if (bucket < 0 || bucket >= BUCKET_RANGES.length) {
+                    throw new IllegalArgumentException("Not a range of weather ids: " + bucket);
+                }
+                return weatherIds(BUCKET_RANGES[bucket][0], BUCKET_RANGES[bucket][1]);
+            }
+
+            public Builder maxTempAbove(double temp) {
+                mUriBuilder.appendQueryParameter(QUERY_PARAM_MAX_TEMP_ABOVE, Double.toString(temp));
+                return this;
+            }
+
+            public Builder maxTempBelow(double temp) {
+                mUriBuilder.appendQueryParameter(QUERY_PARAM_MAX_TEMP_BELOW, Double.toString(temp));
+                return this;
+            }
+
+            public Builder minTempAbove(double temp) {
+                mUriBuilder.appendQueryParameter(QUERY_PARAM_MIN_TEMP_ABOVE, Double.toString(temp));
+                return this;
+            }
+
+            public Builder minTempBelow(double temp) {
+                mUriBuilder.appendQueryParameter(QUERY_PARAM_MIN_TEMP_BELOW, Double.toString(temp));
+                return this;
+            }
+
+            public Uri build() {
+                return mUriBuilder.build();
+            }
+        }
     }
 }
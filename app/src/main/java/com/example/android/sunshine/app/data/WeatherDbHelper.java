@@ -16,24 +16,87 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteTransactionListener;
 
+import com.example.android.sunshine.app.data.WeatherContract.HistoryEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.core.DayMath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
 
 /**
  * Manages a local database for weather data.
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // If you change the database schema, you must increment the database version and add the
+    // matching step to upgradeTo().
+    static final int DATABASE_VERSION = 6;
+
+    // Databases older than this were a disposable cache and are rebuilt instead of migrated.
+    private static final int FIRST_MIGRATABLE_VERSION = 2;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // The weather rows are split into one table per month, named weather_yyyymm after the UTC
+    // month of their dates.  The weather "table" that queries read is a view over all of them;
+    // see rebuildWeatherView().  Queries for a range of dates read the partitions holding it
+    // instead; see getWeatherTable().
+    private static final String WEATHER_PARTITION_PREFIX = WeatherEntry.TABLE_NAME + "_";
+    private static final String WEATHER_PARTITION_GLOB =
+            WEATHER_PARTITION_PREFIX + "[0-9][0-9][0-9][0-9][0-9][0-9]";
+    // Never holds rows.  The view selects from it while there are no partitions yet.
+    static final String WEATHER_TEMPLATE_TABLE = WeatherEntry.TABLE_NAME + "_template";
+
+    // The partitions as last read from or written to the schema, oldest first, or null to read
+    // them again.  Shared by every helper, they all open the same file.
+    private static final Object sPartitionsLock = new Object();
+    private static List<String> sPartitions;
+
+    // Forgets the partitions when a transaction that may have created or dropped some is
+    // rolled back.
+    private static final SQLiteTransactionListener sPartitionsListener =
+            new SQLiteTransactionListener() {
+                @Override
+                public void onBegin() {
+                }
+
+                @Override
+                public void onCommit() {
+                }
+
+                @Override
+                public void onRollback() {
+                    setWeatherPartitions(null);
+                }
+            };
+
+    private static WeatherDbHelper sInstance;
+
+    private final Context mContext;
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mContext = context;
+    }
+
+    /**
+     * @return the helper shared by the provider and the database maintenance.  Sharing one
+     * connection means maintenance statements such as VACUUM queue up behind the provider's
+     * transactions instead of failing on a locked database.
+     */
+    public static synchronized WeatherDbHelper getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherDbHelper(context.getApplicationContext());
+        }
+        return sInstance;
     }
 
     @Override
@@ -48,8 +111,70 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 LocationEntry.COLUMN_COORD_LONG + " REAL NOT NULL " +
                 " );";
 
-        final String SQL_CREATE_WEATHER_TABLE = "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
-                // Why AutoIncrement here, and not above?
+        sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
+        sqLiteDatabase.execSQL(buildCreateWeatherTable(WEATHER_TEMPLATE_TABLE));
+        rebuildWeatherView(sqLiteDatabase, new ArrayList<String>());
+        createHistoryTables(sqLiteDatabase);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // The file may have been created, upgraded or replaced since the partitions were read.
+        setWeatherPartitions(null);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // Note that this only fires if you change the version number for your database.
+        // It does NOT depend on the version number for your application.
+        if (oldVersion < FIRST_MIGRATABLE_VERSION) {
+            // Nothing worth keeping in there, start over.  These databases predate the payload
+            // archive, so the next sync fetches the forecast again.
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HistoryEntry.WEEKLY_TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HistoryEntry.MONTHLY_TABLE_NAME);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+
+        // Every schema change from here on is applied as one incremental step per version, so
+        // that upgrading never throws away the data already on the device.  onUpgrade runs
+        // inside a transaction, so a failing step leaves the old schema untouched.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            upgradeTo(sqLiteDatabase, version);
+        }
+    }
+
+    /**
+     * Migrates the schema from version - 1 to version, keeping the existing rows.
+     */
+    private void upgradeTo(SQLiteDatabase sqLiteDatabase, int version) {
+        switch (version) {
+            case 3:
+                createHistoryTables(sqLiteDatabase);
+                break;
+            case 4:
+                createWeatherLocationIndex(sqLiteDatabase, WeatherEntry.TABLE_NAME);
+                break;
+            case 5:
+                rebuildWeatherTableWithScaledMeasurements(sqLiteDatabase);
+                // The copied rows are rounded from the stored doubles.  Reparsing the payloads
+                // scales them from what the server sent instead.
+                requestPayloadReplay();
+                break;
+            case 6:
+                partitionWeatherTable(sqLiteDatabase);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    static String buildCreateWeatherTable(String tableName) {
+        return "CREATE TABLE " + tableName + " (" +
+                // Why AutoIncrement here, and not in the location table?
                 // Unique keys will be auto-generated in either case.  But for weather
                 // forecasting, it's reasonable to assume the user will want information
                 // for a certain date and all dates *following*, so the forecast data
@@ -59,16 +184,16 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 // the ID of the location entry associated with this weather data
                 WeatherEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
                 WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
-                WeatherEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
                 WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL," +
 
-                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                // The measurements are hundredths, see WeatherRowCodec.
+                WeatherEntry.COLUMN_MIN_TEMP + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " INTEGER NOT NULL, " +
 
-                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WIND_SPEED + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " INTEGER NOT NULL, " +
 
                 // Set up the location column as a foreign key to location table.
                 " FOREIGN KEY (" + WeatherEntry.COLUMN_LOC_KEY + ") REFERENCES " +
@@ -78,21 +203,303 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 // per location, it's created a UNIQUE constraint with REPLACE strategy
                 " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
                 WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
+    }
 
-        sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
-        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+    // Version 5 stores the measurements as scaled integers and drops the short_desc column,
+    // which only repeated what weather_id says.  SQLite can't change column types in place, so
+    // the rows are copied into a new table which then takes the place of the old one.
+    private static void rebuildWeatherTableWithScaledMeasurements(SQLiteDatabase sqLiteDatabase) {
+        final String newTable = WeatherEntry.TABLE_NAME + "_new";
+        sqLiteDatabase.execSQL(buildCreateWeatherTable(newTable));
+
+        StringBuilder columns = new StringBuilder(WeatherEntry._ID + ", " +
+                WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE + ", " +
+                WeatherEntry.COLUMN_WEATHER_ID);
+        StringBuilder values = new StringBuilder(columns);
+        for (String column : WeatherRowCodec.SCALED_COLUMNS) {
+            columns.append(", ").append(column);
+            values.append(", CAST(ROUND(").append(column).append(" * ")
+                    .append(WeatherRowCodec.SCALE).append(") AS INTEGER)");
+        }
+        sqLiteDatabase.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " +
+                values + " FROM " + WeatherEntry.TABLE_NAME + ";");
+        // Takes the (location_id, date) index with it, it is created again below.
+        sqLiteDatabase.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME + ";");
+        sqLiteDatabase.execSQL("ALTER TABLE " + newTable + " RENAME TO " +
+                WeatherEntry.TABLE_NAME + ";");
+        createWeatherLocationIndex(sqLiteDatabase, WeatherEntry.TABLE_NAME);
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+    // Version 6 moves the rows of the weather table into monthly partitions, and puts the view
+    // in its place.
+    private static void partitionWeatherTable(SQLiteDatabase sqLiteDatabase) {
+        TreeSet<String> partitions = new TreeSet<String>();
+        Cursor cursor = sqLiteDatabase.query(true, WeatherEntry.TABLE_NAME,
+                new String[]{WeatherEntry.COLUMN_DATE}, null, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                partitions.add(getWeatherPartition(cursor.getLong(0)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (String partition : partitions) {
+            createWeatherPartition(sqLiteDatabase, partition);
+            sqLiteDatabase.execSQL("INSERT INTO " + partition + " SELECT * FROM " +
+                    WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                    WeatherEntry.COLUMN_DATE + " < ?",
+                    new Object[]{getPartitionStart(partition), getPartitionEnd(partition)});
+        }
+        sqLiteDatabase.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME + ";");
+        sqLiteDatabase.execSQL(buildCreateWeatherTable(WEATHER_TEMPLATE_TABLE));
+        rebuildWeatherView(sqLiteDatabase, new ArrayList<String>(partitions));
+    }
+
+    /**
+     * @return the name of the partition holding the rows of the given day, normalized like
+     * WeatherEntry.COLUMN_DATE.  Named after the month in UTC, so that the same date stays in
+     * the same partition when the device changes time zones; a local midnight close to the
+     * start or the end of a month may be kept with the month next to it.
+     */
+    static String getWeatherPartition(long date) {
+        return WEATHER_PARTITION_PREFIX + DayMath.getYearMonth(DayMath.getJulianDay(date, 0));
+    }
+
+    /**
+     * @return the first moment of the partition's month, the lowest date it can hold.
+     */
+    static long getPartitionStart(String partition) {
+        return getMonthStart(partition, 0);
+    }
+
+    /**
+     * @return the first moment after the partition's month, above the dates it can hold.
+     */
+    static long getPartitionEnd(String partition) {
+        return getMonthStart(partition, 1);
+    }
+
+    private static long getMonthStart(String partition, int monthsLater) {
+        int yearMonth = Integer.parseInt(partition.substring(WEATHER_PARTITION_PREFIX.length()));
+        // A month past December carries over into the next year.
+        return DayMath.getStartOfJulianDay(DayMath.getJulianDay(yearMonth / 100,
+                yearMonth % 100 + monthsLater, 1), 0);
+    }
+
+    /**
+     * Returns what to read the weather rows dated from startDate, inclusive, to endDate,
+     * exclusive, from in place of the weather view, named like it: the one partition holding
+     * them, or the partitions holding them narrowed to the range and put together with UNION
+     * ALL.  The SQLite of older Android versions doesn't take WHERE terms into a UNION ALL view,
+     * and would read every partition in full rather than through its indexes.
+     *
+     * @param endDate Long.MAX_VALUE for no end
+     */
+    static String getWeatherTable(SQLiteDatabase sqLiteDatabase, long startDate, long endDate) {
+        List<String> partitions = new ArrayList<String>();
+        for (String partition : getKnownWeatherPartitions(sqLiteDatabase)) {
+            if (getPartitionStart(partition) < endDate && getPartitionEnd(partition) > startDate) {
+                partitions.add(partition);
+            }
+        }
+        if (partitions.isEmpty()) {
+            return WEATHER_TEMPLATE_TABLE + " AS " + WeatherEntry.TABLE_NAME;
+        }
+        if (partitions.size() == 1) {
+            return partitions.get(0) + " AS " + WeatherEntry.TABLE_NAME;
+        }
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < partitions.size(); i++) {
+            if (i > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT * FROM ").append(partitions.get(i))
+                    .append(" WHERE ").append(WeatherEntry.COLUMN_DATE).append(" >= ")
+                    .append(startDate);
+            if (endDate != Long.MAX_VALUE) {
+                sql.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" < ")
+                        .append(endDate);
+            }
+        }
+        return sql.append(") AS ").append(WeatherEntry.TABLE_NAME).toString();
+    }
+
+    /**
+     * @return the names of the existing weather partitions, oldest first.  They are read from
+     * the schema once and then kept up to date by the methods below.
+     */
+    static List<String> getWeatherPartitions(SQLiteDatabase sqLiteDatabase) {
+        return new ArrayList<String>(getKnownWeatherPartitions(sqLiteDatabase));
+    }
+
+    // The list returned is shared, and must not be changed.
+    private static List<String> getKnownWeatherPartitions(SQLiteDatabase sqLiteDatabase) {
+        synchronized (sPartitionsLock) {
+            if (sPartitions != null) {
+                return sPartitions;
+            }
+        }
+        // Not read under the lock: the query waits for any transaction in progress, which may
+        // need the lock to update the partitions.
+        List<String> partitions = readWeatherPartitions(sqLiteDatabase);
+        synchronized (sPartitionsLock) {
+            if (sPartitions == null) {
+                sPartitions = partitions;
+            }
+            return sPartitions;
+        }
+    }
+
+    private static List<String> readWeatherPartitions(SQLiteDatabase sqLiteDatabase) {
+        List<String> partitions = new ArrayList<String>();
+        Cursor cursor = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master " +
+                "WHERE type = 'table' AND name GLOB ? ORDER BY name",
+                new String[]{WEATHER_PARTITION_GLOB});
+        try {
+            while (cursor.moveToNext()) {
+                partitions.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return partitions;
+    }
+
+    private static void setWeatherPartitions(List<String> partitions) {
+        synchronized (sPartitionsLock) {
+            sPartitions = partitions;
+        }
+    }
+
+    /**
+     * Begins a transaction that may create or drop partitions.  Writes to the weather rows
+     * begin theirs with this, so that the partitions known are read again if it rolls back.
+     */
+    static void beginWeatherTransaction(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.beginTransactionWithListener(sPartitionsListener);
+    }
+
+    /**
+     * Creates the partition for the given day if it doesn't exist yet.
+     *
+     * @return the name of the partition, for inserting the rows of that day.
+     */
+    static String ensureWeatherPartition(SQLiteDatabase sqLiteDatabase, long date) {
+        String partition = getWeatherPartition(date);
+        if (getKnownWeatherPartitions(sqLiteDatabase).contains(partition)) {
+            return partition;
+        }
+        beginWeatherTransaction(sqLiteDatabase);
+        try {
+            // Read from the schema, another thread may have created it in the meantime.
+            List<String> partitions = readWeatherPartitions(sqLiteDatabase);
+            if (!partitions.contains(partition)) {
+                createWeatherPartition(sqLiteDatabase, partition);
+                partitions.add(partition);
+                Collections.sort(partitions);
+                rebuildWeatherView(sqLiteDatabase, partitions);
+            }
+            setWeatherPartitions(partitions);
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+        return partition;
+    }
+
+    /**
+     * Drops whole partitions, which is what retention costs instead of deleting their rows one
+     * by one.
+     */
+    static void dropWeatherPartitions(SQLiteDatabase sqLiteDatabase, List<String> dropped) {
+        beginWeatherTransaction(sqLiteDatabase);
+        try {
+            List<String> partitions = readWeatherPartitions(sqLiteDatabase);
+            partitions.removeAll(dropped);
+            for (String partition : dropped) {
+                sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + partition + ";");
+            }
+            rebuildWeatherView(sqLiteDatabase, partitions);
+            setWeatherPartitions(partitions);
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    private static void createWeatherPartition(SQLiteDatabase sqLiteDatabase, String partition) {
+        sqLiteDatabase.execSQL(buildCreateWeatherTable(partition));
+        createWeatherLocationIndex(sqLiteDatabase, partition);
+        // Each partition has its own AUTOINCREMENT sequence.  Starting each one at its month
+        // shifted past 32 bits keeps the row ids unique across the view.
+        long firstId = (long) Integer.parseInt(
+                partition.substring(WEATHER_PARTITION_PREFIX.length())) << 32;
+        sqLiteDatabase.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)",
+                new Object[]{partition, firstId});
+    }
+
+    private static void rebuildWeatherView(SQLiteDatabase sqLiteDatabase,
+            List<String> partitions) {
+        StringBuilder sql = new StringBuilder("CREATE VIEW " + WeatherEntry.TABLE_NAME + " AS ");
+        if (partitions.isEmpty()) {
+            sql.append("SELECT * FROM ").append(WEATHER_TEMPLATE_TABLE);
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            if (i > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT * FROM ").append(partitions.get(i));
+        }
+        sqLiteDatabase.execSQL("DROP VIEW IF EXISTS " + WeatherEntry.TABLE_NAME + ";");
+        sqLiteDatabase.execSQL(sql.append(";").toString());
+    }
+
+    static String getLocationDateIndex(String weatherTable) {
+        return weatherTable + "_location_date";
+    }
+
+    // The UNIQUE constraint already indexes (date, location_id), which suits looking up one
+    // date.  Ranges of dates for one location, as the summaries and the forecast list read them,
+    // need the location first.
+    private static void createWeatherLocationIndex(SQLiteDatabase sqLiteDatabase,
+            String weatherTable) {
+        sqLiteDatabase.execSQL("CREATE INDEX " + getLocationDateIndex(weatherTable) + " ON " +
+                weatherTable + " (" + WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherEntry.COLUMN_DATE + ");");
+    }
+
+    private static void createHistoryTables(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(buildCreateHistoryTable(HistoryEntry.WEEKLY_TABLE_NAME));
+        sqLiteDatabase.execSQL(buildCreateHistoryTable(HistoryEntry.MONTHLY_TABLE_NAME));
+    }
+
+    // The weekly and monthly history tables share one layout, they only differ in the length
+    // of the period a row covers.
+    private static String buildCreateHistoryTable(String tableName) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE " + tableName + " (" +
+                HistoryEntry._ID + " INTEGER PRIMARY KEY," +
+                HistoryEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                HistoryEntry.COLUMN_PERIOD_START + " INTEGER NOT NULL, " +
+                HistoryEntry.COLUMN_DAY_COUNT + " INTEGER NOT NULL, " +
+
+                HistoryEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                HistoryEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                HistoryEntry.COLUMN_MEAN_MIN_TEMP + " REAL NOT NULL, " +
+                HistoryEntry.COLUMN_MEAN_MAX_TEMP + " REAL NOT NULL, ");
+        for (String column : HistoryEntry.COLUMN_CONDITION_COUNTS) {
+            sql.append(column).append(" INTEGER NOT NULL DEFAULT 0, ");
+        }
+        sql.append(" FOREIGN KEY (").append(HistoryEntry.COLUMN_LOC_KEY).append(") REFERENCES ")
+                .append(LocationEntry.TABLE_NAME).append(" (").append(LocationEntry._ID)
+                .append("), ")
+                // The compactor merges into existing periods by rewriting the whole row.
+                .append(" UNIQUE (").append(HistoryEntry.COLUMN_LOC_KEY).append(", ")
+                .append(HistoryEntry.COLUMN_PERIOD_START).append(") ON CONFLICT REPLACE);");
+        return sql.toString();
+    }
+
+    /**
+     * For migrations that change what gets extracted from the server response: asks the sync
+     * adapter to reparse the archived payloads instead of waiting for (or forcing) a refetch.
+     */
+    private void requestPayloadReplay() {
+        new PayloadArchive(mContext).requestReplay();
     }
 }
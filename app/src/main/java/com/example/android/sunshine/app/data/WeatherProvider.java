@@ -17,14 +17,29 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 public class WeatherProvider extends ContentProvider {
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -34,8 +49,38 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int HISTORY_WEEKLY = 400;
+    static final int HISTORY_WEEKLY_WITH_LOCATION = 401;
+    static final int HISTORY_MONTHLY = 402;
+    static final int HISTORY_MONTHLY_WITH_LOCATION = 403;
+    static final int SUMMARY_WITH_LOCATION = 500;
+    static final int SEARCH = 600;
+
+    // Answers to METHOD_GET_FORECAST, keyed by location, start date and number of days.  Only
+    // a few distinct requests are ever made (widgets, Muzei, the notification), so a handful
+    // of entries is enough.
+    private static final int FORECAST_CACHE_SIZE = 8;
+    private final LruCache<String, Bundle> mForecastCache =
+            new LruCache<String, Bundle>(FORECAST_CACHE_SIZE);
+    // Bumped on every write, so that an answer computed while a write was going on is not
+    // cached.
+    private int mForecastCacheGeneration;
+
+    // The forecast window is read through these stores.  The mapped one answers from a copy of
+    // the window kept in a file, when it holds what is asked for; the database answers the
+    // rest.  The mapped store is opened on first use, and stays null if that fails.
+    static final String FORECAST_WINDOW_FILE = "forecast.window";
+    private ForecastStore mDatabaseStore;
+    private WritableForecastStore mWindowStore;
+    private boolean mWindowStoreOpened;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    private static final SQLiteQueryBuilder sWeeklyHistoryByLocationSettingQueryBuilder =
+            buildHistoryByLocationSettingQueryBuilder(
+                    WeatherContract.HistoryEntry.WEEKLY_TABLE_NAME);
+    private static final SQLiteQueryBuilder sMonthlyHistoryByLocationSettingQueryBuilder =
+            buildHistoryByLocationSettingQueryBuilder(
+                    WeatherContract.HistoryEntry.MONTHLY_TABLE_NAME);
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -51,6 +96,72 @@ public class WeatherProvider extends ContentProvider {
                         "." + WeatherContract.LocationEntry._ID);
     }
 
+    /**
+     * weather INNER JOIN location ON weather.location_id = location._id, reading the weather
+     * rows from the partitions holding the dates from startDate to endDate only.
+     *
+     * @param endDate Long.MAX_VALUE for no end
+     */
+    static String getWeatherByLocationSettingTables(SQLiteDatabase db, long startDate,
+            long endDate) {
+        return WeatherDbHelper.getWeatherTable(db, startDate, endDate) + " INNER JOIN " +
+                WeatherContract.LocationEntry.TABLE_NAME +
+                " ON " + WeatherContract.WeatherEntry.TABLE_NAME +
+                "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY +
+                " = " + WeatherContract.LocationEntry.TABLE_NAME +
+                "." + WeatherContract.LocationEntry._ID;
+    }
+
+    //history INNER JOIN location ON history.location_id = location._id
+    private static SQLiteQueryBuilder buildHistoryByLocationSettingQueryBuilder(String table) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(
+                table + " INNER JOIN " +
+                        WeatherContract.LocationEntry.TABLE_NAME +
+                        " ON " + table +
+                        "." + WeatherContract.HistoryEntry.COLUMN_LOC_KEY +
+                        " = " + WeatherContract.LocationEntry.TABLE_NAME +
+                        "." + WeatherContract.LocationEntry._ID);
+        return queryBuilder;
+    }
+
+    // Aggregates available from the summary URIs, all computed over the joined weather rows.
+    private static final HashMap<String, String> sSummaryProjectionMap = buildSummaryProjectionMap();
+
+    private static HashMap<String, String> buildSummaryProjectionMap() {
+        HashMap<String, String> map = new HashMap<String, String>();
+        final String date = WeatherContract.WeatherEntry.COLUMN_DATE;
+        final String min = WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+        final String max = WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_FIRST_DATE, "MIN(" + date + ")");
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_LAST_DATE, "MAX(" + date + ")");
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_DAY_COUNT, "COUNT(*)");
+        // Aggregated on the stored integers, scaled back once per result.
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_MIN_TEMP,
+                WeatherRowCodec.decodeSql("MIN(" + min + ")"));
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_MAX_TEMP,
+                WeatherRowCodec.decodeSql("MAX(" + max + ")"));
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_MEAN_MIN_TEMP,
+                WeatherRowCodec.decodeSql("AVG(" + min + ")"));
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_MEAN_MAX_TEMP,
+                WeatherRowCodec.decodeSql("AVG(" + max + ")"));
+        putAggregate(map, WeatherContract.SummaryEntry.COLUMN_MEAN_HUMIDITY,
+                WeatherRowCodec.decodeSql(
+                        "AVG(" + WeatherContract.WeatherEntry.COLUMN_HUMIDITY + ")"));
+        for (int bucket = 0; bucket < WeatherContract.BUCKET_COUNT; bucket++) {
+            putAggregate(map, WeatherContract.SummaryEntry.COLUMN_CONDITION_COUNTS[bucket],
+                    "SUM(CASE WHEN " + WeatherContract.buildConditionBucketSql(bucket,
+                            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID) + " THEN 1 ELSE 0 END)");
+        }
+        return map;
+    }
+
+    private static void putAggregate(HashMap<String, String> map, String column, String sql) {
+        map.put(column, sql + " AS " + column);
+    }
+
     //location.location_setting = ?
     private static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
@@ -68,9 +179,15 @@ public class WeatherProvider extends ContentProvider {
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //date > ?
+    private static final String sAfterDateSelection =
+            " AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " > ? ";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+        long afterDate = WeatherContract.WeatherEntry.getAfterDateFromUri(uri);
+        int limit = WeatherContract.WeatherEntry.getLimitFromUri(uri);
 
         String[] selectionArgs;
         String selection;
@@ -83,13 +200,40 @@ public class WeatherProvider extends ContentProvider {
             selection = sLocationSettingWithStartDateSelection;
         }
 
-        return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
-                projection,
+        // Keyset paging: the page starts right after the last row of the previous one, which the
+        // (date, location_id) index finds directly, unlike an OFFSET that reads and throws away
+        // every row before the page.
+        if (afterDate != 0) {
+            selection = selection + sAfterDateSelection;
+            String[] pageSelectionArgs = new String[selectionArgs.length + 1];
+            System.arraycopy(selectionArgs, 0, pageSelectionArgs, 0, selectionArgs.length);
+            pageSelectionArgs[selectionArgs.length] = Long.toString(afterDate);
+            selectionArgs = pageSelectionArgs;
+        }
+        String limitClause = null;
+        if (limit > 0) {
+            limitClause = Integer.toString(limit);
+            // Pages only line up in date order.
+            sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        }
+
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        SQLiteQueryBuilder queryBuilder = sWeatherByLocationSettingQueryBuilder;
+        if (startDate != 0 || afterDate != 0) {
+            // Only the partitions from the first date on
+            queryBuilder = new SQLiteQueryBuilder();
+            queryBuilder.setTables(getWeatherByLocationSettingTables(db,
+                    afterDate != 0 ? Math.max(startDate, afterDate + 1) : startDate,
+                    Long.MAX_VALUE));
+        }
+        return queryBuilder.query(db,
+                WeatherRowCodec.decodeProjection(projection, true),
                 selection,
                 selectionArgs,
                 null,
                 null,
-                sortOrder
+                sortOrder,
+                limitClause
         );
     }
 
@@ -98,8 +242,11 @@ public class WeatherProvider extends ContentProvider {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
 
-        return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
-                projection,
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(getWeatherByLocationSettingTables(db, date, date + 1));
+        return queryBuilder.query(db,
+                WeatherRowCodec.decodeProjection(projection, true),
                 sLocationSettingAndDaySelection,
                 new String[]{locationSetting, Long.toString(date)},
                 null,
@@ -108,6 +255,161 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    //location.location_setting = ? AND date >= ? AND date < ?
+    private static final String sLocationSettingWithDateRangeSelection =
+            WeatherContract.LocationEntry.TABLE_NAME +
+                    "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " < ? ";
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+    // 1970-01-01 was a Thursday, so (epoch day + 3) / 7 counts weeks starting on Monday.
+    private static final int EPOCH_DAY_TO_MONDAY = 3;
+
+    private Cursor getSummary(Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.SummaryEntry.getLocationSettingFromUri(uri);
+        long startDate = WeatherContract.SummaryEntry.getStartDateFromUri(uri);
+        long endDate = WeatherContract.SummaryEntry.getEndDateFromUri(uri);
+        String group = WeatherContract.SummaryEntry.getGroupFromUri(uri);
+
+        String groupBy = null;
+        if (group != null) {
+            // Stored dates are local midnights.  Shifted by the UTC offset plus half a day they
+            // land on local noon, which stays within the same day in UTC whatever daylight
+            // saving does to the offset in between.
+            String localNoon = "(" + WeatherContract.WeatherEntry.COLUMN_DATE + " + " +
+                    (WeatherContract.SummaryEntry.getUtcOffsetFromUri(uri) + DAY_IN_MILLIS / 2) +
+                    ")";
+            if (WeatherContract.SummaryEntry.GROUP_WEEK.equals(group)) {
+                groupBy = "(" + localNoon + " / " + DAY_IN_MILLIS + " + " + EPOCH_DAY_TO_MONDAY +
+                        ") / 7";
+            } else if (WeatherContract.SummaryEntry.GROUP_MONTH.equals(group)) {
+                groupBy = "strftime('%Y-%m', " + localNoon + " / 1000, 'unixepoch')";
+            } else {
+                throw new UnsupportedOperationException("Unknown summary group: " + group);
+            }
+        }
+        if (sortOrder == null) {
+            // Spelled out rather than by alias, which only exists if it was projected.
+            sortOrder = "MIN(" + WeatherContract.WeatherEntry.COLUMN_DATE + ") ASC";
+        }
+
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(getWeatherByLocationSettingTables(db, startDate, endDate));
+        queryBuilder.setProjectionMap(sSummaryProjectionMap);
+        return queryBuilder.query(db,
+                projection,
+                sLocationSettingWithDateRangeSelection,
+                new String[]{locationSetting, Long.toString(startDate), Long.toString(endDate)},
+                groupBy,
+                null,
+                sortOrder
+        );
+    }
+
+    // Predicates of the search URIs, each applied only if its query parameter is present:
+    // parameter, column, operator
+    private static final String[][] sSearchPredicates = {
+            {WeatherContract.SearchEntry.QUERY_PARAM_WEATHER_ID_FROM,
+                    WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, " >= ?"},
+            {WeatherContract.SearchEntry.QUERY_PARAM_WEATHER_ID_TO,
+                    WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, " <= ?"},
+            {WeatherContract.SearchEntry.QUERY_PARAM_MAX_TEMP_ABOVE,
+                    WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, " > ?"},
+            {WeatherContract.SearchEntry.QUERY_PARAM_MAX_TEMP_BELOW,
+                    WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, " < ?"},
+            {WeatherContract.SearchEntry.QUERY_PARAM_MIN_TEMP_ABOVE,
+                    WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, " > ?"},
+            {WeatherContract.SearchEntry.QUERY_PARAM_MIN_TEMP_BELOW,
+                    WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, " < ?"}
+    };
+
+    /**
+     * Builds the single statement answering a search URI, filling in selectionArgs.  The date
+     * range leads the WHERE clause so that SQLite walks the (date, location_id) index, across
+     * all locations at once, and checks the other predicates on the rows it finds there.
+     */
+    static String buildSearchQuery(SQLiteDatabase db, Uri uri, String[] projection,
+            String sortOrder, List<String> selectionArgs) {
+        String start = uri.getQueryParameter(WeatherContract.SearchEntry.QUERY_PARAM_START);
+        String end = uri.getQueryParameter(WeatherContract.SearchEntry.QUERY_PARAM_END);
+        if (start == null || end == null) {
+            throw new IllegalArgumentException("Search without a date range: " + uri);
+        }
+        StringBuilder selection = new StringBuilder(WeatherContract.WeatherEntry.TABLE_NAME)
+                .append(".").append(WeatherContract.WeatherEntry.COLUMN_DATE).append(" >= ? AND ")
+                .append(WeatherContract.WeatherEntry.TABLE_NAME)
+                .append(".").append(WeatherContract.WeatherEntry.COLUMN_DATE).append(" < ?");
+        long startDate = Long.parseLong(start);
+        long endDate = Long.parseLong(end);
+        selectionArgs.add(Long.toString(startDate));
+        selectionArgs.add(Long.toString(endDate));
+        for (String[] predicate : sSearchPredicates) {
+            String value = uri.getQueryParameter(predicate[0]);
+            if (value != null) {
+                selection.append(" AND ").append(predicate[1]).append(predicate[2]);
+                // Only numbers are accepted as arguments.  Measurements are compared in their
+                // stored form, so the comparison stays on integers.
+                double number = Double.parseDouble(value);
+                selectionArgs.add(WeatherRowCodec.isScaled(predicate[1])
+                        ? Long.toString(WeatherRowCodec.encode(number)) : value);
+            }
+        }
+
+        if (sortOrder == null) {
+            sortOrder = WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " ASC, " +
+                    WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        }
+        return SQLiteQueryBuilder.buildQueryString(false,
+                getWeatherByLocationSettingTables(db, startDate, endDate),
+                WeatherRowCodec.decodeProjection(projection, true),
+                selection.toString(),
+                null,
+                null,
+                sortOrder,
+                null);
+    }
+
+    private Cursor getSearchResults(Uri uri, String[] projection, String sortOrder) {
+        List<String> selectionArgs = new ArrayList<String>();
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        String sql = buildSearchQuery(db, uri, projection, sortOrder, selectionArgs);
+        return db.rawQuery(sql,
+                selectionArgs.toArray(new String[selectionArgs.size()]));
+    }
+
+    private Cursor getHistoryByLocationSetting(SQLiteQueryBuilder queryBuilder, Uri uri,
+            String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        String locationSetting = WeatherContract.HistoryEntry.getLocationSettingFromUri(uri);
+
+        // Callers may narrow the history down further, e.g. to a range of periods.
+        String[] historySelectionArgs;
+        String historySelection;
+        if (selection == null) {
+            historySelection = sLocationSettingSelection;
+            historySelectionArgs = new String[]{locationSetting};
+        } else {
+            historySelection = sLocationSettingSelection + " AND (" + selection + ")";
+            int extraArgs = selectionArgs == null ? 0 : selectionArgs.length;
+            historySelectionArgs = new String[1 + extraArgs];
+            historySelectionArgs[0] = locationSetting;
+            if (extraArgs > 0) {
+                System.arraycopy(selectionArgs, 0, historySelectionArgs, 1, extraArgs);
+            }
+        }
+
+        return queryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                historySelection,
+                historySelectionArgs,
+                null,
+                null,
+                sortOrder
+        );
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -130,16 +432,27 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+
+        final String weekly = WeatherContract.PATH_HISTORY + "/" + WeatherContract.PATH_WEEKLY;
+        final String monthly = WeatherContract.PATH_HISTORY + "/" + WeatherContract.PATH_MONTHLY;
+        matcher.addURI(authority, weekly, HISTORY_WEEKLY);
+        matcher.addURI(authority, weekly + "/*", HISTORY_WEEKLY_WITH_LOCATION);
+        matcher.addURI(authority, monthly, HISTORY_MONTHLY);
+        matcher.addURI(authority, monthly + "/*", HISTORY_MONTHLY_WITH_LOCATION);
+
+        matcher.addURI(authority, WeatherContract.PATH_SUMMARY + "/*", SUMMARY_WITH_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_SEARCH, SEARCH);
         return matcher;
     }
 
     /*
-        Students: We've coded this for you.  We just create a new WeatherDbHelper for later use
+        Students: We've coded this for you.  We just get the shared WeatherDbHelper for later use
         here.
      */
     @Override
     public boolean onCreate() {
-        mOpenHelper = new WeatherDbHelper(getContext());
+        mOpenHelper = WeatherDbHelper.getInstance(getContext());
+        mDatabaseStore = new SqliteForecastStore(mOpenHelper);
         return true;
     }
 
@@ -164,6 +477,15 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case HISTORY_WEEKLY:
+            case HISTORY_WEEKLY_WITH_LOCATION:
+            case HISTORY_MONTHLY:
+            case HISTORY_MONTHLY_WITH_LOCATION:
+                return WeatherContract.HistoryEntry.CONTENT_TYPE;
+            case SUMMARY_WITH_LOCATION:
+                return WeatherContract.SummaryEntry.CONTENT_TYPE;
+            case SEARCH:
+                return WeatherContract.SearchEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -175,6 +497,7 @@ public class WeatherProvider extends ContentProvider {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
         Cursor retCursor;
+        Uri notificationUri = uri;
         switch (sUriMatcher.match(uri)) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
@@ -191,7 +514,7 @@ public class WeatherProvider extends ContentProvider {
             case WEATHER: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
                         WeatherContract.WeatherEntry.TABLE_NAME,
-                        projection,
+                        WeatherRowCodec.decodeProjection(projection, false),
                         selection,
                         selectionArgs,
                         null,
@@ -213,11 +536,50 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "history/weekly/*"
+            case HISTORY_WEEKLY_WITH_LOCATION: {
+                retCursor = getHistoryByLocationSetting(sWeeklyHistoryByLocationSettingQueryBuilder,
+                        uri, projection, selection, selectionArgs, sortOrder);
+                break;
+            }
+            // "history/monthly/*"
+            case HISTORY_MONTHLY_WITH_LOCATION: {
+                retCursor = getHistoryByLocationSetting(sMonthlyHistoryByLocationSettingQueryBuilder,
+                        uri, projection, selection, selectionArgs, sortOrder);
+                break;
+            }
+            // "summary/*"
+            case SUMMARY_WITH_LOCATION: {
+                retCursor = getSummary(uri, projection, sortOrder);
+                // Summaries change with any of the weather rows behind them.
+                notificationUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                break;
+            }
+            // "search"
+            case SEARCH: {
+                retCursor = getSearchResults(uri, projection, sortOrder);
+                notificationUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                break;
+            }
+            // "history/weekly" and "history/monthly"
+            case HISTORY_WEEKLY:
+            case HISTORY_MONTHLY: {
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        getHistoryTable(uri),
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                );
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        retCursor.setNotificationUri(getContext().getContentResolver(), uri);
+        retCursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         return retCursor;
     }
 
@@ -233,11 +595,16 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                Long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                long _id = date == null ? -1 : db.insert(
+                        WeatherDbHelper.ensureWeatherPartition(db, date), null,
+                        WeatherRowCodec.encode(values));
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                invalidateSnapshot(db,
+                        values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY), date);
                 break;
             }
             case LOCATION: {
@@ -248,9 +615,19 @@ public class WeatherProvider extends ContentProvider {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case HISTORY_WEEKLY:
+            case HISTORY_MONTHLY: {
+                long _id = db.insert(getHistoryTable(uri), null, values);
+                if ( _id > 0 )
+                    returnUri = ContentUris.withAppendedId(uri, _id);
+                else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                break;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        invalidateForecastCache();
         getContext().getContentResolver().notifyChange(uri, null);
         return returnUri;
     }
@@ -260,27 +637,149 @@ public class WeatherProvider extends ContentProvider {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         int rowsDeleted;
+        String before = uri.getQueryParameter(WeatherContract.WeatherEntry.QUERY_PARAM_BEFORE);
+        if (before != null && selection != null) {
+            throw new UnsupportedOperationException("Selection with a before date: " + uri);
+        }
         // this makes delete all rows return the number of rows deleted
         if ( null == selection ) selection = "1";
         switch (match) {
             case WEATHER:
-                rowsDeleted = db.delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                if (before != null) {
+                    long beforeDate = Long.parseLong(before);
+                    rowsDeleted = deleteWeatherBefore(db, beforeDate);
+                    if (rowsDeleted != 0) {
+                        invalidateSnapshot(db, null, beforeDate - 1);
+                    }
+                } else {
+                    rowsDeleted = deleteWeather(db, selection, selectionArgs);
+                    if (rowsDeleted != 0) {
+                        invalidateSnapshot(db, null, Long.MAX_VALUE);
+                    }
+                }
                 break;
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case HISTORY_WEEKLY:
+            case HISTORY_MONTHLY:
+                rowsDeleted = db.delete(getHistoryTable(uri), selection, selectionArgs);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
+            invalidateForecastCache();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsDeleted;
     }
 
+    private static String getHistoryTable(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case HISTORY_WEEKLY:
+            case HISTORY_WEEKLY_WITH_LOCATION:
+                return WeatherContract.HistoryEntry.WEEKLY_TABLE_NAME;
+            case HISTORY_MONTHLY:
+            case HISTORY_MONTHLY_WITH_LOCATION:
+                return WeatherContract.HistoryEntry.MONTHLY_TABLE_NAME;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+    }
+
+    // The weather view can't be written to, writes go to the monthly partitions behind it.
+
+    // Partitions left empty are dropped, as deleteWeatherBefore does, rather than kept in the
+    // view.
+    private int deleteWeather(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        int rowsDeleted = 0;
+        List<String> dropped = new ArrayList<String>();
+        WeatherDbHelper.beginWeatherTransaction(db);
+        try {
+            for (String partition : WeatherDbHelper.getWeatherPartitions(db)) {
+                int deleted = db.delete(partition, selection, selectionArgs);
+                rowsDeleted += deleted;
+                if (deleted > 0 && DatabaseUtils.queryNumEntries(db, partition) == 0) {
+                    dropped.add(partition);
+                }
+            }
+            if (!dropped.isEmpty()) {
+                WeatherDbHelper.dropWeatherPartitions(db, dropped);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return rowsDeleted;
+    }
+
+    // Partitions entirely before the date are dropped, only the one it falls into has rows
+    // deleted, and is dropped as well if that empties it.
+    private int deleteWeatherBefore(SQLiteDatabase db, long date) {
+        int rowsDeleted = 0;
+        List<String> dropped = new ArrayList<String>();
+        WeatherDbHelper.beginWeatherTransaction(db);
+        try {
+            for (String partition : WeatherDbHelper.getWeatherPartitions(db)) {
+                if (WeatherDbHelper.getPartitionEnd(partition) <= date) {
+                    rowsDeleted += (int) DatabaseUtils.queryNumEntries(db, partition);
+                    dropped.add(partition);
+                } else if (WeatherDbHelper.getPartitionStart(partition) < date) {
+                    int deleted = db.delete(partition,
+                            WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                            new String[]{Long.toString(date)});
+                    rowsDeleted += deleted;
+                    if (deleted > 0 && DatabaseUtils.queryNumEntries(db, partition) == 0) {
+                        dropped.add(partition);
+                    }
+                }
+            }
+            if (!dropped.isEmpty()) {
+                WeatherDbHelper.dropWeatherPartitions(db, dropped);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return rowsDeleted;
+    }
+
+    private int updateWeather(SQLiteDatabase db, ContentValues values, String selection,
+            String[] selectionArgs) {
+        int rowsUpdated = 0;
+        WeatherDbHelper.beginWeatherTransaction(db);
+        try {
+            Long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            String target = date == null ? null : WeatherDbHelper.ensureWeatherPartition(db, date);
+            List<String> partitions = WeatherDbHelper.getWeatherPartitions(db);
+            if (target != null) {
+                // Rows moved into the target below must not be matched a second time.
+                partitions.remove(target);
+                partitions.add(0, target);
+            }
+            for (String partition : partitions) {
+                int updated = db.update(partition, values, selection, selectionArgs);
+                rowsUpdated += updated;
+                if (updated > 0 && target != null && !target.equals(partition)) {
+                    // The rows now belong to another month, move them over.
+                    String[] dateArgs = {Long.toString(date)};
+                    db.execSQL("INSERT INTO " + target + " SELECT * FROM " + partition +
+                            " WHERE " + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                            dateArgs);
+                    db.delete(partition, WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                            dateArgs);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return rowsUpdated;
+    }
+
     private void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
@@ -299,8 +798,11 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER:
                 normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
+                rowsUpdated = updateWeather(db, WeatherRowCodec.encode(values), selection,
                         selectionArgs);
+                if (rowsUpdated != 0) {
+                    invalidateSnapshot(db, null, Long.MAX_VALUE);
+                }
                 break;
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
@@ -310,6 +812,7 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
+            invalidateForecastCache();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsUpdated;
@@ -321,20 +824,45 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
-                db.beginTransaction();
+                WeatherDbHelper.beginWeatherTransaction(db);
                 int returnCount = 0;
+                // The location written, null if there were several, and the last day
+                Long locationId = null;
+                boolean severalLocations = false;
+                long lastDate = Long.MIN_VALUE;
                 try {
+                    String partition = null;
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        Long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                        if (date == null) {
+                            continue;
+                        }
+                        // Consecutive days mostly share a partition, only look it up on change.
+                        if (!WeatherDbHelper.getWeatherPartition(date).equals(partition)) {
+                            partition = WeatherDbHelper.ensureWeatherPartition(db, date);
+                        }
+                        long _id = db.insert(partition, null, WeatherRowCodec.encode(value));
                         if (_id != -1) {
                             returnCount++;
+                            Long rowLocationId =
+                                    value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                            if (locationId == null) {
+                                locationId = rowLocationId;
+                            } else if (!locationId.equals(rowLocationId)) {
+                                severalLocations = true;
+                            }
+                            lastDate = Math.max(lastDate, date);
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
                 }
+                invalidateForecastCache();
+                if (returnCount != 0) {
+                    invalidateSnapshot(db, severalLocations ? null : locationId, lastDate);
+                }
                 getContext().getContentResolver().notifyChange(uri, null);
                 return returnCount;
             default:
@@ -342,12 +870,151 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    @Override
+    @TargetApi(11)
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_GET_FORECAST.equals(method)) {
+            if (extras == null) {
+                extras = Bundle.EMPTY;
+            }
+            long startDate = extras.getLong(WeatherContract.EXTRA_START_DATE,
+                    System.currentTimeMillis());
+            int days = extras.getInt(WeatherContract.EXTRA_DAYS, 1);
+            return getForecastBundle(arg, startDate, days);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    private Bundle getForecastBundle(String locationSetting, long startDate, int days) {
+        // Requests made within the same day share the same answer.
+        long normalizedStartDate = WeatherContract.normalizeDate(startDate);
+        String key = locationSetting + "/" + normalizedStartDate + "/" + days;
+        int generation;
+        synchronized (mForecastCache) {
+            Bundle cached = mForecastCache.get(key);
+            if (cached != null) {
+                // Callers in this process get the Bundle itself rather than a parceled copy,
+                // so hand out copies.  The arrays are shared and must be treated as read-only.
+                return new Bundle(cached);
+            }
+            generation = mForecastCacheGeneration;
+        }
+
+        // One day more than the window holds tells the window whether that is all there is.
+        ForecastRecord[] records = ForecastRecord.newArray(
+                Math.max(days, MappedForecastStore.WINDOW_DAYS + 1));
+        WritableForecastStore windowStore = getWindowStore();
+        int count = windowStore == null ? ForecastStore.NOT_STORED
+                : windowStore.read(locationSetting, normalizedStartDate, days, records);
+        boolean fromDatabase = count == ForecastStore.NOT_STORED;
+        if (fromDatabase) {
+            count = mDatabaseStore.read(locationSetting, normalizedStartDate, records.length,
+                    records);
+        }
+
+        Bundle bundle;
+        synchronized (mForecastCache) {
+            if (fromDatabase && windowStore != null && generation == mForecastCacheGeneration) {
+                windowStore.put(locationSetting, normalizedStartDate, records, count);
+            }
+            bundle = ForecastBundle.fromRecords(records, Math.min(days, count));
+            if (generation == mForecastCacheGeneration) {
+                mForecastCache.put(key, bundle);
+            }
+        }
+        return new Bundle(bundle);
+    }
+
+    private WritableForecastStore getWindowStore() {
+        synchronized (mForecastCache) {
+            if (!mWindowStoreOpened) {
+                mWindowStoreOpened = true;
+                try {
+                    mWindowStore = new MappedForecastStore(
+                            new File(getContext().getCacheDir(), FORECAST_WINDOW_FILE));
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Forecast window unavailable, reading the database", e);
+                }
+            }
+            return mWindowStore;
+        }
+    }
+
+    private void invalidateForecastCache() {
+        // Opened even if this process hasn't read from it yet: the file may still hold the
+        // window from before the write.
+        WritableForecastStore windowStore = getWindowStore();
+        synchronized (mForecastCache) {
+            mForecastCacheGeneration++;
+            mForecastCache.evictAll();
+            if (windowStore != null) {
+                windowStore.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the cold start snapshot if a write to the weather rows may have changed what it
+     * shows, the days from today on of its location.  The sync writes a new one once it is done
+     * writing.  History, location and expired days' writes leave it alone.
+     *
+     * @param locationId the location written, null if it may have been any
+     * @param lastDate   the last day written, Long.MAX_VALUE if it may have been any
+     */
+    private void invalidateSnapshot(SQLiteDatabase db, Long locationId, long lastDate) {
+        if (lastDate < WeatherContract.normalizeDate(System.currentTimeMillis())) {
+            return;
+        }
+        if (locationId != null) {
+            Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                    new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(locationId)}, null, null, null);
+            try {
+                if (cursor.moveToFirst()
+                        && !ForecastSnapshot.isFor(getContext(), cursor.getString(0))) {
+                    return;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        ForecastSnapshot.delete(getContext());
+    }
+
+    /**
+     * Applies the whole batch in a single transaction, so that e.g. rolling expired days into
+     * the history and deleting them either happens completely or not at all.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        WeatherDbHelper.beginWeatherTransaction(db);
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+            // The operations invalidated the cache before their changes were committed, which
+            // leaves a window for an answer from before the commit to be cached.
+            invalidateForecastCache();
+        }
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
     @Override
     @TargetApi(11)
     public void shutdown() {
+        synchronized (mForecastCache) {
+            if (mWindowStore != null) {
+                mWindowStore.close();
+                mWindowStore = null;
+            }
+        }
         mOpenHelper.close();
         super.shutdown();
     }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Converts weather rows between what the provider's clients see and what the weather table
+ * stores.
+ *
+ * The measurements are stored as INTEGER hundredths.  SQLite stores small integers in one to
+ * four bytes where a REAL always takes eight, compares them without going through floating
+ * point, and cursor windows holding them are smaller.  Hundredths keep every digit the API
+ * sends.
+ */
+final class WeatherRowCodec {
+
+    static final int SCALE = 100;
+
+    // Columns of the weather table that hold scaled measurements
+    static final String[] SCALED_COLUMNS = {
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    // Every column of the weather table, for queries that don't ask for specific ones
+    private static final String[] ALL_COLUMNS = {
+            WeatherEntry._ID,
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final String TABLE_PREFIX = WeatherEntry.TABLE_NAME + ".";
+
+    private WeatherRowCodec() {
+    }
+
+    static long encode(double value) {
+        return Math.round(value * SCALE);
+    }
+
+    static boolean isScaled(String column) {
+        for (String scaled : SCALED_COLUMNS) {
+            if (scaled.equals(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of the values with the measurements scaled for storage.  The caller's
+     * values are left alone, they may well be checked against what is read back.
+     */
+    static ContentValues encode(ContentValues values) {
+        ContentValues encoded = new ContentValues(values);
+        for (String column : SCALED_COLUMNS) {
+            Double value = values.getAsDouble(column);
+            if (value != null) {
+                encoded.put(column, encode(value));
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @return an SQL expression turning a stored measurement back into a float.
+     */
+    static String decodeSql(String storedValue) {
+        return storedValue + " / " + SCALE + ".0";
+    }
+
+    /**
+     * Rewrites a projection so that the measurements come back unscaled, under their own names.
+     * Other columns, and expressions, are passed through as they are.
+     *
+     * @param joined whether the query joins the location table, in which case a null
+     *               projection also returns all of its columns.
+     */
+    static String[] decodeProjection(String[] projection, boolean joined) {
+        if (projection == null) {
+            projection = new String[ALL_COLUMNS.length + (joined ? 1 : 0)];
+            for (int i = 0; i < ALL_COLUMNS.length; i++) {
+                projection[i] = TABLE_PREFIX + ALL_COLUMNS[i];
+            }
+            if (joined) {
+                projection[ALL_COLUMNS.length] = LocationEntry.TABLE_NAME + ".*";
+            }
+        } else {
+            projection = projection.clone();
+        }
+        for (int i = 0; i < projection.length; i++) {
+            String column = projection[i];
+            String name = column.startsWith(TABLE_PREFIX)
+                    ? column.substring(TABLE_PREFIX.length()) : column;
+            if (isScaled(name)) {
+                projection[i] = decodeSql(column) + " AS " + name;
+            }
+        }
+        return projection;
+    }
+}
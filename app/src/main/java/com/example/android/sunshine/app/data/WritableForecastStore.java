@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+/**
+ * ForecastStore holding a copy of some of the window, which the provider fills from the
+ * database's reads and clears after the weather table changes.
+ */
+public interface WritableForecastStore extends ForecastStore {
+
+    /**
+     * Replaces the location's forecast from startDate on.
+     *
+     * @param records all of the location's days from startDate on, in date order.  Only the
+     *                first count are used.
+     */
+    void put(String locationSetting, long startDate, ForecastRecord[] records, int count);
+
+    /**
+     * Forgets the copy, after the weather data changed in the database.
+     */
+    void invalidate();
+}
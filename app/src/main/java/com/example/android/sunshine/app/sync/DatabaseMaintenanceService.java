@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.SQLException;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.DatabaseMaintenance;
+
+/**
+ * IntentService which vacuums and analyzes the weather database when the device is idle.
+ *
+ * From Lollipop on, the JobScheduler knows when the device is idle and starts
+ * DatabaseMaintenanceJobService then.  Before that, an inexact alarm starts this service about
+ * twice a day and it checks for itself: the screen has to be off and the device charging.
+ */
+public class DatabaseMaintenanceService extends IntentService {
+    private static final String LOG_TAG = DatabaseMaintenanceService.class.getSimpleName();
+
+    static final int MAINTENANCE_JOB_ID = 1;
+
+    public DatabaseMaintenanceService() {
+        super("DatabaseMaintenanceService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        runIfDue(this, isDeviceIdle(this));
+    }
+
+    static void runIfDue(Context context, boolean deviceIdle) {
+        DatabaseMaintenance maintenance = new DatabaseMaintenance(context);
+        if (!maintenance.shouldRun(deviceIdle)) {
+            return;
+        }
+        try {
+            maintenance.run();
+        } catch (SQLException e) {
+            Log.e(LOG_TAG, "Database maintenance failed", e);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isDeviceIdle(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        boolean screenOn = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH
+                ? powerManager.isInteractive() : powerManager.isScreenOn();
+        if (screenOn) {
+            return false;
+        }
+        // The battery broadcast is sticky, so this reads the last one without registering.
+        Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    /**
+     * Schedules maintenance to run about once a day, when the device is idle.
+     */
+    public static void scheduleMaintenance(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleMaintenanceJob(context);
+            return;
+        }
+        Intent intent = new Intent(context, DatabaseMaintenanceService.class);
+        // Already scheduled, don't push the next run back.
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, intent, 0);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        // More often than maintenance is due, so that it gets more chances to find the device
+        // idle.
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HALF_DAY,
+                AlarmManager.INTERVAL_HALF_DAY, pendingIntent);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleMaintenanceJob(Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == MAINTENANCE_JOB_ID) {
+                return;
+            }
+        }
+        jobScheduler.schedule(new JobInfo.Builder(MAINTENANCE_JOB_ID,
+                new ComponentName(context, DatabaseMaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(AlarmManager.INTERVAL_DAY)
+                .build());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.HistoryCompactor;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * IntentService which rolls the days that have passed into the weather history, off the sync
+ * path.
+ */
+public class HistoryCompactionService extends IntentService {
+    private static final String LOG_TAG = HistoryCompactionService.class.getSimpleName();
+
+    public HistoryCompactionService() {
+        super("HistoryCompactionService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        // Everything before today is history.
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        try {
+            int compacted = new HistoryCompactor(getContentResolver()).compact(today);
+            Log.d(LOG_TAG, "History compaction complete. " + compacted + " days compacted");
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "History compaction failed", e);
+        }
+    }
+
+    /**
+     * Schedules the compaction to run about once a day.  The alarm is inexact, so the system
+     * can batch it with other wakeups, and doesn't wake the device up.
+     */
+    public static void scheduleDailyCompaction(Context context) {
+        Intent intent = new Intent(context, HistoryCompactionService.class);
+        // Already scheduled, don't push the next run back.
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, intent, 0);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HOUR,
+                AlarmManager.INTERVAL_DAY, pendingIntent);
+    }
+}
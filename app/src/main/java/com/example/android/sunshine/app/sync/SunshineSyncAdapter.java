@@ -26,7 +26,6 @@ import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
-import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
@@ -34,8 +33,15 @@ import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherCondition;
+import com.example.android.sunshine.app.data.ForecastBundle;
+import com.example.android.sunshine.app.data.ForecastSeriesStore;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.PayloadArchive;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.core.LocalDays;
+import com.example.android.sunshine.core.WearableProtocol;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
@@ -55,6 +61,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.Vector;
 import java.util.concurrent.ExecutionException;
@@ -70,27 +78,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
-    private static final String WEATHER = "/weather";
-    private static final String WEATHER_INFO = "/weather-info";
-
-    private static final String mUUID = "uuid";
-    private static final String HIGH = "high";
-    private static final String LOW = "low";
-    private static final String WEATHER_ID = "weatherId";
-
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
-
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
     public @interface LocationStatus {}
@@ -117,6 +104,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         Log.d(LOG_TAG, "Starting sync");
         String locationQuery = Utility.getPreferredLocation(getContext());
 
+        PayloadArchive payloadArchive = new PayloadArchive(getContext());
+        if (payloadArchive.isReplayRequested()) {
+            payloadArchive.clearReplayRequest();
+            if (replayArchivedPayload(payloadArchive, locationQuery)) {
+                return;
+            }
+        }
+
         // These two need to be declared outside the try/catch
         // so that they can be closed in the finally block.
         HttpURLConnection urlConnection = null;
@@ -179,7 +174,15 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 return;
             }
             forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            long fetchedAt = System.currentTimeMillis();
+            try {
+                payloadArchive.store(locationQuery, forecastJsonStr, fetchedAt);
+            } catch (IOException e) {
+                // Not being able to archive the payload must not fail the sync.
+                Log.e(LOG_TAG, "Error archiving payload", e);
+            }
+            getWeatherDataFromJson(forecastJsonStr, locationQuery, fetchedAt,
+                    new ForecastSeriesStore(getContext()));
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
@@ -204,15 +207,43 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         return;
     }
 
+    /**
+     * Reparses the latest archived payload for the location instead of fetching it again.
+     *
+     * @return true if the archived payload was recent enough to stand in for a fetch.
+     */
+    private boolean replayArchivedPayload(PayloadArchive payloadArchive, String locationSetting) {
+        PayloadArchive.Payload payload = payloadArchive.getLatest(locationSetting);
+        if (payload == null ||
+                System.currentTimeMillis() - payload.fetchedAt >= SYNC_INTERVAL * 1000L) {
+            return false;
+        }
+        Log.d(LOG_TAG, "Replaying payload fetched at " + payload.fetchedAt);
+        try {
+            // The payload was added to the forecast series when it was first fetched.
+            getWeatherDataFromJson(payload.json, locationSetting, payload.fetchedAt, null);
+            return true;
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Take the String representing the complete forecast in JSON Format and
      * pull out the data we need to construct the Strings needed for the wireframes.
      *
      * Fortunately parsing is easy:  constructor takes the JSON string and converts it
      * into an Object hierarchy for us.
+     *
+     * @param fetchedAt when the payload was received.  The first day in the payload is the
+     *                  day it was fetched, which matters when replaying an archived payload.
+     * @param series where to record the issued forecast, or null to skip it.
      */
     private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
+                                        String locationSetting,
+                                        long fetchedAt,
+                                        ForecastSeriesStore series)
             throws JSONException {
 
         // Now we have a String representing the complete forecast in JSON Format.
@@ -244,7 +275,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         final String OWM_MIN = "min";
 
         final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
         final String OWM_WEATHER_ID = "id";
 
         final String OWM_MESSAGE_CODE = "cod";
@@ -281,6 +311,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             // Insert the new weather information into the database
             Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+            List<ForecastSeriesStore.Sample> samples =
+                    new ArrayList<ForecastSeriesStore.Sample>(weatherArray.length());
 
             // OWM returns daily forecasts based upon the local time of the city that is being
             // asked for, which means that we need to know the GMT offset to translate this data
@@ -290,14 +322,10 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             // current day, we're going to take advantage of that to get a nice
             // normalized UTC date for all of our weather.
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
+            LocalDays days = LocalDays.getDefault();
 
             // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
+            int julianStartDay = days.getJulianDay(fetchedAt);
 
             for(int i = 0; i < weatherArray.length(); i++) {
                 // These are the values that will be collected.
@@ -310,25 +338,23 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 double high;
                 double low;
 
-                String description;
                 int weatherId;
 
                 // Get the JSON object representing the day
                 JSONObject dayForecast = weatherArray.getJSONObject(i);
 
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
+                // The start of the day, normalized like every date in the database
+                dateTime = days.getStartOfDay(julianStartDay + i);
 
                 pressure = dayForecast.getDouble(OWM_PRESSURE);
                 humidity = dayForecast.getInt(OWM_HUMIDITY);
                 windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
                 windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
 
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
+                // The weather code is in a child array called "weather", which is 1 element
+                // long.  The description next to it isn't kept, it is derived from the code.
                 JSONObject weatherObject =
                         dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
                 weatherId = weatherObject.getInt(OWM_WEATHER_ID);
 
                 // Temperatures are in a child object called "temp".  Try not to name variables
@@ -347,7 +373,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
 
                 if (i == 0) {
@@ -355,6 +380,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 }
 
                 cVVector.add(weatherValues);
+                samples.add(new ForecastSeriesStore.Sample(fetchedAt,
+                        WeatherContract.normalizeDate(dateTime), weatherId, low, high, pressure,
+                        humidity, windSpeed, windDirection));
+            }
+
+            if (series != null) {
+                try {
+                    series.append(locationSetting, samples);
+                } catch (IOException e) {
+                    // Like the payload archive, the forecast series is nice to have and must
+                    // not fail the sync.
+                    Log.e(LOG_TAG, "Error appending to the forecast series", e);
+                }
             }
 
             int inserted = 0;
@@ -364,11 +402,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 cVVector.toArray(cvArray);
                 getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
 
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
+                // Days that have passed are rolled into the history by HistoryCompactionService,
+                // not here.
 
+                // Before the widgets are told, so they already update from the snapshot.
+                ForecastSnapshot.update(getContext(), locationSetting);
                 updateWidgets();
                 updateMuzei();
                 notifyWeather();
@@ -391,12 +429,16 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
         mGoogleApiClient.connect();
 
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_INFO);
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create(WearableProtocol.PATH_WEATHER_INFO);
 
-        putDataMapRequest.getDataMap().putString(mUUID, UUID.randomUUID().toString());
-        putDataMapRequest.getDataMap().putString(HIGH, Utility.formatTemperature(getContext(), high));
-        putDataMapRequest.getDataMap().putString(LOW, Utility.formatTemperature(getContext(), low));
-        putDataMapRequest.getDataMap().putInt(WEATHER_ID, weatherId);
+        putDataMapRequest.getDataMap().putString(WearableProtocol.KEY_UUID,
+                UUID.randomUUID().toString());
+        putDataMapRequest.getDataMap().putString(WearableProtocol.KEY_HIGH,
+                Utility.formatTemperature(getContext(), high));
+        putDataMapRequest.getDataMap().putString(WearableProtocol.KEY_LOW,
+                Utility.formatTemperature(getContext(), low));
+        putDataMapRequest.getDataMap().putInt(WearableProtocol.KEY_WEATHER_ID, weatherId);
 
         PutDataRequest request = putDataMapRequest.asPutDataRequest();
 
@@ -451,20 +493,20 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
                 String locationQuery = Utility.getPreferredLocation(context);
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
+                long now = System.currentTimeMillis();
+                ForecastBundle today = ForecastBundle.query(context, locationQuery, now, 1);
 
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (today.getCount() > 0
+                        && today.getDate(0) == WeatherContract.normalizeDate(now)) {
+                    int weatherId = today.getWeatherId(0);
+                    double high = today.getMaxTemp(0);
+                    double low = today.getMinTemp(0);
+                    WeatherCondition condition = WeatherCondition.get(weatherId);
+                    String desc = condition.getDescription(context, weatherId);
 
-                    int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+                    int iconId = condition.getIconResId();
                     Resources resources = context.getResources();
-                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+                    int artResourceId = condition.getArtResId();
                     String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
 
                     // On Honeycomb and higher devices, we can retrieve the size of the large icon
@@ -536,7 +578,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
@@ -680,6 +721,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public static void initializeSyncAdapter(Context context) {
         getSyncAccount(context);
+        HistoryCompactionService.scheduleDailyCompaction(context);
+        DatabaseMaintenanceService.scheduleMaintenance(context);
     }
 
     /**
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Normalizing a fetched forecast's dates and finding their partition month, with a calendar
+ * the way Time did and with LocalDays.  Dates in the stretch LocalDays cached the offset for and
+ * dates across a clock change are timed apart.
+ */
+@State(Scope.Thread)
+public class LocalDaysBenchmark {
+
+    private static final int DAYS = 14;
+
+    private TimeZone mZone;
+    private LocalDays mDays;
+    // 2014-12-20 15:00 UTC, nowhere near a change
+    private long mWinter;
+    // 2015-03-20 15:00 UTC, the forecast runs over the change of March 29
+    private long mSpring;
+
+    @Setup
+    public void setUp() {
+        mZone = TimeZone.getTimeZone("Europe/Rome");
+        mWinter = 1419087600000L;
+        mSpring = 1426863600000L;
+        mDays = LocalDays.forZone(mZone, mWinter);
+    }
+
+    private long normalizeWithCalendar(long first) {
+        long sum = 0;
+        Calendar calendar = Calendar.getInstance(mZone);
+        for (int day = 0; day < DAYS; day++) {
+            calendar.setTimeInMillis(first + day * DayMath.DAY_IN_MILLIS);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            sum += calendar.getTimeInMillis() + calendar.get(Calendar.MONTH);
+        }
+        return sum;
+    }
+
+    private long normalizeWithLocalDays(long first) {
+        long sum = 0;
+        for (int day = 0; day < DAYS; day++) {
+            int julianDay = mDays.getJulianDay(first + day * DayMath.DAY_IN_MILLIS);
+            sum += mDays.getStartOfDay(julianDay) + DayMath.getYearMonth(julianDay);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long winterWithCalendar() {
+        return normalizeWithCalendar(mWinter);
+    }
+
+    @Benchmark
+    public long winterWithLocalDays() {
+        return normalizeWithLocalDays(mWinter);
+    }
+
+    @Benchmark
+    public long springWithCalendar() {
+        return normalizeWithCalendar(mSpring);
+    }
+
+    @Benchmark
+    public long springWithLocalDays() {
+        return normalizeWithLocalDays(mSpring);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The condition and compass tables against the range checks and the if-chain they replaced,
+ * over every condition code and every degree.  WeatherConditionsTest and UnitsTest check that
+ * both sides give the same answers.
+ */
+@State(Scope.Thread)
+public class LookupTableBenchmark {
+
+    private static final int FIRST_CODE = 200;
+    private static final int LAST_CODE = 962;
+
+    // As in WeatherConditionsTest
+    private static String rangeCheckArtName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    // As in UnitsTest
+    private static String ifChainDirection(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+
+    @Benchmark
+    public int conditionsWithRangeChecks() {
+        int sum = 0;
+        for (int code = FIRST_CODE; code <= LAST_CODE; code++) {
+            String name = rangeCheckArtName(code);
+            sum += name == null ? 0 : name.length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int conditionsWithTable() {
+        int sum = 0;
+        for (int code = FIRST_CODE; code <= LAST_CODE; code++) {
+            String name = WeatherConditions.getGroup(code).getArtName();
+            sum += name == null ? 0 : name.length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int directionsWithIfChain() {
+        int sum = 0;
+        for (int degrees = 0; degrees < 360; degrees++) {
+            sum += ifChainDirection(degrees + .5f).length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int directionsWithTable() {
+        int sum = 0;
+        for (int degrees = 0; degrees < 360; degrees++) {
+            sum += Units.getCompassDirection(degrees + .5f).length();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+
+/**
+ * The formatter against the String.format calls it replaced, one list row's worth of
+ * temperatures and one detail screen's wind.  Run with ./gradlew :sunshinecore:jmh; the gc
+ * profiler (-prof gc, set in build.gradle) shows the bytes allocated per call.
+ */
+@State(Scope.Thread)
+public class ReadingFormatterBenchmark {
+
+    private static final String TEMPERATURE_FORMAT = "%1.0f\u00B0";
+    private static final String WIND_KMH_FORMAT = "%1$1.0f km/h %2$s";
+
+    private ReadingFormatter mFormatter;
+    private StringBuilder mOut;
+    private double mHigh;
+    private double mLow;
+    private float mWindSpeed;
+    private float mDegrees;
+
+    @Setup
+    public void setUp() {
+        mFormatter = new ReadingFormatter(Locale.US, TEMPERATURE_FORMAT, WIND_KMH_FORMAT,
+                "%1$1.0f mph %2$s", "%1.0f hPa", "%1.0f %%");
+        mOut = new StringBuilder(64);
+        mHigh = 21.37;
+        mLow = 12.5;
+        mWindSpeed = 17.3f;
+        mDegrees = 301f;
+    }
+
+    @Benchmark
+    public String temperaturesWithStringFormat() {
+        String high = String.format(TEMPERATURE_FORMAT, mHigh);
+        String low = String.format(TEMPERATURE_FORMAT, (mLow * 1.8) + 32);
+        return high + low;
+    }
+
+    @Benchmark
+    public int temperaturesWithFormatter() {
+        mOut.setLength(0);
+        mFormatter.appendTemperature(mOut, mHigh, true);
+        int length = mOut.length();
+        mOut.setLength(0);
+        mFormatter.appendTemperature(mOut, mLow, false);
+        return length + mOut.length();
+    }
+
+    @Benchmark
+    public String windWithStringFormat() {
+        return String.format(WIND_KMH_FORMAT, mWindSpeed, Units.getCompassDirection(mDegrees));
+    }
+
+    @Benchmark
+    public int windWithFormatter() {
+        mOut.setLength(0);
+        mFormatter.appendWind(mOut, mWindSpeed, mDegrees, true);
+        return mOut.length();
+    }
+}
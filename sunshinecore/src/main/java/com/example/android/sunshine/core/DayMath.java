@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Day arithmetic on plain millis, the same julian days android.text.format.Time hands out, and
+ * the proleptic Gregorian dates of those days.
+ */
+public final class DayMath {
+
+    public static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // The julian day of 1970-01-01
+    public static final int EPOCH_JULIAN_DAY = 2440588;
+
+    // Days in a 400 year cycle of the Gregorian calendar
+    private static final int DAYS_PER_ERA = 146097;
+    // Days from 0000-03-01 to 1970-01-01; the date math counts from March, so leap days come last
+    private static final int ERA_TO_EPOCH_DAYS = 719468;
+
+    private DayMath() {
+    }
+
+    /**
+     * @param millis a time in UTC millis
+     * @param gmtoff the offset of the local time from UTC, in seconds, as in Time.gmtoff
+     * @return the julian day the time falls on, locally.  Unlike Time.getJulianDay this also
+     * rounds down before 1970.
+     */
+    public static int getJulianDay(long millis, long gmtoff) {
+        long localMillis = millis + gmtoff * 1000;
+        long epochDay = localMillis / DAY_IN_MILLIS;
+        if (localMillis % DAY_IN_MILLIS < 0) {
+            epochDay--;
+        }
+        return (int) epochDay + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @return the UTC millis of the local midnight starting the julian day, for a zone that is
+     * gmtoff seconds ahead of UTC on that day.
+     */
+    public static long getStartOfJulianDay(int julianDay, long gmtoff) {
+        return (julianDay - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS - gmtoff * 1000;
+    }
+
+    /**
+     * @param month the month, 1 for January; months past December or before January carry over
+     *              into the next or the previous years
+     * @return the julian day of the date
+     */
+    public static int getJulianDay(int year, int month, int dayOfMonth) {
+        int yearsLater = (int) floorDiv(month - 1, 12);
+        year += yearsLater;
+        month -= yearsLater * 12;
+
+        // Years starting in March
+        if (month <= 2) {
+            year--;
+        }
+        int era = (int) floorDiv(year, 400);
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - ERA_TO_EPOCH_DAYS + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @return the year of the julian day.
+     */
+    public static int getYear(int julianDay) {
+        return (int) floorDiv(toDate(julianDay), 10000);
+    }
+
+    /**
+     * @return the month of the julian day, 1 for January.
+     */
+    public static int getMonth(int julianDay) {
+        int yearMonth = getYearMonth(julianDay);
+        return (int) (yearMonth - floorDiv(yearMonth, 100) * 100);
+    }
+
+    /**
+     * @return the day of the month of the julian day, from 1.
+     */
+    public static int getDayOfMonth(int julianDay) {
+        long date = toDate(julianDay);
+        return (int) (date - floorDiv(date, 100) * 100);
+    }
+
+    /**
+     * @return the year and the month of the julian day as one number, 201412 for December 2014.
+     */
+    public static int getYearMonth(int julianDay) {
+        return (int) floorDiv(toDate(julianDay), 100);
+    }
+
+    // The date of the julian day as year * 10000 + month * 100 + day of month.
+    private static long toDate(int julianDay) {
+        int days = julianDay - EPOCH_JULIAN_DAY + ERA_TO_EPOCH_DAYS;
+        int era = (int) floorDiv(days, DAYS_PER_ERA);
+        int dayOfEra = days - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000L + month * 100 + dayOfMonth;
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A format string of the kind the app's resources hold, e.g. "%1$1.0f km/h %2$s", parsed once
+ * so it can be filled in without String.format.
+ *
+ * Numbers are written rounded to whole units, the only precision the resources use, the way
+ * String.format rounds them: half away from zero, "-0" for small negatives, in the locale's
+ * digits.  Nothing is allocated while formatting.  A format with anything else in it, say a
+ * translation asking for decimals, still works, through String.format.
+ */
+public final class FormatTemplate {
+
+    // Segment kinds
+    private static final int LITERAL = 0;
+    private static final int NUMBER = 1;
+    private static final int TEXT = 2;
+
+    // Past this a double no longer holds whole numbers exactly
+    private static final double MAX_EXACT = 1e15;
+
+    private final String mFormat;
+    private final Locale mLocale;
+    private final char mZeroDigit;
+    // null if the format needs String.format
+    private final int[] mKinds;
+    private final String[] mLiterals;
+    private final int[] mWidths;
+
+    FormatTemplate(String format, Locale locale, char zeroDigit) {
+        mFormat = format;
+        mLocale = locale;
+        mZeroDigit = zeroDigit;
+
+        List<Integer> kinds = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        boolean supported = parse(format, kinds, literals, widths);
+
+        int count = supported ? kinds.size() : 0;
+        mKinds = supported ? new int[count] : null;
+        mLiterals = new String[count];
+        mWidths = new int[count];
+        for (int i = 0; i < count; i++) {
+            mKinds[i] = kinds.get(i);
+            mLiterals[i] = literals.get(i);
+            mWidths[i] = widths.get(i);
+        }
+    }
+
+    private static boolean parse(String format, List<Integer> kinds, List<String> literals,
+            List<Integer> widths) {
+        StringBuilder literal = new StringBuilder();
+        int nextArg = 0;
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i < format.length() && format.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            // %[argument$][width][.0](f|s)
+            int number = 0;
+            int start = i;
+            while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                number = number * 10 + format.charAt(i++) - '0';
+            }
+            int arg;
+            int width = 0;
+            if (i < format.length() && format.charAt(i) == '$' && i > start) {
+                arg = number - 1;
+                i++;
+                start = i;
+                while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                    width = width * 10 + format.charAt(i++) - '0';
+                }
+                if (i > start && format.charAt(start) == '0') {
+                    // Zero padding
+                    return false;
+                }
+            } else {
+                if (i > start && format.charAt(start) == '0') {
+                    return false;
+                }
+                arg = nextArg++;
+                width = number;
+            }
+            if (i >= format.length()) {
+                return false;
+            }
+            int kind;
+            if (format.charAt(i) == '.') {
+                if (!format.startsWith(".0f", i)) {
+                    return false;
+                }
+                i += 2;
+            }
+            char conversion = format.charAt(i++);
+            if (conversion == 'f') {
+                kind = NUMBER;
+            } else if (conversion == 's') {
+                kind = TEXT;
+            } else {
+                return false;
+            }
+            if (kind == NUMBER && format.charAt(i - 2) != '0') {
+                // Plain %f has six decimals
+                return false;
+            }
+            if (arg != (kind == NUMBER ? 0 : 1)) {
+                // The number is always the first argument, the text the second.
+                return false;
+            }
+            if (literal.length() > 0) {
+                kinds.add(LITERAL);
+                literals.add(literal.toString());
+                widths.add(0);
+                literal.setLength(0);
+            }
+            kinds.add(kind);
+            literals.add(null);
+            widths.add(width);
+        }
+        if (literal.length() > 0) {
+            kinds.add(LITERAL);
+            literals.add(literal.toString());
+            widths.add(0);
+        }
+        return true;
+    }
+
+    /**
+     * Appends the format filled in with the number as its numeric argument and the text as its
+     * text argument, whichever positions they have.
+     */
+    public void append(StringBuilder out, double number, String text) {
+        if (mKinds == null) {
+            out.append(String.format(mLocale, mFormat, number, text));
+            return;
+        }
+        for (int i = 0; i < mKinds.length; i++) {
+            int start = out.length();
+            switch (mKinds[i]) {
+                case LITERAL:
+                    out.append(mLiterals[i]);
+                    continue;
+                case NUMBER:
+                    appendRounded(out, number);
+                    break;
+                default:
+                    out.append(text);
+            }
+            // Right-aligned in the width, as String.format does
+            for (int padding = mWidths[i] - (out.length() - start); padding > 0; padding--) {
+                out.insert(start, ' ');
+            }
+        }
+    }
+
+    /**
+     * @return whether the format can be filled in without String.format.
+     */
+    public boolean isCompiled() {
+        return mKinds != null;
+    }
+
+    /**
+     * Appends the number rounded to a whole number the way "%.0f" does, in the locale's digits.
+     */
+    public void appendRounded(StringBuilder out, double number) {
+        if (number != number || Math.abs(number) >= MAX_EXACT) {
+            // NaN, infinities and huge values are rare enough to allocate for.
+            out.append(String.format(mLocale, "%.0f", number));
+            return;
+        }
+        boolean negative = number < 0 || (number == 0 && 1 / number < 0);
+        double magnitude = Math.abs(number);
+        long whole = (long) magnitude;
+        if (magnitude - whole >= .5) {
+            whole++;
+        }
+        if (negative) {
+            out.append('-');
+        }
+        appendDigits(out, whole);
+    }
+
+    private void appendDigits(StringBuilder out, long value) {
+        int start = out.length();
+        do {
+            out.append((char) (mZeroDigit + (int) (value % 10)));
+            value /= 10;
+        } while (value != 0);
+        // Written backwards, lowest digit first
+        for (int i = start, j = out.length() - 1; i < j; i++, j--) {
+            char c = out.charAt(i);
+            out.setCharAt(i, out.charAt(j));
+            out.setCharAt(j, c);
+        }
+    }
+}
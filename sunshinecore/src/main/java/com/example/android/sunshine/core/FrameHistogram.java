@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * The frame times and bind times of a list while it scrolled, counted into one millisecond
+ * buckets.
+ *
+ * A frame is the time between two vsyncs the list drew on.  At a steady frame rate that's one
+ * frame interval; a frame taking about n intervals dropped n - 1 frames, and is janky.  Binds
+ * are counted apart, with the ones past a threshold counted as slow, since a slow bind is the
+ * usual reason for a janky frame.  Recording allocates nothing, so it can run on every frame.
+ */
+public final class FrameHistogram {
+
+    // Frames of this many milliseconds or more all go in the last bucket.
+    public static final int BUCKETS = 64;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final long mFrameIntervalNanos;
+    private final long mSlowBindNanos;
+
+    private final int[] mFrameBuckets = new int[BUCKETS];
+    private int mFrames;
+    private int mJankyFrames;
+    private int mDroppedFrames;
+    private long mTotalFrameNanos;
+    private long mMaxFrameNanos;
+
+    private int mBinds;
+    private int mSlowBinds;
+    private long mTotalBindNanos;
+    private long mMaxBindNanos;
+
+    /**
+     * @param frameIntervalNanos the time between vsyncs of the display
+     * @param slowBindNanos      the time past which a bind is slow
+     */
+    public FrameHistogram(long frameIntervalNanos, long slowBindNanos) {
+        if (frameIntervalNanos <= 0) {
+            throw new IllegalArgumentException("Error: Frame interval " + frameIntervalNanos);
+        }
+        mFrameIntervalNanos = frameIntervalNanos;
+        mSlowBindNanos = slowBindNanos;
+    }
+
+    public void addFrame(long durationNanos) {
+        if (durationNanos < 0) {
+            return;
+        }
+        mFrames++;
+        mTotalFrameNanos += durationNanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, durationNanos);
+        mFrameBuckets[(int) Math.min(durationNanos / NANOS_PER_MILLI, BUCKETS - 1)]++;
+        // Rounded, vsyncs come a little early or late.
+        long dropped = (durationNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+        if (dropped > 0) {
+            mJankyFrames++;
+            mDroppedFrames += dropped;
+        }
+    }
+
+    public void addBind(long durationNanos) {
+        mBinds++;
+        mTotalBindNanos += durationNanos;
+        mMaxBindNanos = Math.max(mMaxBindNanos, durationNanos);
+        if (durationNanos > mSlowBindNanos) {
+            mSlowBinds++;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram, as when a scroll session ends.
+     */
+    public void addAll(FrameHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            mFrameBuckets[i] += other.mFrameBuckets[i];
+        }
+        mFrames += other.mFrames;
+        mJankyFrames += other.mJankyFrames;
+        mDroppedFrames += other.mDroppedFrames;
+        mTotalFrameNanos += other.mTotalFrameNanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, other.mMaxFrameNanos);
+        mBinds += other.mBinds;
+        mSlowBinds += other.mSlowBinds;
+        mTotalBindNanos += other.mTotalBindNanos;
+        mMaxBindNanos = Math.max(mMaxBindNanos, other.mMaxBindNanos);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mFrameBuckets[i] = 0;
+        }
+        mFrames = 0;
+        mJankyFrames = 0;
+        mDroppedFrames = 0;
+        mTotalFrameNanos = 0;
+        mMaxFrameNanos = 0;
+        mBinds = 0;
+        mSlowBinds = 0;
+        mTotalBindNanos = 0;
+        mMaxBindNanos = 0;
+    }
+
+    /**
+     * @return a copy of the counts, which later frames don't change.
+     */
+    public FrameHistogram copy() {
+        FrameHistogram copy = new FrameHistogram(mFrameIntervalNanos, mSlowBindNanos);
+        copy.addAll(this);
+        return copy;
+    }
+
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    public int getFrameCount() {
+        return mFrames;
+    }
+
+    /**
+     * @return the frames of at least the millis, and under millis + 1; for the last bucket, of
+     * at least the millis.
+     */
+    public int getFrameCount(int millis) {
+        return mFrameBuckets[millis];
+    }
+
+    /**
+     * @return the frames that dropped at least one frame.
+     */
+    public int getJankyFrameCount() {
+        return mJankyFrames;
+    }
+
+    public int getDroppedFrameCount() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * @return the frame time under which the percentage of the frames were, in milliseconds
+     * rounded up, 0 if there are none.
+     */
+    public int getFramePercentile(int percent) {
+        if (mFrames == 0) {
+            return 0;
+        }
+        // The frames at or under the percentile, rounded up
+        long wanted = ((long) mFrames * percent + 99) / 100;
+        int counted = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counted += mFrameBuckets[i];
+            if (counted >= wanted && counted > 0) {
+                return i + 1;
+            }
+        }
+        return BUCKETS;
+    }
+
+    public long getAverageFrameNanos() {
+        return mFrames == 0 ? 0 : mTotalFrameNanos / mFrames;
+    }
+
+    public long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    public int getBindCount() {
+        return mBinds;
+    }
+
+    public int getSlowBindCount() {
+        return mSlowBinds;
+    }
+
+    public long getAverageBindNanos() {
+        return mBinds == 0 ? 0 : mTotalBindNanos / mBinds;
+    }
+
+    public long getMaxBindNanos() {
+        return mMaxBindNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mFrames + " frames, " + mJankyFrames + " janky, " + mDroppedFrames + " dropped, "
+                + "50% under " + getFramePercentile(50) + "ms, 90% under "
+                + getFramePercentile(90) + "ms, 99% under " + getFramePercentile(99) + "ms, max "
+                + mMaxFrameNanos / NANOS_PER_MILLI + "ms; " + mBinds + " binds, "
+                + mSlowBinds + " slow, average " + getAverageBindNanos() / 1000 + "us, max "
+                + mMaxBindNanos / 1000 + "us";
+    }
+}
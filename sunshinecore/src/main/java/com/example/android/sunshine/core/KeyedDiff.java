@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+
+/**
+ * The rows inserted, removed and changed between two versions of a list sorted by key, such as
+ * the forecast list sorted by date.
+ *
+ * Both versions are reduced to their keys and a hash of what each row shows.  A row whose key is
+ * in both and whose hash differs has changed; the rest were inserted or removed.  The lists are
+ * merged in a single pass, so the diff can be computed wherever the new rows are read, off the
+ * main thread, and only the events are dispatched on it.  Neighbouring events are coalesced into
+ * ranges.
+ */
+public final class KeyedDiff {
+
+    /**
+     * Receives the events, in an order where each position is valid after the events before it,
+     * like RecyclerView.Adapter's notifyItemRange methods expect.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    /**
+     * The keys and content hashes of one version of a list, in list order.
+     */
+    public static final class Rows {
+
+        public static final Rows EMPTY = new Rows(new long[0], new int[0]);
+
+        private final long[] mKeys;
+        private final int[] mHashes;
+        private final boolean mSorted;
+
+        /**
+         * @param keys   the keys, ascending for the diff to tell moves apart from changes; rows
+         *               with unsorted keys are all replaced
+         * @param hashes a hash of what each row shows
+         */
+        public Rows(long[] keys, int[] hashes) {
+            if (keys.length != hashes.length) {
+                throw new IllegalArgumentException("Error: " + keys.length + " keys, "
+                        + hashes.length + " hashes");
+            }
+            mKeys = keys.clone();
+            mHashes = hashes.clone();
+            mSorted = isAscending(mKeys);
+        }
+
+        private Rows(long[] keys, int[] hashes, boolean sorted) {
+            mKeys = keys;
+            mHashes = hashes;
+            mSorted = sorted;
+        }
+
+        private static boolean isAscending(long[] keys) {
+            for (int i = 1; i < keys.length; i++) {
+                if (keys[i] <= keys[i - 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int size() {
+            return mKeys.length;
+        }
+
+        public long getKey(int position) {
+            return mKeys[position];
+        }
+
+        public int getHash(int position) {
+            return mHashes[position];
+        }
+
+        /**
+         * @return the position of the row with the key, -1 if there is none.
+         */
+        public int indexOf(long key) {
+            if (mSorted) {
+                int position = Arrays.binarySearch(mKeys, key);
+                return position < 0 ? -1 : position;
+            }
+            for (int i = 0; i < mKeys.length; i++) {
+                if (mKeys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return these rows followed by the given ones, as when a page is appended.
+         */
+        public Rows append(Rows more) {
+            long[] keys = Arrays.copyOf(mKeys, mKeys.length + more.mKeys.length);
+            System.arraycopy(more.mKeys, 0, keys, mKeys.length, more.mKeys.length);
+            int[] hashes = Arrays.copyOf(mHashes, mHashes.length + more.mHashes.length);
+            System.arraycopy(more.mHashes, 0, hashes, mHashes.length, more.mHashes.length);
+            boolean sorted = mSorted && more.mSorted && (mKeys.length == 0
+                    || more.mKeys.length == 0 || more.mKeys[0] > mKeys[mKeys.length - 1]);
+            return new Rows(keys, hashes, sorted);
+        }
+    }
+
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int CHANGED = 2;
+
+    private final Rows mFrom;
+    private final Rows mTo;
+    // Triples of event type, position and count
+    private final int[] mEvents;
+    private final int mEventCount;
+
+    private KeyedDiff(Rows from, Rows to, int[] events, int eventCount) {
+        mFrom = from;
+        mTo = to;
+        mEvents = events;
+        mEventCount = eventCount;
+    }
+
+    /**
+     * @return the events turning the rows from into the rows to.
+     */
+    public static KeyedDiff compute(Rows from, Rows to) {
+        Builder builder = new Builder(from.size() + to.size());
+        if (!from.mSorted || !to.mSorted) {
+            builder.add(REMOVED, 0, from.size());
+            builder.add(INSERTED, 0, to.size());
+            return builder.build(from, to);
+        }
+
+        int oldIndex = 0;
+        int newIndex = 0;
+        // New positions count from the start, the rows past them are still the old ones.
+        while (oldIndex < from.size() || newIndex < to.size()) {
+            if (newIndex == to.size()
+                    || (oldIndex < from.size() && from.mKeys[oldIndex] < to.mKeys[newIndex])) {
+                builder.add(REMOVED, newIndex, 1);
+                oldIndex++;
+            } else if (oldIndex == from.size() || to.mKeys[newIndex] < from.mKeys[oldIndex]) {
+                builder.add(INSERTED, newIndex, 1);
+                newIndex++;
+            } else {
+                if (from.mHashes[oldIndex] != to.mHashes[newIndex]) {
+                    builder.add(CHANGED, newIndex, 1);
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        return builder.build(from, to);
+    }
+
+    /**
+     * @return the rows the events start from.
+     */
+    public Rows getFrom() {
+        return mFrom;
+    }
+
+    /**
+     * @return the rows the events lead to.
+     */
+    public Rows getTo() {
+        return mTo;
+    }
+
+    /**
+     * @return whether no row was inserted, removed or changed.
+     */
+    public boolean isEmpty() {
+        return mEventCount == 0;
+    }
+
+    public void dispatch(Callback callback) {
+        for (int i = 0; i < mEventCount; i += 3) {
+            int position = mEvents[i + 1];
+            int count = mEvents[i + 2];
+            switch (mEvents[i]) {
+                case INSERTED:
+                    callback.onInserted(position, count);
+                    break;
+                case REMOVED:
+                    callback.onRemoved(position, count);
+                    break;
+                default:
+                    callback.onChanged(position, count);
+            }
+        }
+    }
+
+    private static class Builder {
+        private int[] mEvents;
+        private int mEventCount;
+
+        Builder(int capacity) {
+            mEvents = new int[Math.min(capacity, 16) * 3];
+        }
+
+        void add(int type, int position, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (mEventCount > 0 && mEvents[mEventCount - 3] == type) {
+                int lastPosition = mEvents[mEventCount - 2];
+                int lastCount = mEvents[mEventCount - 1];
+                // Removals all happen at the same position, the rest at the one after the last.
+                if ((type == REMOVED && position == lastPosition)
+                        || (type != REMOVED && position == lastPosition + lastCount)) {
+                    mEvents[mEventCount - 1] = lastCount + count;
+                    return;
+                }
+            }
+            if (mEventCount == mEvents.length) {
+                mEvents = Arrays.copyOf(mEvents, Math.max(mEvents.length * 2, 3));
+            }
+            mEvents[mEventCount++] = type;
+            mEvents[mEventCount++] = position;
+            mEvents[mEventCount++] = count;
+        }
+
+        KeyedDiff build(Rows from, Rows to) {
+            return new KeyedDiff(from, to, mEvents, mEventCount);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+
+/**
+ * The local days of one time zone: which julian day a time falls on and when a day starts.
+ *
+ * This replaces android.text.format.Time, which had to be allocated, set and normalized for
+ * every date.  A LocalDays is immutable.  It looks the offset from UTC up once for the stretch
+ * of time around its creation that has no clock changes, which is where nearly every date the
+ * app handles falls, and asks the zone only for times outside of it.
+ */
+public final class LocalDays {
+
+    // How far from now the stretch with the cached offset is looked for, each way
+    private static final long SEARCH_LIMIT = 400 * DayMath.DAY_IN_MILLIS;
+    // Offset changes are looked for at this step, then narrowed down to the millisecond
+    private static final long SEARCH_STEP = 6 * 60 * 60 * 1000L;
+
+    private static volatile LocalDays sDefault;
+
+    private final TimeZone mZone;
+    // The offset in millis from UTC, in effect from mValidFrom up to mValidUntil
+    private final int mOffset;
+    private final long mValidFrom;
+    private final long mValidUntil;
+
+    private LocalDays(TimeZone zone, long now) {
+        mZone = zone;
+        mOffset = zone.getOffset(now);
+        mValidFrom = findPreviousChange(zone, now);
+        mValidUntil = findNextChange(zone, now);
+    }
+
+    /**
+     * @param now the time around which to cache the offset of the zone
+     * @return the local days of the zone.
+     */
+    public static LocalDays forZone(TimeZone zone, long now) {
+        // Our own copy, a TimeZone can be changed.
+        return new LocalDays((TimeZone) zone.clone(), now);
+    }
+
+    /**
+     * @return the local days of the default time zone, cached until the clocks next change or
+     * resetDefault() is called.
+     */
+    public static LocalDays getDefault() {
+        LocalDays days = sDefault;
+        long now = System.currentTimeMillis();
+        if (days == null || now < days.mValidFrom || now >= days.mValidUntil) {
+            // getDefault() returns a copy already.
+            days = new LocalDays(TimeZone.getDefault(), now);
+            sDefault = days;
+        }
+        return days;
+    }
+
+    /**
+     * Drops the cached default, for when the default time zone has changed.
+     */
+    public static void resetDefault() {
+        sDefault = null;
+    }
+
+    /**
+     * @return the id of the time zone.
+     */
+    public String getZoneId() {
+        return mZone.getID();
+    }
+
+    /**
+     * @return the offset in millis of the local time from UTC at the given time.
+     */
+    public int getOffset(long millis) {
+        if (millis >= mValidFrom && millis < mValidUntil) {
+            return mOffset;
+        }
+        return mZone.getOffset(millis);
+    }
+
+    /**
+     * @return the julian day the time falls on, locally.
+     */
+    public int getJulianDay(long millis) {
+        return DayMath.getJulianDay(millis + getOffset(millis), 0);
+    }
+
+    /**
+     * @return the first moment of the julian day, its local midnight.  When the clocks skip
+     * midnight, it is the moment they jump; when they skip the whole day, the moment they jump
+     * over it.
+     */
+    public long getStartOfDay(int julianDay) {
+        long localMidnight = (julianDay - DayMath.EPOCH_JULIAN_DAY) * DayMath.DAY_IN_MILLIS;
+        long midnight = localMidnight - mOffset;
+        // A day away from a change, no other offset can give an earlier midnight.
+        if (midnight - DayMath.DAY_IN_MILLIS >= mValidFrom && midnight < mValidUntil) {
+            return midnight;
+        }
+
+        // No local midnight is further than a day from the UTC one.  Clocks change at most once
+        // within that, so it's midnight with the offset before or with the one after.
+        int offsetBefore = mZone.getOffset(localMidnight - DayMath.DAY_IN_MILLIS);
+        int offsetAfter = mZone.getOffset(localMidnight + DayMath.DAY_IN_MILLIS);
+        long midnightBefore = localMidnight - offsetBefore;
+        long midnightAfter = localMidnight - offsetAfter;
+        boolean beforeValid = mZone.getOffset(midnightBefore) == offsetBefore;
+        boolean afterValid = mZone.getOffset(midnightAfter) == offsetAfter;
+        if (beforeValid && afterValid) {
+            // The clocks were turned back over midnight, it came twice.
+            return Math.min(midnightBefore, midnightAfter);
+        } else if (beforeValid) {
+            return midnightBefore;
+        } else if (afterValid) {
+            return midnightAfter;
+        }
+        // The clocks were turned forward over midnight, the day starts when they were.
+        return narrowDown(mZone, midnightAfter, midnightBefore, offsetBefore);
+    }
+
+    /**
+     * @return the start of the local day the time falls on.
+     */
+    public long normalize(long millis) {
+        return getStartOfDay(getJulianDay(millis));
+    }
+
+    /**
+     * @param month the month, 1 for January; months past December carry over into the next year
+     * @return the start of the first day of the month.
+     */
+    public long getStartOfMonth(int year, int month) {
+        return getStartOfDay(DayMath.getJulianDay(year, month, 1));
+    }
+
+    // The first moment after the given one with another offset, or the search limit.
+    private static long findNextChange(TimeZone zone, long from) {
+        int offset = zone.getOffset(from);
+        long last = from;
+        for (long next = from + SEARCH_STEP; next <= from + SEARCH_LIMIT; next += SEARCH_STEP) {
+            if (zone.getOffset(next) != offset) {
+                return narrowDown(zone, last, next, offset);
+            }
+            last = next;
+        }
+        return from + SEARCH_LIMIT;
+    }
+
+    // The first moment of the stretch with the offset of the given one, or the search limit.
+    private static long findPreviousChange(TimeZone zone, long from) {
+        int offset = zone.getOffset(from);
+        long last = from;
+        for (long previous = from - SEARCH_STEP; previous >= from - SEARCH_LIMIT;
+                previous -= SEARCH_STEP) {
+            if (zone.getOffset(previous) != offset) {
+                return narrowDown(zone, previous, last, zone.getOffset(previous));
+            }
+            last = previous;
+        }
+        return from - SEARCH_LIMIT;
+    }
+
+    // The first moment after low, up to high, with another offset than the one at low.
+    private static long narrowDown(TimeZone zone, long low, long high, int offsetAtLow) {
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (zone.getOffset(middle) == offsetAtLow) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats temperatures, wind, pressure and humidity for one locale, into the caller's
+ * StringBuilder, without allocating.
+ *
+ * The formats are the app's string resources, parsed once.  Temperatures are shown in whole
+ * degrees, so the label of every whole degree a forecast can reach, in either unit, is built
+ * up front and formatting one is a rounding and a copy.  Wind directions come from the
+ * compass table in Units.  Build a new formatter when the locale changes.
+ */
+public final class ReadingFormatter {
+
+    // Whole degrees with a prebuilt label, from Antarctic lows to desert highs in Fahrenheit
+    static final int MIN_TABLE_DEGREES = -150;
+    static final int MAX_TABLE_DEGREES = 150;
+
+    private final Locale mLocale;
+    private final FormatTemplate mTemperature;
+    private final FormatTemplate mWindKmh;
+    private final FormatTemplate mWindMph;
+    private final FormatTemplate mPressure;
+    private final FormatTemplate mHumidity;
+    private final char[][] mTemperatureLabels;
+
+    /**
+     * @param temperatureFormat e.g. "%1.0f\u00B0"
+     * @param windKmhFormat e.g. "%1$1.0f km/h %2$s", speed then direction
+     * @param windMphFormat e.g. "%1$1.0f mph %2$s"
+     * @param pressureFormat e.g. "%1.0f hPa"
+     * @param humidityFormat e.g. "%1.0f %%"
+     */
+    public ReadingFormatter(Locale locale, String temperatureFormat, String windKmhFormat,
+            String windMphFormat, String pressureFormat, String humidityFormat) {
+        mLocale = locale;
+        char zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        mTemperature = new FormatTemplate(temperatureFormat, locale, zeroDigit);
+        mWindKmh = new FormatTemplate(windKmhFormat, locale, zeroDigit);
+        mWindMph = new FormatTemplate(windMphFormat, locale, zeroDigit);
+        mPressure = new FormatTemplate(pressureFormat, locale, zeroDigit);
+        mHumidity = new FormatTemplate(humidityFormat, locale, zeroDigit);
+
+        mTemperatureLabels = new char[MAX_TABLE_DEGREES - MIN_TABLE_DEGREES + 1][];
+        StringBuilder label = new StringBuilder();
+        for (int degrees = MIN_TABLE_DEGREES; degrees <= MAX_TABLE_DEGREES; degrees++) {
+            label.setLength(0);
+            mTemperature.append(label, degrees, null);
+            mTemperatureLabels[degrees - MIN_TABLE_DEGREES] = label.toString().toCharArray();
+        }
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Appends the temperature, converted from Celsius unless metric.
+     */
+    public void appendTemperature(StringBuilder out, double celsius, boolean metric) {
+        double temperature = metric ? celsius : Units.celsiusToFahrenheit(celsius);
+        double rounded = Math.rint(temperature);
+        // Only whole degrees are in the table.  Halves round away from zero, which rint
+        // doesn't, and anything from -0.5 to -0 is "-0", which the table has no room for.
+        boolean negativeZero = rounded == 0 && Double.doubleToRawLongBits(temperature) < 0;
+        if (Math.abs(temperature - rounded) != .5 && !negativeZero
+                && rounded >= MIN_TABLE_DEGREES && rounded <= MAX_TABLE_DEGREES) {
+            out.append(mTemperatureLabels[(int) rounded - MIN_TABLE_DEGREES]);
+        } else {
+            mTemperature.append(out, temperature, null);
+        }
+    }
+
+    /**
+     * Appends the wind speed, in km/h or mph, and its compass direction.
+     */
+    public void appendWind(StringBuilder out, float kmh, float degrees, boolean metric) {
+        String direction = Units.getCompassDirection(degrees);
+        if (metric) {
+            mWindKmh.append(out, kmh, direction);
+        } else {
+            mWindMph.append(out, Units.kmhToMph(kmh), direction);
+        }
+    }
+
+    public void appendPressure(StringBuilder out, float hpa) {
+        mPressure.append(out, hpa, null);
+    }
+
+    public void appendHumidity(StringBuilder out, float percent) {
+        mHumidity.append(out, percent, null);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Unit conversions for the values the sync stores: Celsius, km/h and degrees from north.
+ */
+public final class Units {
+
+    private static final float KMH_TO_MPH = .621371192237334f;
+
+    // Directions for the eight 45 degree sectors, starting with the one centered on north.
+    private static final String[] COMPASS_DIRECTIONS = {
+            "N", "NE", "E", "SE", "S", "SW", "W", "NW"
+    };
+
+    /**
+     * What getCompassDirection returns for a direction that isn't a number.
+     */
+    public static final String UNKNOWN_DIRECTION = "Unknown";
+
+    private Units() {
+    }
+
+    public static double celsiusToFahrenheit(double celsius) {
+        return (celsius * 1.8) + 32;
+    }
+
+    public static float kmhToMph(float kmh) {
+        return KMH_TO_MPH * kmh;
+    }
+
+    /**
+     * @param degrees wind direction in degrees, 0 being north
+     * @return the compass direction, e.g. "NW".  Anything from 337.5 up, and anything below
+     * 22.5, is north.
+     */
+    public static String getCompassDirection(float degrees) {
+        if (degrees != degrees) {
+            return UNKNOWN_DIRECTION;
+        }
+        if (degrees < 0 || degrees >= 337.5) {
+            return COMPASS_DIRECTIONS[0];
+        }
+        return COMPASS_DIRECTIONS[(int) ((degrees + 22.5) / 45)];
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * The data item paths and keys the phone and the watch face talk through.
+ */
+public final class WearableProtocol {
+
+    /**
+     * Put by the watch face to ask the phone for the weather.
+     */
+    public static final String PATH_WEATHER_REQUEST = "/weather";
+
+    /**
+     * Put by the phone with today's weather, under the KEY_ keys below.
+     */
+    public static final String PATH_WEATHER_INFO = "/weather-info";
+
+    // A random value, so every put is a change even when the weather isn't.
+    public static final String KEY_UUID = "uuid";
+    // The high and low temperatures, formatted in the phone's units
+    public static final String KEY_HIGH = "high";
+    public static final String KEY_LOW = "low";
+    // The OpenWeatherMap condition code, an int
+    public static final String KEY_WEATHER_ID = "weatherId";
+
+    private WearableProtocol() {
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Which pictures go with an OpenWeatherMap condition code, shared by the phone and the watch.
+ *
+ * The groups are built once into an array indexed by code.  Each app maps a group to its own
+ * drawables, so the codes a picture covers are written down here only.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int FIRST_CODE = 200;
+    public static final int LAST_CODE = 962;
+
+    /**
+     * The pictures for a group of codes.
+     */
+    public enum Group {
+        STORM("storm",
+                "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg"),
+        LIGHT_RAIN("light_rain",
+                "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg"),
+        RAIN("rain",
+                "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg"),
+        SNOW("snow",
+                "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG"),
+        FOG("fog",
+                "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg"),
+        // Tornado; the same icon and art as a storm, with a photo of its own
+        TORNADO("storm",
+                "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg"),
+        CLEAR("clear",
+                "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg"),
+        LIGHT_CLOUDS("light_clouds",
+                "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg"),
+        CLOUDS("clouds",
+                "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"),
+        // No pictures at all
+        NONE(null, null);
+
+        private final String mArtName;
+        private final String mImageUrl;
+
+        Group(String artName, String imageUrl) {
+            mArtName = artName;
+            mImageUrl = imageUrl;
+        }
+
+        /**
+         * @return the name of the art in art packs, null if there is none.
+         */
+        public String getArtName() {
+            return mArtName;
+        }
+
+        /**
+         * @return url of a photo of the condition, null if there is none.
+         */
+        public String getImageUrl() {
+            return mImageUrl;
+        }
+    }
+
+    private static final Group[] sGroups = buildGroups();
+
+    private WeatherConditions() {
+    }
+
+    private static Group[] buildGroups() {
+        Group[] groups = new Group[LAST_CODE - FIRST_CODE + 1];
+        fill(groups, FIRST_CODE, LAST_CODE, Group.NONE);
+        fill(groups, 200, 232, Group.STORM);
+        fill(groups, 300, 321, Group.LIGHT_RAIN);
+        fill(groups, 500, 504, Group.RAIN);
+        fill(groups, 511, 511, Group.SNOW);
+        fill(groups, 520, 531, Group.RAIN);
+        fill(groups, 600, 622, Group.SNOW);
+        // 761 (dust) is fog.  The old range checks also listed it next to the tornado, but
+        // after the fog range had already matched it, so fog is what it always showed.
+        // 762 (volcanic ash) and 771 (squalls) have never had pictures.
+        fill(groups, 701, 761, Group.FOG);
+        fill(groups, 781, 781, Group.TORNADO);
+        fill(groups, 800, 800, Group.CLEAR);
+        fill(groups, 801, 801, Group.LIGHT_CLOUDS);
+        fill(groups, 802, 804, Group.CLOUDS);
+        return groups;
+    }
+
+    private static void fill(Group[] groups, int firstCode, int lastCode, Group group) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            groups[code - FIRST_CODE] = group;
+        }
+    }
+
+    /**
+     * @return the group of the code, NONE if the code is unknown or has no pictures.
+     */
+    public static Group getGroup(int weatherId) {
+        if (weatherId < FIRST_CODE || weatherId > LAST_CODE) {
+            return Group.NONE;
+        }
+        return sGroups[weatherId - FIRST_CODE];
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class DayMathTest {
+
+    private static final String[] ZONES = {
+            "UTC", "America/Los_Angeles", "Europe/Rome", "Asia/Kolkata", "Australia/Lord_Howe",
+            "Pacific/Kiritimati", "Pacific/Pago_Pago"
+    };
+
+    // The julian day of the local date, counted by the calendar itself.
+    private static int calendarJulianDay(Calendar calendar) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.clear();
+        utc.set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH));
+        return (int) Math.floor(utc.getTimeInMillis() / (double) DayMath.DAY_IN_MILLIS)
+                + DayMath.EPOCH_JULIAN_DAY;
+    }
+
+    @Test
+    public void knownDays() {
+        assertEquals(2440588, DayMath.getJulianDay(0, 0));
+        assertEquals(2440587, DayMath.getJulianDay(-1, 0));
+        assertEquals(2440587, DayMath.getJulianDay(0, -1));
+        // TestUtilities.TEST_DATE in the app's tests, 2014-12-20 UTC
+        assertEquals(2457012, DayMath.getJulianDay(1419033600000L, 0));
+    }
+
+    @Test
+    public void matchesCalendarHourlyAcrossYears() {
+        // Every hour of 1969 to 2030 in zones with DST, half hour and far off offsets.
+        long start = -365 * DayMath.DAY_IN_MILLIS;
+        long end = 61 * 365 * DayMath.DAY_IN_MILLIS;
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = Calendar.getInstance(zone);
+            for (long millis = start; millis < end; millis += 60 * 60 * 1000L) {
+                calendar.setTimeInMillis(millis);
+                long gmtoff = zone.getOffset(millis) / 1000;
+                assertEquals("Error: Wrong day in " + id + " at " + millis,
+                        calendarJulianDay(calendar), DayMath.getJulianDay(millis, gmtoff));
+            }
+        }
+    }
+
+    @Test
+    public void startOfDayRoundTrips() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = Calendar.getInstance(zone);
+            for (int day = DayMath.EPOCH_JULIAN_DAY - 400;
+                    day < DayMath.EPOCH_JULIAN_DAY + 22000; day++) {
+                // The offset at midnight, which on a DST day differs from the one at noon.
+                long guess = DayMath.getStartOfJulianDay(day, zone.getRawOffset() / 1000);
+                long gmtoff = zone.getOffset(guess) / 1000;
+                long midnight = DayMath.getStartOfJulianDay(day, gmtoff);
+                // Unless the clocks jump over midnight that day
+                if (zone.getOffset(midnight) == gmtoff * 1000) {
+                    assertEquals(day, DayMath.getJulianDay(midnight, gmtoff));
+                    calendar.setTimeInMillis(midnight);
+                    assertEquals("Error: Not midnight in " + id + " on " + day,
+                            0, calendar.get(Calendar.HOUR_OF_DAY) * 60
+                                    + calendar.get(Calendar.MINUTE));
+                }
+            }
+        }
+    }
+}
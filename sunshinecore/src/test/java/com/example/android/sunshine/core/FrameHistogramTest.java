@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameHistogramTest {
+
+    private static final long MILLI = 1000000L;
+    // 60Hz
+    private static final long INTERVAL = 16666667L;
+
+    private static FrameHistogram newHistogram() {
+        return new FrameHistogram(INTERVAL, 2 * MILLI);
+    }
+
+    @Test
+    public void steadyFramesAreNotJanky() {
+        FrameHistogram histogram = newHistogram();
+        for (int i = 0; i < 100; i++) {
+            // A little early or late
+            histogram.addFrame(INTERVAL + (i % 2 == 0 ? -MILLI : MILLI));
+        }
+        assertEquals(100, histogram.getFrameCount());
+        assertEquals(0, histogram.getJankyFrameCount());
+        assertEquals(0, histogram.getDroppedFrameCount());
+        assertEquals(50, histogram.getFrameCount(15));
+        assertEquals(50, histogram.getFrameCount(17));
+        assertEquals(INTERVAL, histogram.getAverageFrameNanos());
+    }
+
+    @Test
+    public void droppedFrames() {
+        FrameHistogram histogram = newHistogram();
+        histogram.addFrame(INTERVAL);
+        // Two vsyncs, one dropped
+        histogram.addFrame(2 * INTERVAL);
+        // Four vsyncs, three dropped
+        histogram.addFrame(4 * INTERVAL + MILLI);
+        assertEquals(3, histogram.getFrameCount());
+        assertEquals(2, histogram.getJankyFrameCount());
+        assertEquals(4, histogram.getDroppedFrameCount());
+        assertEquals(4 * INTERVAL + MILLI, histogram.getMaxFrameNanos());
+    }
+
+    @Test
+    public void percentiles() {
+        FrameHistogram histogram = newHistogram();
+        assertEquals(0, histogram.getFramePercentile(50));
+        for (int i = 0; i < 90; i++) {
+            histogram.addFrame(10 * MILLI);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.addFrame(30 * MILLI);
+        }
+        histogram.addFrame(500 * MILLI);
+        assertEquals(11, histogram.getFramePercentile(50));
+        assertEquals(11, histogram.getFramePercentile(90));
+        assertEquals(31, histogram.getFramePercentile(99));
+        // Past the last bucket
+        assertEquals(FrameHistogram.BUCKETS, histogram.getFramePercentile(100));
+        assertEquals(1, histogram.getFrameCount(FrameHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void slowBinds() {
+        FrameHistogram histogram = newHistogram();
+        histogram.addBind(MILLI);
+        histogram.addBind(2 * MILLI);
+        histogram.addBind(5 * MILLI);
+        assertEquals(3, histogram.getBindCount());
+        assertEquals(1, histogram.getSlowBindCount());
+        assertEquals(5 * MILLI, histogram.getMaxBindNanos());
+        assertEquals(8 * MILLI / 3, histogram.getAverageBindNanos());
+    }
+
+    @Test
+    public void sessionsAdded() {
+        FrameHistogram total = newHistogram();
+        FrameHistogram session = newHistogram();
+        session.addFrame(2 * INTERVAL);
+        session.addBind(3 * MILLI);
+        FrameHistogram copy = session.copy();
+        total.addAll(session);
+        total.addAll(session);
+        session.reset();
+        assertEquals(0, session.getFrameCount());
+        assertEquals(0, session.getFrameCount(33));
+        assertEquals(2, total.getFrameCount());
+        assertEquals(2, total.getDroppedFrameCount());
+        assertEquals(2, total.getSlowBindCount());
+        assertEquals(2, total.getFrameCount(33));
+        assertEquals(1, copy.getFrameCount());
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedDiffTest {
+
+    // Applies the events to a copy of the old rows, the way a RecyclerView would, and counts
+    // the rows they touch.
+    private static class Recorder implements KeyedDiff.Callback {
+        final List<Long> keys = new ArrayList<Long>();
+        final List<Integer> hashes = new ArrayList<Integer>();
+        final List<String> events = new ArrayList<String>();
+        int inserted;
+        int removed;
+        int changed;
+        private final KeyedDiff.Rows mTo;
+
+        Recorder(KeyedDiff.Rows from, KeyedDiff.Rows to) {
+            for (int i = 0; i < from.size(); i++) {
+                keys.add(from.getKey(i));
+                hashes.add(from.getHash(i));
+            }
+            mTo = to;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("+" + position + "," + count);
+            inserted += count;
+            assertTrue(position >= 0 && position <= keys.size());
+            for (int i = 0; i < count; i++) {
+                keys.add(position + i, mTo.getKey(position + i));
+                hashes.add(position + i, mTo.getHash(position + i));
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("-" + position + "," + count);
+            removed += count;
+            assertTrue(position >= 0 && position + count <= keys.size());
+            for (int i = 0; i < count; i++) {
+                keys.remove(position);
+                hashes.remove(position);
+            }
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            events.add("*" + position + "," + count);
+            changed += count;
+            assertTrue(position >= 0 && position + count <= keys.size());
+            for (int i = position; i < position + count; i++) {
+                assertEquals(mTo.getKey(i), (long) keys.get(i));
+                hashes.set(i, mTo.getHash(i));
+            }
+        }
+
+        void assertReached() {
+            assertEquals(mTo.size(), keys.size());
+            for (int i = 0; i < mTo.size(); i++) {
+                assertEquals(mTo.getKey(i), (long) keys.get(i));
+                assertEquals(mTo.getHash(i), (int) hashes.get(i));
+            }
+        }
+    }
+
+    private static KeyedDiff.Rows rows(long[] keys, int[] hashes) {
+        return new KeyedDiff.Rows(keys, hashes);
+    }
+
+    private static Recorder apply(KeyedDiff.Rows from, KeyedDiff.Rows to) {
+        KeyedDiff diff = KeyedDiff.compute(from, to);
+        Recorder recorder = new Recorder(from, to);
+        diff.dispatch(recorder);
+        recorder.assertReached();
+        return recorder;
+    }
+
+    @Test
+    public void nothingChanged() {
+        KeyedDiff.Rows rows = rows(new long[]{1, 2, 3}, new int[]{10, 20, 30});
+        KeyedDiff diff = KeyedDiff.compute(rows, rows(new long[]{1, 2, 3},
+                new int[]{10, 20, 30}));
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void oneDayChanged() {
+        Recorder recorder = apply(rows(new long[]{1, 2, 3}, new int[]{10, 20, 30}),
+                rows(new long[]{1, 2, 3}, new int[]{10, 21, 30}));
+        assertEquals("[*1,1]", recorder.events.toString());
+    }
+
+    @Test
+    public void dayRolledOver() {
+        // Yesterday dropped off the top, a new day came in at the bottom.
+        Recorder recorder = apply(rows(new long[]{1, 2, 3, 4}, new int[]{10, 20, 30, 40}),
+                rows(new long[]{2, 3, 4, 5}, new int[]{20, 30, 40, 50}));
+        assertEquals("[-0,1, +3,1]", recorder.events.toString());
+    }
+
+    @Test
+    public void rangesCoalesced() {
+        Recorder recorder = apply(
+                rows(new long[]{1, 2, 3, 4, 5, 6}, new int[]{1, 2, 3, 4, 5, 6}),
+                rows(new long[]{4, 5, 6, 7, 8}, new int[]{0, 0, 6, 7, 8}));
+        assertEquals("[-0,3, *0,2, +3,2]", recorder.events.toString());
+    }
+
+    @Test
+    public void fromAndToEmpty() {
+        KeyedDiff.Rows rows = rows(new long[]{1, 2}, new int[]{1, 2});
+        assertEquals("[+0,2]", apply(KeyedDiff.Rows.EMPTY, rows).events.toString());
+        assertEquals("[-0,2]", apply(rows, KeyedDiff.Rows.EMPTY).events.toString());
+        assertTrue(KeyedDiff.compute(KeyedDiff.Rows.EMPTY, KeyedDiff.Rows.EMPTY).isEmpty());
+    }
+
+    @Test
+    public void unsortedReplaced() {
+        Recorder recorder = apply(rows(new long[]{1, 2, 3}, new int[]{1, 2, 3}),
+                rows(new long[]{3, 2, 1}, new int[]{3, 2, 1}));
+        assertEquals("[-0,3, +0,3]", recorder.events.toString());
+    }
+
+    @Test
+    public void appendedPages() {
+        KeyedDiff.Rows first = rows(new long[]{1, 2}, new int[]{1, 2});
+        KeyedDiff.Rows all = first.append(rows(new long[]{3, 4}, new int[]{3, 4}));
+        assertEquals(4, all.size());
+        assertEquals(4, all.getKey(3));
+        assertEquals("[+2,2]", apply(first, all).events.toString());
+        // A page starting before the end isn't sorted any more.
+        KeyedDiff.Rows overlapping = first.append(rows(new long[]{2}, new int[]{5}));
+        assertEquals("[-0,2, +0,3]", apply(first, overlapping).events.toString());
+    }
+
+    @Test
+    public void indexOf() {
+        KeyedDiff.Rows sorted = rows(new long[]{2, 4, 6}, new int[]{0, 0, 0});
+        assertEquals(1, sorted.indexOf(4));
+        assertEquals(-1, sorted.indexOf(5));
+        KeyedDiff.Rows unsorted = rows(new long[]{6, 2, 4}, new int[]{0, 0, 0});
+        assertEquals(2, unsorted.indexOf(4));
+        assertEquals(-1, unsorted.indexOf(7));
+    }
+
+    @Test
+    public void rowsAreCopied() {
+        long[] keys = {1, 2};
+        int[] hashes = {1, 2};
+        KeyedDiff.Rows rows = rows(keys, hashes);
+        keys[0] = 5;
+        hashes[1] = 7;
+        assertEquals(1, rows.getKey(0));
+        assertEquals(2, rows.getHash(1));
+    }
+
+    @Test
+    public void randomEdits() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            KeyedDiff.Rows from = randomRows(random);
+            KeyedDiff.Rows to = randomRows(random);
+            Recorder recorder = apply(from, to);
+
+            // Every row inserted, removed or changed is one that really was.
+            int common = 0;
+            int changed = 0;
+            for (int i = 0; i < from.size(); i++) {
+                for (int j = 0; j < to.size(); j++) {
+                    if (from.getKey(i) == to.getKey(j)) {
+                        common++;
+                        if (from.getHash(i) != to.getHash(j)) {
+                            changed++;
+                        }
+                    }
+                }
+            }
+            assertEquals(from.size() - common, recorder.removed);
+            assertEquals(to.size() - common, recorder.inserted);
+            assertEquals(changed, recorder.changed);
+        }
+    }
+
+    private static KeyedDiff.Rows randomRows(Random random) {
+        int size = random.nextInt(30);
+        long[] keys = new long[size];
+        int[] hashes = new int[size];
+        long key = random.nextInt(5);
+        for (int i = 0; i < size; i++) {
+            key += 1 + random.nextInt(3);
+            keys[i] = key;
+            hashes[i] = random.nextInt(3);
+        }
+        return rows(keys, hashes);
+    }
+}
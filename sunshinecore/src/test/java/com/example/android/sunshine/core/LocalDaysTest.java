@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LocalDaysTest {
+
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+
+    // 2015-01-01 UTC, where the offsets are cached from in most tests
+    private static final long NOW = 1420070400000L;
+
+    private static final String[] DST_ZONES = {
+            "America/Los_Angeles", "America/Sao_Paulo", "America/Havana", "Europe/Rome",
+            "Europe/London", "Asia/Tehran", "Australia/Lord_Howe", "Pacific/Chatham",
+            "Pacific/Apia"
+    };
+
+    // 2000-01-01 to 2030-12-31, the julian days checked in every zone
+    private static final int FIRST_DAY = DayMath.getJulianDay(2000, 1, 1);
+    private static final int LAST_DAY = DayMath.getJulianDay(2030, 12, 31);
+
+    private static int calendarJulianDay(Calendar calendar, long millis) {
+        calendar.setTimeInMillis(millis);
+        return DayMath.getJulianDay(calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    @Test
+    public void datesMatchCalendar() {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.clear();
+        utc.set(1600, Calendar.JANUARY, 1);
+        int firstDay = DayMath.getJulianDay(utc.getTimeInMillis(), 0);
+        assertEquals(firstDay, DayMath.getJulianDay(1600, 1, 1));
+        // Every day of the Gregorian calendar's 1600 to 2400, both ways
+        for (int day = firstDay; day < firstDay + 800 * 365; day++) {
+            utc.setTimeInMillis(DayMath.getStartOfJulianDay(day, 0));
+            int year = utc.get(Calendar.YEAR);
+            int month = utc.get(Calendar.MONTH) + 1;
+            int dayOfMonth = utc.get(Calendar.DAY_OF_MONTH);
+            assertEquals(day, DayMath.getJulianDay(year, month, dayOfMonth));
+            assertEquals(year, DayMath.getYear(day));
+            assertEquals(month, DayMath.getMonth(day));
+            assertEquals(dayOfMonth, DayMath.getDayOfMonth(day));
+            assertEquals(year * 100 + month, DayMath.getYearMonth(day));
+        }
+    }
+
+    @Test
+    public void knownDates() {
+        assertEquals(DayMath.EPOCH_JULIAN_DAY, DayMath.getJulianDay(1970, 1, 1));
+        // TestUtilities.TEST_DATE in the app's tests
+        assertEquals(2457012, DayMath.getJulianDay(2014, 12, 20));
+        assertEquals(2451604, DayMath.getJulianDay(2000, 2, 29));
+        assertEquals(2000, DayMath.getYear(2451604));
+        assertEquals(2, DayMath.getMonth(2451604));
+        assertEquals(29, DayMath.getDayOfMonth(2451604));
+        // Before the epoch and before year 0
+        assertEquals(196912, DayMath.getYearMonth(DayMath.EPOCH_JULIAN_DAY - 1));
+        assertEquals(-1, DayMath.getYear(DayMath.getJulianDay(-1, 12, 31)));
+        assertEquals(12, DayMath.getMonth(DayMath.getJulianDay(-1, 12, 31)));
+        assertEquals(31, DayMath.getDayOfMonth(DayMath.getJulianDay(-1, 12, 31)));
+    }
+
+    @Test
+    public void monthsCarryOver() {
+        assertEquals(DayMath.getJulianDay(2015, 1, 1), DayMath.getJulianDay(2014, 13, 1));
+        assertEquals(DayMath.getJulianDay(2014, 12, 1), DayMath.getJulianDay(2015, 0, 1));
+        assertEquals(DayMath.getJulianDay(2013, 1, 1), DayMath.getJulianDay(2015, -23, 1));
+        assertEquals(DayMath.getJulianDay(2017, 3, 1), DayMath.getJulianDay(2015, 27, 1));
+        // Days past the end of the month carry over too
+        assertEquals(DayMath.getJulianDay(2015, 3, 1), DayMath.getJulianDay(2015, 2, 29));
+    }
+
+    @Test
+    public void startOfDayInEveryZone() {
+        // The start of a day is its first moment: on it or after it, and the moment before it
+        // on an earlier day, counted by the calendar.
+        for (String id : TimeZone.getAvailableIDs()) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            LocalDays days = LocalDays.forZone(zone, NOW);
+            Calendar calendar = Calendar.getInstance(zone);
+            for (int day = FIRST_DAY; day <= LAST_DAY; day++) {
+                long start = days.getStartOfDay(day);
+                String message = "Error: Wrong start of " + day + " in " + id;
+                assertTrue(message, calendarJulianDay(calendar, start) >= day);
+                assertTrue(message, calendarJulianDay(calendar, start - 1) < day);
+                // It's midnight, unless the clocks jumped over it then.
+                calendar.setTimeInMillis(start);
+                if (zone.getOffset(start) == zone.getOffset(start - 1)) {
+                    assertEquals(message, 0, calendar.get(Calendar.HOUR_OF_DAY) * 60
+                            + calendar.get(Calendar.MINUTE));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void julianDayInEveryZone() {
+        for (String id : TimeZone.getAvailableIDs()) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            LocalDays days = LocalDays.forZone(zone, NOW);
+            Calendar calendar = Calendar.getInstance(zone);
+            long start = DayMath.getStartOfJulianDay(FIRST_DAY, 0);
+            long end = DayMath.getStartOfJulianDay(LAST_DAY, 0);
+            // Every 7 hours and a minute, to hit every hour of the day and the half hours
+            for (long millis = start; millis < end; millis += 7 * HOUR_IN_MILLIS + 60000) {
+                assertEquals("Error: Wrong day in " + id + " at " + millis,
+                        calendarJulianDay(calendar, millis), days.getJulianDay(millis));
+            }
+        }
+    }
+
+    @Test
+    public void aroundTheClockChanges() {
+        // Every minute around each change of 2014 and 2015, cached from either side of it
+        for (String id : DST_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = Calendar.getInstance(zone);
+            long from = DayMath.getStartOfJulianDay(DayMath.getJulianDay(2014, 1, 1), 0);
+            long to = DayMath.getStartOfJulianDay(DayMath.getJulianDay(2016, 1, 1), 0);
+            for (long hour = from; hour < to; hour += HOUR_IN_MILLIS) {
+                if (zone.getOffset(hour) == zone.getOffset(hour + HOUR_IN_MILLIS)) {
+                    continue;
+                }
+                long[] cachedAt = {hour - 1, hour, hour + HOUR_IN_MILLIS, hour + 30 * 60000};
+                for (long now : cachedAt) {
+                    LocalDays days = LocalDays.forZone(zone, now);
+                    for (long millis = hour - 26 * HOUR_IN_MILLIS;
+                            millis < hour + 26 * HOUR_IN_MILLIS; millis += 60000) {
+                        String message = "Error: Wrong day in " + id + " at " + millis
+                                + ", cached at " + now;
+                        assertEquals(message, zone.getOffset(millis), days.getOffset(millis));
+                        int day = calendarJulianDay(calendar, millis);
+                        assertEquals(message, day, days.getJulianDay(millis));
+                        long start = days.normalize(millis);
+                        assertEquals(message, days.getStartOfDay(day), start);
+                        assertTrue(message, start <= millis);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void midnightSkipped() {
+        // Brazil moved its clocks forward at midnight, the day started at one.
+        LocalDays days = LocalDays.forZone(TimeZone.getTimeZone("America/Sao_Paulo"), NOW);
+        long start = days.getStartOfDay(DayMath.getJulianDay(2014, 10, 19));
+        // 00:00 at -3, 01:00 at -2
+        assertEquals(1413687600000L, start);
+        assertEquals(-2 * HOUR_IN_MILLIS, days.getOffset(start));
+        assertEquals(-3 * HOUR_IN_MILLIS, days.getOffset(start - 1));
+    }
+
+    @Test
+    public void midnightRepeated() {
+        // And back, from midnight to 23:00 the day before, so that day had two midnights.
+        LocalDays days = LocalDays.forZone(TimeZone.getTimeZone("America/Sao_Paulo"), NOW);
+        int day = DayMath.getJulianDay(2015, 2, 22);
+        long start = days.getStartOfDay(day);
+        // 00:00 at -3, the midnight at -2 was turned back before the day began
+        assertEquals(1424574000000L, start);
+        assertEquals(day - 1, days.getJulianDay(start - 1));
+    }
+
+    @Test
+    public void daySkipped() {
+        // Samoa skipped 2011-12-30, going over to the other side of the date line.
+        LocalDays days = LocalDays.forZone(TimeZone.getTimeZone("Pacific/Apia"), NOW);
+        int skipped = DayMath.getJulianDay(2011, 12, 30);
+        long start = days.getStartOfDay(skipped);
+        assertEquals(days.getStartOfDay(skipped + 1), start);
+        assertEquals(skipped + 1, days.getJulianDay(start));
+        assertEquals(skipped - 1, days.getJulianDay(start - 1));
+    }
+
+    @Test
+    public void startOfMonth() {
+        LocalDays days = LocalDays.forZone(TimeZone.getTimeZone("Europe/Rome"), NOW);
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Europe/Rome"));
+        for (int year = 1990; year < 2040; year++) {
+            for (int month = 1; month <= 12; month++) {
+                calendar.clear();
+                calendar.set(year, month - 1, 1);
+                assertEquals(calendar.getTimeInMillis(), days.getStartOfMonth(year, month));
+            }
+        }
+        assertEquals(days.getStartOfMonth(2015, 1), days.getStartOfMonth(2014, 13));
+    }
+
+    @Test
+    public void immutable() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Rome");
+        LocalDays days = LocalDays.forZone(zone, NOW);
+        long summer = 1435708800000L;
+        int offset = days.getOffset(summer);
+        zone.setRawOffset(0);
+        assertEquals(offset, days.getOffset(summer));
+        assertEquals("Europe/Rome", days.getZoneId());
+    }
+
+    @Test
+    public void defaultIsCached() {
+        LocalDays days = LocalDays.getDefault();
+        assertSame(days, LocalDays.getDefault());
+        assertEquals(TimeZone.getDefault().getID(), days.getZoneId());
+        LocalDays.resetDefault();
+        assertNotSame(days, LocalDays.getDefault());
+    }
+}
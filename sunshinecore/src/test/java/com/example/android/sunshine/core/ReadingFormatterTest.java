@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadingFormatterTest {
+
+    // The app's format resources
+    static final String TEMPERATURE_FORMAT = "%1.0f\u00B0";
+    static final String WIND_KMH_FORMAT = "%1$1.0f km/h %2$s";
+    static final String WIND_MPH_FORMAT = "%1$1.0f mph %2$s";
+    static final String PRESSURE_FORMAT = "%1.0f hPa";
+    static final String HUMIDITY_FORMAT = "%1.0f %%";
+
+    static ReadingFormatter createFormatter(Locale locale) {
+        return new ReadingFormatter(locale, TEMPERATURE_FORMAT, WIND_KMH_FORMAT,
+                WIND_MPH_FORMAT, PRESSURE_FORMAT, HUMIDITY_FORMAT);
+    }
+
+    private static String temperature(ReadingFormatter formatter, double celsius,
+            boolean metric) {
+        StringBuilder out = new StringBuilder();
+        formatter.appendTemperature(out, celsius, metric);
+        return out.toString();
+    }
+
+    // What Utility.formatTemperature returned before the formatter.
+    private static String legacyTemperature(Locale locale, double celsius, boolean metric) {
+        double temperature = metric ? celsius : (celsius * 1.8) + 32;
+        return String.format(locale, TEMPERATURE_FORMAT, temperature);
+    }
+
+    private static void checkTemperature(ReadingFormatter formatter, double celsius) {
+        Locale locale = formatter.getLocale();
+        assertEquals("Error: Wrong temperature for " + celsius,
+                legacyTemperature(locale, celsius, true), temperature(formatter, celsius, true));
+        assertEquals("Error: Wrong Fahrenheit for " + celsius,
+                legacyTemperature(locale, celsius, false), temperature(formatter, celsius, false));
+    }
+
+    @Test
+    public void temperaturesMatchStringFormat() {
+        ReadingFormatter formatter = createFormatter(Locale.US);
+        // Every hundredth of a degree the database stores, well past the table
+        for (int hundredths = -15000; hundredths <= 15000; hundredths++) {
+            checkTemperature(formatter, hundredths / 100.0);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            checkTemperature(formatter, (random.nextDouble() - .5) * 400);
+        }
+        double[] edges = {
+                0.5, -0.5, 1.5, -1.5, 0.49999999999999994, -0.49999999999999994, -0.0, 0.0,
+                -1e-9, 1e-9, 149.5, -150.5, 1e14, -1e14, 1e20, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE
+        };
+        for (double edge : edges) {
+            checkTemperature(formatter, edge);
+        }
+    }
+
+    @Test
+    public void localizedDigits() {
+        Locale[] locales = {
+                Locale.GERMANY, Locale.FRANCE, new Locale("ar", "EG"), new Locale("fa", "IR"),
+                new Locale("hi", "IN"), new Locale("th", "TH", "TH")
+        };
+        for (Locale locale : locales) {
+            ReadingFormatter formatter = createFormatter(locale);
+            for (int tenths = -600; tenths <= 600; tenths += 7) {
+                checkTemperature(formatter, tenths / 10.0);
+            }
+        }
+    }
+
+    @Test
+    public void windPressureAndHumidity() {
+        ReadingFormatter formatter = createFormatter(Locale.US);
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            float kmh = random.nextFloat() * 150;
+            float degrees = random.nextFloat() * 360;
+            String direction = UnitsTest.legacyDirection(degrees);
+
+            StringBuilder out = new StringBuilder();
+            formatter.appendWind(out, kmh, degrees, true);
+            assertEquals(String.format(Locale.US, WIND_KMH_FORMAT, kmh, direction),
+                    out.toString());
+            out.setLength(0);
+            formatter.appendWind(out, kmh, degrees, false);
+            assertEquals(String.format(Locale.US, WIND_MPH_FORMAT,
+                    .621371192237334f * kmh, direction), out.toString());
+
+            float hpa = 950 + random.nextFloat() * 100;
+            out.setLength(0);
+            formatter.appendPressure(out, hpa);
+            assertEquals(String.format(Locale.US, PRESSURE_FORMAT, hpa), out.toString());
+
+            float percent = random.nextFloat() * 100;
+            out.setLength(0);
+            formatter.appendHumidity(out, percent);
+            assertEquals(String.format(Locale.US, HUMIDITY_FORMAT, percent), out.toString());
+        }
+    }
+
+    @Test
+    public void templates() {
+        char zero = '0';
+        assertTrue(new FormatTemplate(WIND_KMH_FORMAT, Locale.US, zero).isCompiled());
+        assertTrue(new FormatTemplate(HUMIDITY_FORMAT, Locale.US, zero).isCompiled());
+        // Widths pad on the left, like String.format
+        StringBuilder out = new StringBuilder();
+        new FormatTemplate("[%5.0f|%2$4s]", Locale.US, zero).append(out, -12.5, "N");
+        assertEquals(String.format(Locale.US, "[%5.0f|%2$4s]", -12.5, "N"), out.toString());
+
+        // Anything else still formats, through String.format
+        String[] others = {"%.1f\u00B0", "%f", "%05.0f", "%-4.0f|", "%1$.0f %1$s", "%e"};
+        for (String format : others) {
+            FormatTemplate template = new FormatTemplate(format, Locale.US, zero);
+            assertFalse("Error: Compiled " + format, template.isCompiled());
+            out.setLength(0);
+            template.append(out, 21.25, "NE");
+            assertEquals(String.format(Locale.US, format, 21.25, "NE"), out.toString());
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void formattingDoesNotAllocate() {
+        ReadingFormatter formatter = createFormatter(Locale.US);
+        StringBuilder out = new StringBuilder(64);
+        for (int round = 0; round < 3; round++) {
+            long before = allocatedBytes();
+            long after = allocatedBytes();
+            long measuring = after - before;
+
+            before = allocatedBytes();
+            for (int hundredths = -4000; hundredths <= 4000; hundredths += 3) {
+                out.setLength(0);
+                formatter.appendTemperature(out, hundredths / 100.0, true);
+                formatter.appendTemperature(out, hundredths / 100.0, false);
+                out.setLength(0);
+                formatter.appendWind(out, hundredths / 100f + 40, hundredths / 10f + 400, true);
+                formatter.appendWind(out, hundredths / 100f + 40, hundredths / 10f + 400, false);
+                out.setLength(0);
+                formatter.appendPressure(out, 1013.25f);
+                formatter.appendHumidity(out, 85.5f);
+            }
+            after = allocatedBytes();
+            // Only the last round counts, once any lazy setup in the JDK has happened.
+            if (round == 2) {
+                assertEquals("Error: Formatting allocated", 0, after - before - measuring);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UnitsTest {
+
+    // The if-chain getFormattedWind used to find the direction with.
+    static String legacyDirection(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+
+    private static void checkDirection(float degrees) {
+        assertEquals("Error: Wrong direction for " + degrees, legacyDirection(degrees),
+                Units.getCompassDirection(degrees));
+    }
+
+    @Test
+    public void compassDirectionMatchesIfChain() {
+        // Every tenth of a degree, around the circle and beyond it
+        for (int tenths = -7200; tenths <= 7200; tenths++) {
+            checkDirection(tenths / 10f);
+        }
+        // Each sector boundary, and the floats either side of it
+        for (int sector = 0; sector < 8; sector++) {
+            float boundary = 22.5f + sector * 45;
+            checkDirection(boundary);
+            checkDirection(Math.nextUp(boundary));
+            checkDirection(Math.nextAfter(boundary, Double.NEGATIVE_INFINITY));
+        }
+        checkDirection(Float.NaN);
+        checkDirection(Float.POSITIVE_INFINITY);
+        checkDirection(Float.NEGATIVE_INFINITY);
+        checkDirection(-0f);
+        checkDirection(Float.MAX_VALUE);
+    }
+
+    @Test
+    public void conversions() {
+        assertEquals(32.0, Units.celsiusToFahrenheit(0), 0);
+        assertEquals(212.0, Units.celsiusToFahrenheit(100), 1e-9);
+        assertEquals(-40.0, Units.celsiusToFahrenheit(-40), 1e-9);
+        assertEquals(62.137119f, Units.kmhToMph(100), 1e-5f);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class WeatherConditionsTest {
+
+    /*
+        The range checks the registry replaced, in both apps, kept here to check it against.
+     */
+    static String legacyArtName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    @Test
+    public void matchesRangeChecks() {
+        for (int code = -1; code <= 1000; code++) {
+            WeatherConditions.Group group = WeatherConditions.getGroup(code);
+            assertNotNull("Error: No group for " + code, group);
+            assertEquals("Error: Wrong art for " + code, legacyArtName(code), group.getArtName());
+            assertEquals("Error: Photo without art for " + code, group.getArtName() == null,
+                    group.getImageUrl() == null);
+        }
+    }
+
+    @Test
+    public void outOfRangeCodes() {
+        assertSame(WeatherConditions.Group.NONE, WeatherConditions.getGroup(Integer.MIN_VALUE));
+        assertSame(WeatherConditions.Group.NONE,
+                WeatherConditions.getGroup(WeatherConditions.FIRST_CODE - 1));
+        assertSame(WeatherConditions.Group.NONE,
+                WeatherConditions.getGroup(WeatherConditions.LAST_CODE + 1));
+        assertSame(WeatherConditions.Group.NONE, WeatherConditions.getGroup(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void overlappingCodes() {
+        // Dust falls into the fog range, it never got the tornado's pictures.
+        assertSame(WeatherConditions.Group.FOG, WeatherConditions.getGroup(761));
+        assertSame(WeatherConditions.Group.TORNADO, WeatherConditions.getGroup(781));
+        assertEquals("storm", WeatherConditions.Group.TORNADO.getArtName());
+        assertFalse(WeatherConditions.Group.STORM.getImageUrl()
+                .equals(WeatherConditions.Group.TORNADO.getImageUrl()));
+        assertNull(WeatherConditions.getGroup(762).getArtName());
+        assertNull(WeatherConditions.getGroup(771).getArtName());
+    }
+}
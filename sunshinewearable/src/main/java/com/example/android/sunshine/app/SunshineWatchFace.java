@@ -41,6 +41,7 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.core.WearableProtocol;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -91,14 +92,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
             GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
 
-        private static final String WEATHER = "/weather";
-        private static final String WEATHER_INFO = "/weather-info";
-
-        private static final String mUUID = "uuid";
-        private static final String HIGH = "high";
-        private static final String LOW = "low";
-        private static final String WEATHER_ID = "weatherId";
-
         Paint mBackgroundPaint;
         Paint textPaint;
         Paint textDatePaint;
@@ -502,8 +495,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onConnected(Bundle bundle) {
             Wearable.DataApi.addListener(googleApiClient, Engine.this);
 
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER);
-            putDataMapRequest.getDataMap().putString(mUUID, UUID.randomUUID().toString());
+            PutDataMapRequest putDataMapRequest =
+                    PutDataMapRequest.create(WearableProtocol.PATH_WEATHER_REQUEST);
+            putDataMapRequest.getDataMap().putString(WearableProtocol.KEY_UUID,
+                    UUID.randomUUID().toString());
             PutDataRequest request = putDataMapRequest.asPutDataRequest();
 
             Wearable.DataApi.putDataItem(googleApiClient, request)
@@ -531,26 +526,27 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     DataMap dataMap = DataMapItem.fromDataItem(dataEvent.getDataItem()).getDataMap();
                     String path = dataEvent.getDataItem().getUri().getPath();
                     Log.d(TAG, path);
-                    if (path.equals(WEATHER_INFO)) {
-                        if (dataMap.containsKey(HIGH)) {
-                            weatherHigh = dataMap.getString(HIGH);
+                    if (path.equals(WearableProtocol.PATH_WEATHER_INFO)) {
+                        if (dataMap.containsKey(WearableProtocol.KEY_HIGH)) {
+                            weatherHigh = dataMap.getString(WearableProtocol.KEY_HIGH);
                             Log.d(TAG, "Massima = " + weatherHigh);
                         } else {
                             Log.d(TAG, "Niente dati x la massima");
                         }
 
-                        if (dataMap.containsKey(LOW)) {
-                            weatherLow = dataMap.getString(LOW);
+                        if (dataMap.containsKey(WearableProtocol.KEY_LOW)) {
+                            weatherLow = dataMap.getString(WearableProtocol.KEY_LOW);
                             Log.d(TAG, "Minima = " + weatherLow);
                         } else {
                             Log.d(TAG, "Niente dati x la minima");
                         }
 
-                        if (dataMap.containsKey(WEATHER_ID)) {
-                            int weatherId = dataMap.getInt(WEATHER_ID);
-                            if (weatherId != 0) {
+                        if (dataMap.containsKey(WearableProtocol.KEY_WEATHER_ID)) {
+                            int weatherId = dataMap.getInt(WearableProtocol.KEY_WEATHER_ID);
+                            int iconResId = Utility.getIconResourceForWeatherCondition(weatherId);
+                            if (iconResId != Utility.NO_RESOURCE) {
 
-                                Drawable b = getDrawable(Utility.getIconResourceForWeatherCondition(weatherId));
+                                Drawable b = getDrawable(iconResId);
                                 Bitmap icon = ((BitmapDrawable) b).getBitmap();
                                 float scaledWidth = (textTempHighPaint.getTextSize() / icon.getHeight()) * icon.getWidth();
                                 weatherIcon = Bitmap.createScaledBitmap(icon, (int) scaledWidth, (int) textTempHighPaint.getTextSize(), true);
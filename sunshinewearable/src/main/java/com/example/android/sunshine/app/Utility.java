@@ -2,6 +2,8 @@ package com.example.android.sunshine.app;
 
 import android.content.res.Resources;
 
+import com.example.android.sunshine.core.WeatherConditions;
+
 import java.util.Calendar;
 
 /**
@@ -9,33 +11,36 @@ import java.util.Calendar;
  */
 public class Utility {
 
+    // No icon for the condition
+    public static final int NO_RESOURCE = -1;
+
+    /**
+     * @param weatherId from OpenWeatherMap, as sent by the phone
+     * @return resource id for the icon of the condition, NO_RESOURCE if there is none.  The
+     * codes each icon covers are the phone's, from WeatherConditions.
+     */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
+        switch (WeatherConditions.getGroup(weatherId)) {
+            case STORM:
+            case TORNADO:
+                return R.drawable.ic_storm;
+            case LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case RAIN:
+                return R.drawable.ic_rain;
+            case SNOW:
+                return R.drawable.ic_snow;
+            case FOG:
+                return R.drawable.ic_fog;
+            case CLEAR:
+                return R.drawable.ic_clear;
+            case LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case CLOUDS:
+                return R.drawable.ic_cloudy;
+            default:
+                return NO_RESOURCE;
         }
-        return -1;
     }
 
     public static String getString(Resources resources, int time) {